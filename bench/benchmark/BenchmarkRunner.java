@@ -0,0 +1,34 @@
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which adds the allocation rate
+ * ({@code gc.alloc.rate}, in MB/s) and the bytes allocated per operation
+ * ({@code gc.alloc.rate.norm}) to the throughput of every benchmark. The results are also
+ * written as JSON to {@code bench_output.json} so that runs can be compared.
+ */
+public class BenchmarkRunner {
+
+  /**
+   * Runs the benchmarks.
+   *
+   * @param args an optional regular expression selecting the benchmarks to run, for
+   *             example {@code ImageBenchmark.blur}; all benchmarks run if it is absent.
+   * @throws RunnerException if the benchmarks cannot be run.
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+            .include(args.length > 0 ? args[0] : "benchmark\\..*")
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("bench_output.json")
+            .build();
+    new Runner(options).run();
+  }
+}
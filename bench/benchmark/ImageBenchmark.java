@@ -0,0 +1,216 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.image.Image;
+
+/**
+ * Measures the throughput of every public operation of {@link Image} on square images of
+ * 256, 2048 and 8192 pixels a side. Each operation returns its result so that the JIT
+ * compiler cannot remove it. The pixels are random with a fixed seed, so that every run
+ * and every operation see the same image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ImageBenchmark {
+
+  /**
+   * The width and height of the image in pixels.
+   */
+  @Param({"256", "2048", "8192"})
+  public int size;
+
+  private Image image;
+  private Image green;
+  private Image blue;
+  private int[][] histograms;
+
+  /**
+   * Creates the random image, and the component images and histograms used as inputs.
+   */
+  @Setup
+  public void setUp() {
+    image = randomImage(size, size, 42);
+    green = image.extractGreenComponent();
+    blue = image.extractBlueComponent();
+    histograms = image.calculateHistograms();
+  }
+
+  /**
+   * Creates an image of random pixels.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param seed   the seed of the random pixels
+   * @return the image
+   */
+  static Image randomImage(int width, int height, long seed) {
+    Random random = new Random(seed);
+    byte[] red = new byte[width * height];
+    byte[] green = new byte[width * height];
+    byte[] blue = new byte[width * height];
+    random.nextBytes(red);
+    random.nextBytes(green);
+    random.nextBytes(blue);
+    return new Image(width, height, red, green, blue);
+  }
+
+  @Benchmark
+  public Image blur() {
+    return image.blur();
+  }
+
+  @Benchmark
+  public Image sharpen() {
+    return image.sharpen();
+  }
+
+  @Benchmark
+  public Image compress() {
+    return image.compress(50);
+  }
+
+  @Benchmark
+  public Image compressBlocks() {
+    return image.compress(50, 256, null);
+  }
+
+  @Benchmark
+  public Image colorCorrect() {
+    return image.colorCorrect();
+  }
+
+  @Benchmark
+  public Image colorCorrectWithHistograms() {
+    return image.colorCorrect(histograms);
+  }
+
+  @Benchmark
+  public Image adjustLevels() {
+    return image.adjustLevels(20, 100, 230);
+  }
+
+  /**
+   * Counts the histograms of a new image over the same channel arrays, which has none
+   * cached.
+   *
+   * @return the histograms
+   */
+  @Benchmark
+  public int[][] calculateHistograms() {
+    return new Image(size, size, image.getRedChannel(), image.getGreenChannel(),
+            image.getBlueChannel()).calculateHistograms();
+  }
+
+  @Benchmark
+  public int[][] calculateHistogramsCached() {
+    return image.calculateHistograms();
+  }
+
+  @Benchmark
+  public Image horizontalFlip() {
+    return image.horizontalFlip();
+  }
+
+  @Benchmark
+  public Image verticalFlip() {
+    return image.verticalFlip();
+  }
+
+  @Benchmark
+  public Image crop() {
+    return image.crop(size / 4, size / 4, size / 2, size / 2);
+  }
+
+  /**
+   * Flips the image and reads a channel of the result, which copies the pixels of the view,
+   * so that the cost of the flip itself is measured and not only that of making the view.
+   */
+  @Benchmark
+  public byte[] horizontalFlipMaterialized() {
+    return image.horizontalFlip().getRedChannel();
+  }
+
+  /**
+   * Flips the image upside down and reads a channel of the result, which copies the pixels.
+   */
+  @Benchmark
+  public byte[] verticalFlipMaterialized() {
+    return image.verticalFlip().getRedChannel();
+  }
+
+  /**
+   * Crops the image and reads a channel of the result, which copies the pixels.
+   */
+  @Benchmark
+  public byte[] cropMaterialized() {
+    return image.crop(size / 4, size / 4, size / 2, size / 2).getRedChannel();
+  }
+
+  @Benchmark
+  public Image brighten() {
+    return image.brighten(30);
+  }
+
+  @Benchmark
+  public Image extractRedComponent() {
+    return image.extractRedComponent();
+  }
+
+  @Benchmark
+  public Image extractGreenComponent() {
+    return image.extractGreenComponent();
+  }
+
+  @Benchmark
+  public Image extractBlueComponent() {
+    return image.extractBlueComponent();
+  }
+
+  @Benchmark
+  public Image[] splitColorChannels() {
+    return image.splitColorChannels();
+  }
+
+  @Benchmark
+  public Image combineColorChannels() {
+    return Image.combineColorChannels(image, green, blue);
+  }
+
+  @Benchmark
+  public Image toValueComponent() {
+    return image.toValueComponent();
+  }
+
+  @Benchmark
+  public Image toLumaComponent() {
+    return image.toLumaComponent();
+  }
+
+  @Benchmark
+  public Image toIntensityComponent() {
+    return image.toIntensityComponent();
+  }
+
+  @Benchmark
+  public Image toSepia() {
+    return image.toSepia();
+  }
+}
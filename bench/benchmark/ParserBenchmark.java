@@ -0,0 +1,110 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.IImageFileParser;
+import controller.JPGParser;
+import controller.PGMParser;
+import controller.PNGParser;
+import controller.PPMParser;
+import model.image.Image;
+
+/**
+ * Measures the throughput of loading and saving images with each parser. The file that is
+ * loaded is written once per trial by the same parser, and saving overwrites one file in a
+ * temporary directory, so the benchmarks include the file system but not the creation of
+ * new files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class ParserBenchmark {
+
+  /**
+   * The width and height of the image in pixels.
+   */
+  @Param({"256", "2048", "8192"})
+  public int size;
+
+  /**
+   * The file format; "ppm" is plain (P3) PPM and "ppm-binary" is binary (P6) PPM.
+   */
+  @Param({"png", "jpg", "ppm", "ppm-binary", "pgm"})
+  public String format;
+
+  private IImageFileParser parser;
+  private Image image;
+  private Path directory;
+  private String loadPath;
+  private String savePath;
+
+  /**
+   * Creates the parser, the random image, and the file that is loaded.
+   *
+   * @throws IOException if the temporary files cannot be written
+   */
+  @Setup
+  public void setUp() throws IOException {
+    String extension = format.startsWith("ppm") ? "ppm" : format;
+    switch (format) {
+      case "png":
+        parser = new PNGParser();
+        break;
+      case "jpg":
+        parser = new JPGParser();
+        break;
+      case "pgm":
+        parser = new PGMParser();
+        break;
+      default:
+        parser = new PPMParser("ppm-binary".equals(format));
+        break;
+    }
+    image = ImageBenchmark.randomImage(size, size, 42);
+    directory = Files.createTempDirectory("parser-benchmark");
+    loadPath = directory.resolve("load." + extension).toString();
+    savePath = directory.resolve("save." + extension).toString();
+    parser.saveImage(loadPath, image);
+  }
+
+  /**
+   * Deletes the temporary files.
+   *
+   * @throws IOException if the files cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(Path.of(loadPath));
+    Files.deleteIfExists(Path.of(savePath));
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public Image load() throws IOException {
+    return parser.loadImage(loadPath);
+  }
+
+  @Benchmark
+  public void save() throws IOException {
+    parser.saveImage(savePath, image);
+  }
+}
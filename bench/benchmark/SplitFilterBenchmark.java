@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.image.Image;
+import model.strategy.BlurFilterStrategy;
+import model.strategy.FilterStrategy;
+import model.strategy.SepiaFilterStrategy;
+import model.strategy.SplitFilterDecorator;
+
+/**
+ * Measures the throughput of {@link SplitFilterDecorator} for a neighbourhood filter and a
+ * per-pixel filter at several split positions, against the same filters applied to the
+ * whole image (a split at 100%).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class SplitFilterBenchmark {
+
+  /**
+   * The width and height of the image in pixels.
+   */
+  @Param({"256", "2048", "8192"})
+  public int size;
+
+  /**
+   * The percentage of the width the filter is applied to.
+   */
+  @Param({"25", "50", "100"})
+  public double split;
+
+  private Image image;
+  private FilterStrategy blur;
+  private FilterStrategy sepia;
+
+  /**
+   * Creates the random image and the decorated filters.
+   */
+  @Setup
+  public void setUp() {
+    image = ImageBenchmark.randomImage(size, size, 42);
+    blur = new SplitFilterDecorator(new BlurFilterStrategy(), split);
+    sepia = new SplitFilterDecorator(new SepiaFilterStrategy(), split);
+  }
+
+  @Benchmark
+  public Image splitBlur() {
+    return image.applyFilter(blur);
+  }
+
+  @Benchmark
+  public Image splitSepia() {
+    return image.applyFilter(sepia);
+  }
+}
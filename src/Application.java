@@ -1,5 +1,12 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import controller.BatchRunner;
+import controller.CommandMetrics;
 import controller.IController;
 import controller.ImageController;
+import controller.ImageServer;
 import model.IImageModel;
 import model.ImageModel;
 import view.ConsoleView;
@@ -17,15 +24,80 @@ public class Application {
   /**
    * The main entry point for the Image processing program.
    *
-   * @param args Command-line arguments. Currently not used in this application.
+   * @param args Command-line arguments. {@code -lazy} defers per-pixel operations until
+   *             their result is needed, {@code -memory <megabytes>} limits the memory used
+   *             by images before they are spilled to disk, {@code -parallel} runs independent
+   *             script commands concurrently, {@code -file <path>} runs a script and
+   *             exits, {@code -batch <template> <inputs> <output>} runs a script
+   *             template on every input file and exits, and {@code -serve <port>} serves
+   *             commands to clients on a local socket until the program is stopped,
+   *             letting them use only the files within {@code -root <directory>}, or the
+   *             working directory if it is not given.
+   *             {@code -metrics <path>} writes the time and allocation of every command
+   *             to a JSON file, or a CSV file if the path ends in ".csv", at exit.
+   * @throws IOException if the server socket cannot be opened or fails.
    */
-  public static void main(String[] args) {
-    IImageModel model = new ImageModel();
+  public static void main(String[] args) throws IOException {
+    boolean lazy = false;
+    boolean parallel = false;
+    long memoryBudget = Long.MAX_VALUE;
+    String scriptFilePath = null;
+    String[] batch = null;
+    int port = -1;
+    String metricsPath = null;
+    String fileRoot = "";
+    for (int i = 0; i < args.length; i++) {
+      if ("-lazy".equals(args[i])) {
+        lazy = true;
+      } else if ("-parallel".equals(args[i])) {
+        parallel = true;
+      } else if ("-memory".equals(args[i]) && i + 1 < args.length) {
+        memoryBudget = Long.parseLong(args[++i]) << 20;
+      } else if ("-file".equals(args[i]) && i + 1 < args.length) {
+        scriptFilePath = args[++i];
+      } else if ("-batch".equals(args[i]) && i + 3 < args.length) {
+        batch = new String[]{args[i + 1], args[i + 2], args[i + 3]};
+        i += 3;
+      } else if ("-serve".equals(args[i]) && i + 1 < args.length) {
+        port = Integer.parseInt(args[++i]);
+      } else if ("-root".equals(args[i]) && i + 1 < args.length) {
+        fileRoot = args[++i];
+      } else if ("-metrics".equals(args[i]) && i + 1 < args.length) {
+        metricsPath = args[++i];
+      }
+    }
+    int processors = Runtime.getRuntime().availableProcessors();
+    CommandMetrics metrics = new CommandMetrics();
+    if (metricsPath != null) {
+      Path metricsFile = Paths.get(metricsPath);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          metrics.writeTo(metricsFile);
+        } catch (IOException e) {
+          System.err.println("ERROR: Could not write metrics: " + e.getMessage());
+        }
+      }));
+    }
+    if (batch != null) {
+      boolean lazyFiles = lazy;
+      long fileBudget = memoryBudget;
+      new BatchRunner(() -> new ImageModel(1, lazyFiles, fileBudget), new ConsoleView(),
+              processors, metrics).run(batch[0], batch[1], batch[2]);
+      return;
+    }
+    IImageModel model = new ImageModel(processors, lazy, memoryBudget);
     IView view = new ConsoleView();
-    IController controller = new ImageController(model, view);
+    if (port >= 0) {
+      try (ImageServer server = new ImageServer(model, port, metrics, Paths.get(fileRoot))) {
+        view.showMessage("Listening on port " + server.getPort() + ".");
+        server.serve();
+      }
+      return;
+    }
+    IController controller = new ImageController(model, view, parallel ? processors : 1,
+            metrics);
 
-    if (args.length == 2 && "-file".equals(args[0])) {
-      String scriptFilePath = args[1];
+    if (scriptFilePath != null) {
       controller.runScript(scriptFilePath);
     } else {
       controller.execute();
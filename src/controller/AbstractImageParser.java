@@ -1,19 +1,27 @@
 package controller;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 
 import javax.imageio.ImageIO;
 
 import model.image.Image;
-import model.image.Pixel;
 
 /**
  * Provides an abstract implementation of the IImageFileParser
  * interface, defining common methods for loading and saving images
  * from/to disk. Specific image formats provide concrete
  * implementations of this class.
+ * Pixels are transferred in bulk: the common image types (three or four interleaved
+ * bytes per pixel, as read from JPEG and PNG files, and one packed int per pixel) are
+ * copied straight from and to the arrays behind the raster, and other types are converted
+ * a row at a time through the array forms of getRGB and setRGB.
  */
 public abstract class AbstractImageParser implements IImageFileParser {
 
@@ -30,21 +38,99 @@ public abstract class AbstractImageParser implements IImageFileParser {
 
     int width = bufferedImage.getWidth();
     int height = bufferedImage.getHeight();
+    byte[][] channels = new byte[3][width * height];
+
+    switch (bufferedImage.getType()) {
+      case BufferedImage.TYPE_3BYTE_BGR:
+      case BufferedImage.TYPE_4BYTE_ABGR:
+        readInterleaved(bufferedImage.getRaster(), channels);
+        break;
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB:
+        readPacked(bufferedImage.getRaster(), channels);
+        break;
+      default:
+        readRows(bufferedImage, channels);
+        break;
+    }
+    return new Image(width, height, channels[0], channels[1], channels[2]);
+  }
 
-    Image image = new Image(new Pixel[height][width]);
-
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        int argb = bufferedImage.getRGB(x, y);
+  /**
+   * Copies the red, green and blue bytes of an image with interleaved byte samples, whose
+   * first three bands are the red, green and blue components.
+   *
+   * @param raster   the raster of the image
+   * @param channels the red, green and blue arrays to fill
+   */
+  private static void readInterleaved(WritableRaster raster, byte[][] channels) {
+    ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+    DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+    byte[] data = buffer.getData();
+    int pixelStride = model.getPixelStride();
+    int scanlineStride = model.getScanlineStride();
+    int[] bandOffsets = model.getBandOffsets();
+    int origin = buffer.getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+            - raster.getSampleModelTranslateX() * pixelStride;
+    int width = raster.getWidth();
+    byte[] red = channels[0];
+    byte[] green = channels[1];
+    byte[] blue = channels[2];
+
+    for (int y = 0; y < raster.getHeight(); y++) {
+      int sample = origin + y * scanlineStride;
+      for (int index = y * width; index < (y + 1) * width; index++) {
+        red[index] = data[sample + bandOffsets[0]];
+        green[index] = data[sample + bandOffsets[1]];
+        blue[index] = data[sample + bandOffsets[2]];
+        sample += pixelStride;
+      }
+    }
+  }
 
-        int red = (argb >> 16) & 0xff;
-        int green = (argb >> 8) & 0xff;
-        int blue = argb & 0xff;
+  /**
+   * Copies the red, green and blue bytes of an image with one packed RGB int per pixel.
+   *
+   * @param raster   the raster of the image
+   * @param channels the red, green and blue arrays to fill
+   */
+  private static void readPacked(WritableRaster raster, byte[][] channels) {
+    SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+    DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+    int[] data = buffer.getData();
+    int scanlineStride = model.getScanlineStride();
+    int origin = buffer.getOffset() - raster.getSampleModelTranslateY() * scanlineStride
+            - raster.getSampleModelTranslateX();
+    int width = raster.getWidth();
+
+    for (int y = 0; y < raster.getHeight(); y++) {
+      int sample = origin + y * scanlineStride;
+      for (int index = y * width; index < (y + 1) * width; index++) {
+        int rgb = data[sample++];
+        channels[0][index] = (byte) (rgb >> 16);
+        channels[1][index] = (byte) (rgb >> 8);
+        channels[2][index] = (byte) rgb;
+      }
+    }
+  }
 
-        image.setPixel(x, y, new Pixel(red, green, blue));
+  /**
+   * Converts any other image to RGB a row at a time, using the color model of the image.
+   *
+   * @param bufferedImage the image to read
+   * @param channels      the red, green and blue arrays to fill
+   */
+  private static void readRows(BufferedImage bufferedImage, byte[][] channels) {
+    int width = bufferedImage.getWidth();
+    int[] row = new int[width];
+    for (int y = 0; y < bufferedImage.getHeight(); y++) {
+      bufferedImage.getRGB(0, y, width, 1, row, 0, width);
+      for (int x = 0, index = y * width; x < width; x++, index++) {
+        channels[0][index] = (byte) (row[x] >> 16);
+        channels[1][index] = (byte) (row[x] >> 8);
+        channels[2][index] = (byte) row[x];
       }
     }
-    return image;
   }
 
   /**
@@ -57,26 +143,32 @@ public abstract class AbstractImageParser implements IImageFileParser {
    */
   @Override
   public void saveImage(String path, Image image) throws IOException {
-    if (image.getPixels() == null) {
+    if (image == null) {
       throw new IOException("No image data to save.");
     }
 
     int height = image.getHeight();
     int width = image.getWidth();
+    byte[] red = image.getRedChannel();
+    byte[] green = image.getGreenChannel();
+    byte[] blue = image.getBlueChannel();
 
     BufferedImage bufferedImage = new BufferedImage(width, height, getImageType());
 
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel pixel = image.getPixel(x, y);
-
-        int red = pixel.getRed();
-        int green = pixel.getGreen();
-        int blue = pixel.getBlue();
-
-        int argb = (255 << 24) | (red << 16) | (green << 8) | blue;
-
-        bufferedImage.setRGB(x, y, argb);
+    if (bufferedImage.getType() == BufferedImage.TYPE_INT_RGB) {
+      int[] data = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+      for (int index = 0; index < width * height; index++) {
+        data[index] = (red[index] & 0xff) << 16 | (green[index] & 0xff) << 8
+                | (blue[index] & 0xff);
+      }
+    } else {
+      int[] row = new int[width];
+      for (int y = 0; y < height; y++) {
+        for (int x = 0, index = y * width; x < width; x++, index++) {
+          row[x] = 255 << 24 | (red[index] & 0xff) << 16 | (green[index] & 0xff) << 8
+                  | (blue[index] & 0xff);
+        }
+        bufferedImage.setRGB(0, y, width, 1, row, 0, width);
       }
     }
     ImageIO.write(bufferedImage, getImageFormat(), new File(path));
@@ -0,0 +1,243 @@
+package controller;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import model.IImageModel;
+import view.IView;
+
+/**
+ * Runs one script template on many input files, in a single program run.
+ * The template is an ordinary script in which {@code {input}} stands for the path of the
+ * input file, {@code {name}} for its file name without the extension, and
+ * {@code {output}} for the output directory. Each file is processed by a fresh model on
+ * one of a fixed number of worker threads, so the images of a file are released as soon
+ * as it is done. A file succeeds if none of its commands report an error. The outcome of
+ * every file is written to a CSV report in the output directory as soon as it and the
+ * files before it are done.
+ */
+public class BatchRunner {
+  /**
+   * The name of the report written to the output directory.
+   */
+  public static final String REPORT_FILE = "batch-report.csv";
+  private static final Set<String> EXTENSIONS = Set.of("png", "jpg", "jpeg", "ppm", "pgm");
+  private static final String WILDCARDS = "*?[{";
+
+  private final Supplier<IImageModel> models;
+  private final IView view;
+  private final int workers;
+  private final CommandMetrics metrics;
+
+  /**
+   * Constructs a batch runner.
+   *
+   * @param models  creates the model each input file is processed with.
+   * @param view    the view the summary and errors of the batch are shown on.
+   * @param workers the number of files processed at the same time.
+   * @throws IllegalArgumentException if the number of workers is not positive.
+   */
+  public BatchRunner(Supplier<IImageModel> models, IView view, int workers) {
+    this(models, view, workers, new CommandMetrics());
+  }
+
+  /**
+   * Constructs a batch runner that records the commands of all files into given metrics.
+   *
+   * @param models  creates the model each input file is processed with.
+   * @param view    the view the summary and errors of the batch are shown on.
+   * @param workers the number of files processed at the same time.
+   * @param metrics the metrics every command is recorded into.
+   * @throws IllegalArgumentException if the number of workers is not positive.
+   */
+  public BatchRunner(Supplier<IImageModel> models, IView view, int workers,
+                     CommandMetrics metrics) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Number of workers must be positive.");
+    }
+    this.models = models;
+    this.view = view;
+    this.workers = workers;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Runs a script template on every input file and writes the report.
+   *
+   * @param templatePath    the path of the script template.
+   * @param inputs          a directory, whose image files are all processed, a glob such as
+   *                        {@code photos/*.jpg}, whose file name part selects the files, or
+   *                        a single file.
+   * @param outputDirectory the directory the report is written to, and {@code {output}}
+   *                        stands for; it is created if it does not exist.
+   */
+  public void run(String templatePath, String inputs, String outputDirectory) {
+    try {
+      List<String> template = new ScriptParser().parse(templatePath);
+      List<Path> files = findInputs(inputs);
+      Path output = Files.createDirectories(Paths.get(outputDirectory));
+      int failed = 0;
+      ExecutorService pool = Executors.newFixedThreadPool(workers);
+      try (BufferedWriter report = Files.newBufferedWriter(output.resolve(REPORT_FILE))) {
+        report.write("file,status,detail");
+        report.newLine();
+        List<Future<String>> results = new ArrayList<>();
+        for (Path file : files) {
+          results.add(pool.submit(() -> process(template, file, output)));
+        }
+        for (int i = 0; i < files.size(); i++) {
+          String error = errorOf(results.get(i));
+          if (error != null) {
+            failed++;
+          }
+          report.write(csv(files.get(i).toString()) + ","
+                  + (error == null ? "success," : "failure," + csv(error)));
+          report.newLine();
+          report.flush();
+        }
+      } finally {
+        pool.shutdown();
+      }
+      view.showMessage("Batch finished: " + (files.size() - failed) + " succeeded, "
+              + failed + " failed.");
+    } catch (Exception e) {
+      view.showError("Error running the batch: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Runs the template on one file with a fresh model.
+   *
+   * @param template the commands of the script template.
+   * @param file     the input file.
+   * @param output   the output directory.
+   * @return the first error reported by the commands, or null if there was none.
+   */
+  private String process(List<String> template, Path file, Path output) {
+    String fileName = file.getFileName().toString();
+    int dot = fileName.lastIndexOf('.');
+    String name = dot > 0 ? fileName.substring(0, dot) : fileName;
+
+    List<String> commands = new ArrayList<>();
+    for (String command : template) {
+      commands.add(command.replace("{input}", file.toString())
+              .replace("{name}", name)
+              .replace("{output}", output.toString()));
+    }
+    BufferedView messages = new BufferedView();
+    new ImageController(models.get(), messages, 1, metrics).runCommands(commands);
+    return messages.getFirstError();
+  }
+
+  /**
+   * Waits for the result of one file.
+   *
+   * @param result the pending result.
+   * @return the first error of the file, or null if it succeeded.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  private static String errorOf(Future<String> result) throws InterruptedException {
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      return "Error processing the file: " + e.getCause();
+    }
+  }
+
+  /**
+   * Finds the input files of a batch.
+   *
+   * @param inputs a directory, a glob or a single file.
+   * @return the input files, sorted by path.
+   * @throws IOException if a directory cannot be read.
+   * @throws IllegalArgumentException if the wildcards are not in the file name, or the
+   *                                  input does not exist.
+   */
+  static List<Path> findInputs(String inputs) throws IOException {
+    List<Path> files = new ArrayList<>();
+    int wildcard = indexOfWildcard(inputs);
+    if (wildcard >= 0) {
+      int separator = Math.max(inputs.lastIndexOf('/'), inputs.lastIndexOf(File.separatorChar));
+      if (separator > wildcard) {
+        throw new IllegalArgumentException(
+                "Only the file name of an input pattern may contain wildcards.");
+      }
+      Path directory = Paths.get(separator < 0 ? "." : inputs.substring(0, separator + 1));
+      String glob = inputs.substring(separator + 1);
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+        for (Path file : stream) {
+          if (Files.isRegularFile(file)) {
+            files.add(separator < 0 ? file.getFileName() : file);
+          }
+        }
+      }
+    } else if (Files.isDirectory(Paths.get(inputs))) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(inputs))) {
+        for (Path file : stream) {
+          if (Files.isRegularFile(file) && EXTENSIONS.contains(extensionOf(file))) {
+            files.add(file);
+          }
+        }
+      }
+    } else if (Files.isRegularFile(Paths.get(inputs))) {
+      files.add(Paths.get(inputs));
+    } else {
+      throw new IllegalArgumentException("Input not found: " + inputs);
+    }
+    files.sort(null);
+    return files;
+  }
+
+  /**
+   * Finds the first glob wildcard in an input argument.
+   *
+   * @param inputs the input argument.
+   * @return the index of the first wildcard, or -1 if there is none.
+   */
+  private static int indexOfWildcard(String inputs) {
+    for (int i = 0; i < inputs.length(); i++) {
+      if (WILDCARDS.indexOf(inputs.charAt(i)) >= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the lower-case extension of a file name.
+   *
+   * @param file the file.
+   * @return the extension, or an empty string if the name has none.
+   */
+  private static String extensionOf(Path file) {
+    String fileName = file.getFileName().toString();
+    int dot = fileName.lastIndexOf('.');
+    return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase();
+  }
+
+  /**
+   * Quotes a CSV field if it contains a comma, a quote or a line break.
+   *
+   * @param field the field value.
+   * @return the field as it is written to the report.
+   */
+  private static String csv(String field) {
+    if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+      return field;
+    }
+    return "\"" + field.replace("\"", "\"\"") + "\"";
+  }
+}
@@ -0,0 +1,61 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import view.IView;
+
+/**
+ * A view that records the messages of commands running away from the user, on a worker
+ * thread or as part of a batch, so that they can be shown later or inspected.
+ */
+class BufferedView implements IView {
+  private final List<String> messages = new ArrayList<>();
+  private final List<Boolean> errors = new ArrayList<>();
+
+  @Override
+  public void showMessage(String message) {
+    messages.add(message);
+    errors.add(false);
+  }
+
+  @Override
+  public String getInput() {
+    throw new UnsupportedOperationException("A script command cannot read input.");
+  }
+
+  @Override
+  public void showError(String errorMessage) {
+    messages.add(errorMessage);
+    errors.add(true);
+  }
+
+  /**
+   * Returns the first recorded error message.
+   *
+   * @return the first error message, or null if no error was recorded.
+   */
+  String getFirstError() {
+    for (int i = 0; i < messages.size(); i++) {
+      if (errors.get(i)) {
+        return messages.get(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Shows the recorded messages on another view, in the order they were recorded.
+   *
+   * @param view the view to show the messages on.
+   */
+  void showOn(IView view) {
+    for (int i = 0; i < messages.size(); i++) {
+      if (errors.get(i)) {
+        view.showError(messages.get(i));
+      } else {
+        view.showMessage(messages.get(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,361 @@
+package controller;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Collects the cost of every executed command, grouped by command name. For each command
+ * it keeps histograms of the wall-clock time, the CPU time and the bytes allocated by the
+ * thread that ran the command, and of the width and height of the image it produced.
+ * CPU time and allocation come from the JVM's {@link ThreadMXBean} and are left at zero
+ * where the JVM does not support them; work the model hands to its own thread pool is
+ * counted in the wall-clock time only. Metrics can be recorded from several threads at
+ * once, and can be shown as a summary or written as JSON or CSV.
+ */
+public class CommandMetrics {
+  private static final String[] METRICS = {"wall_ns", "cpu_ns", "allocated_bytes",
+      "width", "height"};
+  private static final int WALL = 0;
+  private static final int CPU = 1;
+  private static final int ALLOCATED = 2;
+  private static final int WIDTH = 3;
+  private static final int HEIGHT = 4;
+
+  private final ConcurrentMap<String, CommandStats> commands = new ConcurrentSkipListMap<>();
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final com.sun.management.ThreadMXBean allocations;
+  private final boolean cpuTime;
+
+  /**
+   * Constructs an empty collection of metrics, enabling CPU time and allocation
+   * measurement if the JVM supports them.
+   */
+  public CommandMetrics() {
+    cpuTime = threads.isCurrentThreadCpuTimeSupported();
+    if (cpuTime && !threads.isThreadCpuTimeEnabled()) {
+      threads.setThreadCpuTimeEnabled(true);
+    }
+    if (threads instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+      allocations = (com.sun.management.ThreadMXBean) threads;
+      allocations.setThreadAllocatedMemoryEnabled(true);
+    } else {
+      allocations = null;
+    }
+  }
+
+  /**
+   * Starts measuring a command on the current thread.
+   *
+   * @return the measurement, to be stopped on the same thread when the command completes.
+   */
+  Measurement start() {
+    return new Measurement();
+  }
+
+  /**
+   * Returns the number of times a command was recorded.
+   *
+   * @param command the command name.
+   * @return the number of recorded runs, including failed ones.
+   */
+  public long getCount(String command) {
+    CommandStats stats = commands.get(command);
+    return stats == null ? 0 : stats.histograms[WALL].count;
+  }
+
+  /**
+   * Returns a summary of the recorded commands, one line per command name in alphabetical
+   * order, with the median, 90th percentile and maximum of the wall-clock time, CPU time
+   * and allocation, and the largest image produced.
+   *
+   * @return the summary lines.
+   */
+  public List<String> summary() {
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<String, CommandStats> entry : commands.entrySet()) {
+      CommandStats stats = entry.getValue();
+      synchronized (stats) {
+        Histogram[] h = stats.histograms;
+        lines.add(String.format(Locale.ROOT,
+                "%s: %d runs, %d failed, wall ms %s, cpu ms %s, allocated MB %s, largest %dx%d",
+                entry.getKey(), h[WALL].count, stats.failures,
+                h[WALL].describe(1e6), h[CPU].describe(1e6), h[ALLOCATED].describe(1 << 20),
+                h[WIDTH].max, h[HEIGHT].max));
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Writes the recorded metrics to a file, as CSV if its name ends in ".csv" and as JSON
+   * otherwise.
+   *
+   * @param file the file to write.
+   * @throws IOException if the file cannot be written.
+   */
+  public void writeTo(Path file) throws IOException {
+    String content = file.toString().endsWith(".csv") ? toCsv() : toJson();
+    Files.writeString(file, content);
+  }
+
+  /**
+   * Formats the metrics as CSV, with one row per command and metric.
+   *
+   * @return the CSV text, with a header row.
+   */
+  public String toCsv() {
+    StringBuilder csv = new StringBuilder(
+            "command,metric,count,failures,sum,min,max,mean,p50,p90,p99\n");
+    for (Map.Entry<String, CommandStats> entry : commands.entrySet()) {
+      CommandStats stats = entry.getValue();
+      synchronized (stats) {
+        for (int metric = 0; metric < METRICS.length; metric++) {
+          Histogram h = stats.histograms[metric];
+          csv.append(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%d,%.1f,%d,%d,%d\n",
+                  entry.getKey(), METRICS[metric], h.count, stats.failures, h.sum, h.min(),
+                  h.max, h.mean(), h.percentile(0.5), h.percentile(0.9), h.percentile(0.99)));
+        }
+      }
+    }
+    return csv.toString();
+  }
+
+  /**
+   * Formats the metrics as a JSON object keyed by command name. Each histogram lists its
+   * non-empty buckets as pairs of the largest value in the bucket and the bucket's count.
+   *
+   * @return the JSON text.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{");
+    String separator = "";
+    for (Map.Entry<String, CommandStats> entry : commands.entrySet()) {
+      CommandStats stats = entry.getValue();
+      synchronized (stats) {
+        json.append(separator).append("\n  \"").append(escape(entry.getKey()))
+                .append("\": {\"count\": ").append(stats.histograms[WALL].count)
+                .append(", \"failures\": ").append(stats.failures);
+        for (int metric = 0; metric < METRICS.length; metric++) {
+          json.append(",\n    \"").append(METRICS[metric]).append("\": ");
+          stats.histograms[metric].appendJson(json);
+        }
+        json.append("}");
+      }
+      separator = ",";
+    }
+    return json.append("\n}\n").toString();
+  }
+
+  /**
+   * Escapes a command name for a JSON string.
+   *
+   * @param text the command name.
+   * @return the name with quotes, backslashes and control characters escaped.
+   */
+  private static String escape(String text) {
+    StringBuilder escaped = new StringBuilder();
+    for (char c : text.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        escaped.append('\\').append(c);
+      } else if (c < 0x20) {
+        escaped.append(String.format("\\u%04x", (int) c));
+      } else {
+        escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  /**
+   * A command being measured on the thread that started it.
+   */
+  class Measurement {
+    private final long wallStart = System.nanoTime();
+    private final long cpuStart = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+    private final long allocatedStart = allocations == null ? 0
+            : allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+    /**
+     * Stops measuring and records the command.
+     *
+     * @param command    the command name.
+     * @param successful whether the command succeeded.
+     * @param dimensions the width and height of the image the command produced or used, or
+     *                   null if there is none.
+     */
+    void stop(String command, boolean successful, int[] dimensions) {
+      long wall = System.nanoTime() - wallStart;
+      long cpu = cpuTime ? threads.getCurrentThreadCpuTime() - cpuStart : 0;
+      long allocated = allocations == null ? 0
+              : allocations.getThreadAllocatedBytes(Thread.currentThread().getId())
+              - allocatedStart;
+      CommandStats stats = commands.computeIfAbsent(command, name -> new CommandStats());
+      synchronized (stats) {
+        stats.histograms[WALL].record(wall);
+        stats.histograms[CPU].record(cpu);
+        stats.histograms[ALLOCATED].record(allocated);
+        if (dimensions != null) {
+          stats.histograms[WIDTH].record(dimensions[0]);
+          stats.histograms[HEIGHT].record(dimensions[1]);
+        }
+        if (!successful) {
+          stats.failures++;
+        }
+      }
+    }
+  }
+
+  /**
+   * The histograms and failure count of one command name, guarded by its own lock.
+   */
+  private static class CommandStats {
+    private final Histogram[] histograms = new Histogram[METRICS.length];
+    private long failures;
+
+    /**
+     * Constructs empty statistics.
+     */
+    CommandStats() {
+      for (int metric = 0; metric < METRICS.length; metric++) {
+        histograms[metric] = new Histogram();
+      }
+    }
+  }
+
+  /**
+   * A histogram of non-negative values with four buckets per power of two, so that a
+   * percentile is known to within a quarter of its value. Values 0 to 3 have a bucket each.
+   */
+  static class Histogram {
+    private static final int SUB_BUCKETS = 4;
+    private final long[] buckets = new long[SUB_BUCKETS * 62];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Records one value; negative values are recorded as zero.
+     *
+     * @param value the value.
+     */
+    void record(long value) {
+      value = Math.max(0, value);
+      buckets[indexOf(value)]++;
+      count++;
+      sum += value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value a non-negative value.
+     * @return the index of its bucket.
+     */
+    static int indexOf(long value) {
+      if (value < SUB_BUCKETS) {
+        return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int mantissa = (int) (value >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+      return SUB_BUCKETS * (exponent - 1) + mantissa;
+    }
+
+    /**
+     * Returns the largest value that falls in a bucket.
+     *
+     * @param index the index of the bucket.
+     * @return the largest value of the bucket.
+     */
+    static long upperBoundOf(int index) {
+      if (index < SUB_BUCKETS) {
+        return index;
+      }
+      int exponent = index / SUB_BUCKETS + 1;
+      long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - 2);
+      return lower + (1L << (exponent - 2)) - 1;
+    }
+
+    /**
+     * Returns an upper estimate of a percentile: the largest value of the bucket that holds
+     * it, but no more than the largest recorded value.
+     *
+     * @param fraction the percentile as a fraction between 0 and 1.
+     * @return the estimate, or 0 if nothing was recorded.
+     */
+    long percentile(double fraction) {
+      long rank = (long) Math.ceil(fraction * count);
+      long seen = 0;
+      for (int index = 0; index < buckets.length; index++) {
+        seen += buckets[index];
+        if (seen >= rank && seen > 0) {
+          return Math.min(upperBoundOf(index), max);
+        }
+      }
+      return 0;
+    }
+
+    /**
+     * Returns the smallest recorded value.
+     *
+     * @return the minimum, or 0 if nothing was recorded.
+     */
+    long min() {
+      return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return the mean, or 0 if nothing was recorded.
+     */
+    double mean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Describes the median, 90th percentile and maximum in a given unit.
+     *
+     * @param unit the value of one unit, e.g. 1e6 for milliseconds of nanoseconds.
+     * @return the description.
+     */
+    String describe(double unit) {
+      return String.format(Locale.ROOT, "p50 %.1f p90 %.1f max %.1f",
+              percentile(0.5) / unit, percentile(0.9) / unit, max / unit);
+    }
+
+    /**
+     * Appends this histogram as a JSON object.
+     *
+     * @param json the text to append to.
+     */
+    void appendJson(StringBuilder json) {
+      json.append(String.format(Locale.ROOT,
+              "{\"count\": %d, \"sum\": %d, \"min\": %d, \"max\": %d, \"mean\": %.1f, "
+                      + "\"p50\": %d, \"p90\": %d, \"p99\": %d, \"buckets\": [",
+              count, sum, min(), max, mean(), percentile(0.5), percentile(0.9),
+              percentile(0.99)));
+      String separator = "";
+      for (int index = 0; index < buckets.length; index++) {
+        if (buckets[index] > 0) {
+          json.append(separator).append('[').append(upperBoundOf(index)).append(", ")
+                  .append(buckets[index]).append(']');
+          separator = ", ";
+        }
+      }
+      json.append("]}");
+    }
+  }
+}
@@ -1,86 +1,153 @@
 package controller;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 import model.image.Image;
-import model.image.Pixel;
 
 /**
  * This class provides static methods to render histograms from an array of values.
  * It is capable of creating an Image of a histogram for display or processing.
+ * The histogram is drawn straight into the channel arrays of the image, with the same
+ * pixels a Graphics2D line drawing would give, but without AWT and without allocating
+ * anything per pixel.
  */
 public class HistogramRenderer {
+  private static final int SIZE = 256;
+  private static final int GRID_SIZE = 16;
+  private static final int WHITE = 0xffffff;
+  private static final int LIGHT_GRAY = 0xc0c0c0;
+  private static final int RED = 0xff0000;
+  private static final int GREEN = 0x00ff00;
+  private static final int BLUE = 0x0000ff;
 
   /**
    * Generates an Image representing the histograms of the red, green, and blue color channels.
    * Each channel's histogram is normalized to the same scale for consistent representation.
+   * The given histograms are not modified.
    *
    * @param histograms An array containing three integer arrays, each representing the histogram
    *                   for a color channel with 256 values.
    * @return An Image object containing the visual representation of the histograms.
    */
   public static Image createHistogramImage(int[][] histograms) {
-    int width = 256;
-    int height = 256;
+    byte[][] channels = new byte[3][SIZE * SIZE];
+    fill(channels, WHITE);
 
+    drawGrid(channels, GRID_SIZE);
     int maxFrequency = findMaxFrequency(histograms);
+    drawHistogram(channels, histograms[0], maxFrequency, RED);
+    drawHistogram(channels, histograms[1], maxFrequency, GREEN);
+    drawHistogram(channels, histograms[2], maxFrequency, BLUE);
 
-    histograms[0] = normalizeHistogram(histograms[0], maxFrequency);
-    histograms[1] = normalizeHistogram(histograms[1], maxFrequency);
-    histograms[2] = normalizeHistogram(histograms[2], maxFrequency);
-
-    BufferedImage histogramImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-    Graphics2D graphics = histogramImage.createGraphics();
-
-    graphics.setColor(Color.WHITE);
-    graphics.fillRect(0, 0, width, height);
-
-    drawGrid(graphics, width, height, 16);
-    drawHistogram(graphics, histograms[0], Color.RED);
-    drawHistogram(graphics, histograms[1], Color.GREEN);
-    drawHistogram(graphics, histograms[2], Color.BLUE);
-
-    graphics.dispose();
-    return convertBufferedImageToImage(histogramImage);
+    return new Image(SIZE, SIZE, channels[0], channels[1], channels[2]);
   }
 
   /**
-   * Draws a histogram for a single color channel onto the given Graphics2D context.
-   * The histogram is represented as a line graph.
+   * Draws a histogram for a single color channel as a line graph, joining the normalized
+   * value of each intensity to the next.
    *
-   * @param graphics  The Graphics2D context where the histogram will be drawn.
-   * @param histogram An array of 256 integers representing the frequency of each color intensity.
-   * @param color     The color to draw the histogram with.
+   * @param channels     The red, green and blue channel arrays to draw into.
+   * @param histogram    An array of 256 integers representing the frequency of each color
+   *                     intensity.
+   * @param maxFrequency The frequency drawn at the top of the image.
+   * @param rgb          The color to draw the histogram with, packed as 0xRRGGBB.
    */
-  private static void drawHistogram(Graphics2D graphics, int[] histogram, Color color) {
-    graphics.setColor(color);
+  private static void drawHistogram(byte[][] channels, int[] histogram, int maxFrequency,
+                                    int rgb) {
+    int y = SIZE - normalize(histogram[0], maxFrequency);
     for (int i = 0; i < histogram.length - 1; i++) {
-      int value = histogram[i];
-      int valueNext = histogram[i + 1];
-      graphics.drawLine(i, 256 - value, i + 1, 256 - valueNext);
+      int yNext = SIZE - normalize(histogram[i + 1], maxFrequency);
+      drawLine(channels, i, y, i + 1, yNext, rgb);
+      y = yNext;
     }
   }
 
   /**
-   * Draws a grid on the given Graphics2D context to help visualize the histogram.
-   * The grid is drawn with a specified size separating the lines.
+   * Draws a grid to help visualize the histogram, with a line every given number of pixels.
    *
-   * @param graphics The Graphics2D context where the grid will be drawn.
-   * @param width    The width of the area where the grid should be drawn.
-   * @param height   The height of the area where the grid should be drawn.
+   * @param channels The red, green and blue channel arrays to draw into.
    * @param gridSize The size of each grid cell.
    */
-  private static void drawGrid(Graphics2D graphics, int width, int height, int gridSize) {
-    graphics.setColor(Color.LIGHT_GRAY);
-    for (int i = gridSize; i < width; i += gridSize) {
-      graphics.drawLine(i, 0, i, height);
+  private static void drawGrid(byte[][] channels, int gridSize) {
+    for (int i = gridSize; i < SIZE; i += gridSize) {
+      drawLine(channels, i, 0, i, SIZE, LIGHT_GRAY);
     }
-    for (int i = gridSize; i < height; i += gridSize) {
-      graphics.drawLine(0, i, width, i);
+    for (int i = gridSize; i < SIZE; i += gridSize) {
+      drawLine(channels, 0, i, SIZE, i, LIGHT_GRAY);
+    }
+  }
+
+  /**
+   * Draws a one pixel wide line between two points, both included, stepping along the
+   * longer axis and rounding the other coordinate as Graphics2D does. Points outside the
+   * image are left out.
+   *
+   * @param channels The red, green and blue channel arrays to draw into.
+   * @param x0       The x-coordinate of the first point.
+   * @param y0       The y-coordinate of the first point.
+   * @param x1       The x-coordinate of the second point.
+   * @param y1       The y-coordinate of the second point.
+   * @param rgb      The color of the line, packed as 0xRRGGBB.
+   */
+  private static void drawLine(byte[][] channels, int x0, int y0, int x1, int y1, int rgb) {
+    int dx = Math.abs(x1 - x0);
+    int dy = Math.abs(y1 - y0);
+    int stepX = x1 < x0 ? -1 : 1;
+    int stepY = y1 < y0 ? -1 : 1;
+    boolean xMajor = dx >= dy;
+    int steps = xMajor ? dx : dy;
+    int minor = xMajor ? dy : dx;
+    int error = -(steps + 1) / 2;
+    int x = x0;
+    int y = y0;
+    for (int step = 0; step <= steps; step++) {
+      setPixel(channels, x, y, rgb);
+      error += minor;
+      if (error >= 0) {
+        error -= steps;
+        if (xMajor) {
+          y += stepY;
+        } else {
+          x += stepX;
+        }
+      }
+      if (xMajor) {
+        x += stepX;
+      } else {
+        y += stepY;
+      }
     }
   }
 
+  /**
+   * Sets one pixel, if it lies within the image.
+   *
+   * @param channels The red, green and blue channel arrays to draw into.
+   * @param x        The x-coordinate of the pixel.
+   * @param y        The y-coordinate of the pixel.
+   * @param rgb      The color of the pixel, packed as 0xRRGGBB.
+   */
+  private static void setPixel(byte[][] channels, int x, int y, int rgb) {
+    if (x >= 0 && x < SIZE && y >= 0 && y < SIZE) {
+      int index = y * SIZE + x;
+      channels[0][index] = (byte) (rgb >> 16);
+      channels[1][index] = (byte) (rgb >> 8);
+      channels[2][index] = (byte) rgb;
+    }
+  }
+
+  /**
+   * Fills the whole image with one color.
+   *
+   * @param channels The red, green and blue channel arrays to fill.
+   * @param rgb      The color, packed as 0xRRGGBB.
+   */
+  private static void fill(byte[][] channels, int rgb) {
+    Arrays.fill(channels[0], (byte) (rgb >> 16));
+    Arrays.fill(channels[1], (byte) (rgb >> 8));
+    Arrays.fill(channels[2], (byte) rgb);
+  }
+
   /**
    * Finds the maximum frequency among the given histograms.
    *
@@ -98,34 +165,13 @@ public class HistogramRenderer {
   }
 
   /**
-   * Normalizes the given histogram array to the specified maximum frequency.
+   * Scales a frequency so that the maximum frequency becomes 255.
    *
-   * @param histogram    The histogram to be normalized.
-   * @param maxFrequency The maximum frequency to which the histogram will be normalized.
-   * @return The normalized histogram array.
+   * @param frequency    The frequency to scale.
+   * @param maxFrequency The maximum frequency of all histograms.
+   * @return The scaled frequency, or 0 if all frequencies are 0.
    */
-  private static int[] normalizeHistogram(int[] histogram, int maxFrequency) {
-    for (int i = 0; i < histogram.length; i++) {
-      histogram[i] = (histogram[i] * 255) / maxFrequency;
-    }
-    return histogram;
-  }
-
-  /**
-   * Converts a BufferedImage to an Image object.
-   *
-   * @param bufferedImage The BufferedImage to be converted.
-   * @return An Image object representing the same image as the BufferedImage.
-   */
-  private static Image convertBufferedImageToImage(BufferedImage bufferedImage) {
-    Pixel[][] pixels = new Pixel[bufferedImage.getHeight()][bufferedImage.getWidth()];
-    for (int y = 0; y < bufferedImage.getHeight(); y++) {
-      for (int x = 0; x < bufferedImage.getWidth(); x++) {
-        int rgb = bufferedImage.getRGB(x, y);
-        Color color = new Color(rgb, true);
-        pixels[y][x] = new Pixel(color.getRed(), color.getGreen(), color.getBlue());
-      }
-    }
-    return new Image(pixels);
+  private static int normalize(int frequency, int maxFrequency) {
+    return maxFrequency == 0 ? 0 : (int) ((long) frequency * 255 / maxFrequency);
   }
 }
@@ -1,7 +1,15 @@
 package controller;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import controller.commands.AdjustLevelsCommand;
 import controller.commands.BlueComponentCommand;
@@ -16,6 +24,7 @@ import controller.commands.ICommand;
 import controller.commands.IntensityComponentCommand;
 import controller.commands.LoadCommand;
 import controller.commands.LumaComponentCommand;
+import controller.commands.MaskedFilterCommand;
 import controller.commands.RGBCombineCommand;
 import controller.commands.RGBSplitCommand;
 import controller.commands.RedComponentCommand;
@@ -25,6 +34,15 @@ import controller.commands.SharpenCommand;
 import controller.commands.ValueComponentCommand;
 import controller.commands.VerticalFlipCommand;
 import model.IImageModel;
+import model.strategy.AdjustLevelsFilterStrategy;
+import model.strategy.BlurFilterStrategy;
+import model.strategy.ColorCorrectFilterStrategy;
+import model.strategy.FilterStrategy;
+import model.strategy.IntensityFilterStrategy;
+import model.strategy.LumaFilterStrategy;
+import model.strategy.SepiaFilterStrategy;
+import model.strategy.SharpenFilterStrategy;
+import model.strategy.ValueFilterStrategy;
 import view.IView;
 
 /**
@@ -41,6 +59,18 @@ public class ImageController implements IController {
    * The view through which user input is received and feedback is given.
    */
   private final IView view;
+  /**
+   * The number of threads that run independent script commands.
+   */
+  private final int parallelism;
+  /**
+   * The timing and allocation of the executed commands.
+   */
+  private final CommandMetrics metrics;
+  /**
+   * The directory files are confined to, or null if commands may use any path.
+   */
+  private final Path fileRoot;
 
   /**
    * Constructs an ImageController with a given image model and view.
@@ -49,8 +79,60 @@ public class ImageController implements IController {
    * @param view  The view to be used for user interaction.
    */
   public ImageController(IImageModel model, IView view) {
+    this(model, view, 1);
+  }
+
+  /**
+   * Constructs an ImageController that runs independent commands of a script concurrently.
+   * The model must be safe to use from several threads when the parallelism is above 1.
+   *
+   * @param model       The model to be used for image manipulations.
+   * @param view        The view to be used for user interaction.
+   * @param parallelism The number of threads that run script commands; 1 runs them serially.
+   * @throws IllegalArgumentException if the parallelism is not positive.
+   */
+  public ImageController(IImageModel model, IView view, int parallelism) {
+    this(model, view, parallelism, new CommandMetrics());
+  }
+
+  /**
+   * Constructs an ImageController that records the cost of its commands into given metrics,
+   * which may be shared with other controllers.
+   *
+   * @param model       The model to be used for image manipulations.
+   * @param view        The view to be used for user interaction.
+   * @param parallelism The number of threads that run script commands; 1 runs them serially.
+   * @param metrics     The metrics every executed command is recorded into.
+   * @throws IllegalArgumentException if the parallelism is not positive.
+   */
+  public ImageController(IImageModel model, IView view, int parallelism,
+                         CommandMetrics metrics) {
+    this(model, view, parallelism, metrics, null);
+  }
+
+  /**
+   * Constructs an ImageController whose load, save and run commands may only use files
+   * within a given directory. Paths are taken relative to that directory; absolute paths
+   * and paths with a ".." part are refused, so that clients who may run commands cannot
+   * reach other files of the user running the program.
+   *
+   * @param model       The model to be used for image manipulations.
+   * @param view        The view to be used for user interaction.
+   * @param parallelism The number of threads that run script commands; 1 runs them serially.
+   * @param metrics     The metrics every executed command is recorded into.
+   * @param fileRoot    The directory files are confined to, or null for no confinement.
+   * @throws IllegalArgumentException if the parallelism is not positive.
+   */
+  public ImageController(IImageModel model, IView view, int parallelism,
+                         CommandMetrics metrics, Path fileRoot) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive.");
+    }
     this.model = model;
     this.view = view;
+    this.parallelism = parallelism;
+    this.metrics = metrics;
+    this.fileRoot = fileRoot == null ? null : fileRoot.toAbsolutePath().normalize();
   }
 
   /**
@@ -75,7 +157,8 @@ public class ImageController implements IController {
 
   /**
    * Parses a script file and executes a list of commands.
-   * This method allows batch processing of multiple commands.
+   * This method allows batch processing of multiple commands. If the controller was given
+   * more than one thread, independent commands of the script run concurrently.
    *
    * @param filePath Path to the script file containing a list of commands.
    */
@@ -83,140 +166,70 @@ public class ImageController implements IController {
   public void runScript(String filePath) {
     try {
       IScriptParser scriptParser = new ScriptParser();
-      List<String> commands = scriptParser.parse(filePath);
-      for (String command : commands) {
-        executeCommand(command);
-      }
+      runCommands(scriptParser.parse(filePath));
     } catch (Exception e) {
       view.showError("Error running the script file.");
     }
 
   }
 
+  /**
+   * Executes a list of commands, concurrently where they are independent if the controller
+   * was given more than one thread.
+   *
+   * @param commands The commands to execute, in script order.
+   */
+  void runCommands(List<String> commands) {
+    if (parallelism > 1) {
+      runParallel(commands);
+    } else {
+      for (String command : commands) {
+        executeCommand(command);
+      }
+    }
+  }
+
   /**
    * Parses the given command and delegates it to the corresponding
    * command implementation.
    * After executing the command, it provides feedback about the
-   * operation's success or failure.
+   * operation's success or failure. The wall-clock time, CPU time, allocation and image
+   * size of every known command are recorded in the metrics, which the "metrics" command
+   * shows.
    *
    * @param command The command string input by the user.
    */
   private void executeCommand(String command) {
+    executeCommand(command, this.view);
+  }
+
+  /**
+   * Parses the given command, executes it, and reports the outcome through a given view.
+   *
+   * @param command The command string input by the user.
+   * @param view    The view to report the operation's success or failure to.
+   */
+  private void executeCommand(String command, IView view) {
     String[] parts = command.split(" ");
     boolean commandSuccessful;
-    ICommand newCommand;
     try {
       commandSuccessful = true;
-      Optional<Double> splitPercentage;
-      switch (parts[0]) {
-        case "load":
-          newCommand = new LoadCommand(parts[1], parts[2], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "save":
-          newCommand = new SaveCommand(parts[1], parts[2], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "red-component":
-          newCommand = new RedComponentCommand(parts[1], parts[2], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "green-component":
-          newCommand = new GreenComponentCommand(parts[1], parts[2], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "blue-component":
-          newCommand = new BlueComponentCommand(parts[1], parts[2], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "value-component":
-          splitPercentage = parts.length > 3 && parts[3].equals("split")
-                  ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
-          newCommand = new ValueComponentCommand(parts[1], parts[2], model, splitPercentage);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "luma-component":
-          splitPercentage = parts.length > 3 && parts[3].equals("split")
-                  ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
-          newCommand = new LumaComponentCommand(parts[1], parts[2], model, splitPercentage);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "intensity-component":
-          splitPercentage = parts.length > 3 && parts[3].equals("split")
-                  ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
-          newCommand = new IntensityComponentCommand(parts[1], parts[2], model, splitPercentage);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "horizontal-flip":
-          newCommand = new HorizontalFlipCommand(parts[1], parts[2], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "vertical-flip":
-          newCommand = new VerticalFlipCommand(parts[1], parts[2], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "brighten":
-          int inc = Integer.parseInt(parts[1]);
-          newCommand = new BrightenCommand(inc, parts[2], parts[3], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "rgb-split":
-          newCommand = new RGBSplitCommand(parts[1], parts[2], parts[3], parts[4], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "rgb-combine":
-          newCommand = new RGBCombineCommand(parts[1], parts[2], parts[3], parts[4], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "blur":
-          splitPercentage = parts.length > 3 && parts[3].equals("split")
-                  ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
-          newCommand = new BlurCommand(parts[1], parts[2], model, splitPercentage);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "sharpen":
-          splitPercentage = parts.length > 3 && parts[3].equals("split")
-                  ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
-          newCommand = new SharpenCommand(parts[1], parts[2], model, splitPercentage);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "sepia":
-          splitPercentage = parts.length > 3 && parts[3].equals("split")
-                  ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
-          newCommand = new SepiaCommand(parts[1], parts[2], model, splitPercentage);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "compress":
-          int cr = Integer.parseInt(parts[1]);
-          newCommand = new CompressCommand(cr, parts[2], parts[3], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "histogram":
-          newCommand = new HistogramCommand(parts[1], parts[2], model);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "color-correct":
-          splitPercentage = parts.length > 3 && parts[3].equals("split")
-                  ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
-          newCommand = new ColorCorrectCommand(parts[1], parts[2], model, splitPercentage);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "levels-adjust":
-          splitPercentage = parts.length > 6 && parts[6].equals("split")
-                  ? Optional.of(Double.parseDouble(parts[7])) : Optional.empty();
-          int b = Integer.parseInt(parts[1]);
-          int m = Integer.parseInt(parts[2]);
-          int w = Integer.parseInt(parts[3]);
-          newCommand = new AdjustLevelsCommand(b, m, w, parts[4], parts[5], model, splitPercentage);
-          commandSuccessful = newCommand.execute();
-          break;
-        case "run":
-          runScript(parts[1]);
-          break;
-        default:
+      if ("run".equals(parts[0])) {
+        runScript(confine(parts[1]));
+      } else if ("metrics".equals(parts[0])) {
+        for (String line : metrics.summary()) {
+          view.showMessage(line);
+        }
+      } else {
+        ICommand newCommand = createCommand(parts);
+        if (newCommand == null) {
           view.showError("Unknown command " + parts[0]);
           commandSuccessful = false;
-          break;
+        } else {
+          CommandMetrics.Measurement measurement = metrics.start();
+          commandSuccessful = newCommand.execute();
+          measurement.stop(parts[0], commandSuccessful, dimensionsOf(newCommand));
+        }
       }
     } catch (Exception e) {
       view.showError("Error executing command: " + e.getMessage());
@@ -228,4 +241,309 @@ public class ImageController implements IController {
       view.showError(parts[0] + " operation failed.");
     }
   }
+
+  /**
+   * Finds the size of the image a command produced, or of the image it used if it produced
+   * none, such as a save.
+   *
+   * @param command The executed command.
+   * @return the width and height of the image, or null if none of its names is an image.
+   */
+  private int[] dimensionsOf(ICommand command) {
+    List<String> names = new ArrayList<>(command.getDestinations());
+    names.addAll(command.getSources());
+    for (String name : names) {
+      try {
+        return model.getImageDimensions(name);
+      } catch (IOException e) {
+        // Not an image, such as the file of a save; try the next name.
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Creates the command implementation for a parsed command.
+   *
+   * @param parts The command name followed by its arguments.
+   * @return the command, or null if the command name is unknown.
+   * @throws RuntimeException if the arguments are missing or malformed.
+   */
+  private ICommand createCommand(String[] parts) {
+    ICommand maskedCommand = createMaskedCommand(parts);
+    if (maskedCommand != null) {
+      return maskedCommand;
+    }
+    ICommand newCommand;
+    Optional<Double> splitPercentage;
+    switch (parts[0]) {
+      case "load":
+        newCommand = new LoadCommand(confine(parts[1]), parts[2], model);
+        break;
+      case "save":
+        newCommand = new SaveCommand(confine(parts[1]), parts[2], model,
+                parts.length > 3 && parts[3].equals("binary"));
+        break;
+      case "red-component":
+        newCommand = new RedComponentCommand(parts[1], parts[2], model);
+        break;
+      case "green-component":
+        newCommand = new GreenComponentCommand(parts[1], parts[2], model);
+        break;
+      case "blue-component":
+        newCommand = new BlueComponentCommand(parts[1], parts[2], model);
+        break;
+      case "value-component":
+        splitPercentage = parts.length > 3 && parts[3].equals("split")
+                ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
+        newCommand = new ValueComponentCommand(parts[1], parts[2], model, splitPercentage);
+        break;
+      case "luma-component":
+        splitPercentage = parts.length > 3 && parts[3].equals("split")
+                ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
+        newCommand = new LumaComponentCommand(parts[1], parts[2], model, splitPercentage);
+        break;
+      case "intensity-component":
+        splitPercentage = parts.length > 3 && parts[3].equals("split")
+                ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
+        newCommand = new IntensityComponentCommand(parts[1], parts[2], model, splitPercentage);
+        break;
+      case "horizontal-flip":
+        newCommand = new HorizontalFlipCommand(parts[1], parts[2], model);
+        break;
+      case "vertical-flip":
+        newCommand = new VerticalFlipCommand(parts[1], parts[2], model);
+        break;
+      case "brighten":
+        int inc = Integer.parseInt(parts[1]);
+        newCommand = new BrightenCommand(inc, parts[2], parts[3], model);
+        break;
+      case "rgb-split":
+        newCommand = new RGBSplitCommand(parts[1], parts[2], parts[3], parts[4], model);
+        break;
+      case "rgb-combine":
+        newCommand = new RGBCombineCommand(parts[1], parts[2], parts[3], parts[4], model);
+        break;
+      case "blur":
+        splitPercentage = parts.length > 3 && parts[3].equals("split")
+                ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
+        newCommand = new BlurCommand(parts[1], parts[2], model, splitPercentage);
+        break;
+      case "sharpen":
+        splitPercentage = parts.length > 3 && parts[3].equals("split")
+                ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
+        newCommand = new SharpenCommand(parts[1], parts[2], model, splitPercentage);
+        break;
+      case "sepia":
+        splitPercentage = parts.length > 3 && parts[3].equals("split")
+                ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
+        newCommand = new SepiaCommand(parts[1], parts[2], model, splitPercentage);
+        break;
+      case "compress":
+        int cr = Integer.parseInt(parts[1]);
+        Optional<Integer> blockSize = parts.length > 4 && parts[4].equals("block")
+                ? Optional.of(Integer.parseInt(parts[5])) : Optional.empty();
+        newCommand = new CompressCommand(cr, parts[2], parts[3], model, blockSize);
+        break;
+      case "histogram":
+        newCommand = new HistogramCommand(parts[1], parts[2], model);
+        break;
+      case "color-correct":
+        splitPercentage = parts.length > 3 && parts[3].equals("split")
+                ? Optional.of(Double.parseDouble(parts[4])) : Optional.empty();
+        newCommand = new ColorCorrectCommand(parts[1], parts[2], model, splitPercentage);
+        break;
+      case "levels-adjust":
+        splitPercentage = parts.length > 6 && parts[6].equals("split")
+                ? Optional.of(Double.parseDouble(parts[7])) : Optional.empty();
+        int b = Integer.parseInt(parts[1]);
+        int m = Integer.parseInt(parts[2]);
+        int w = Integer.parseInt(parts[3]);
+        newCommand = new AdjustLevelsCommand(b, m, w, parts[4], parts[5], model, splitPercentage);
+        break;
+      default:
+        newCommand = null;
+        break;
+    }
+    return newCommand;
+  }
+
+  /**
+   * Resolves the path of a file a command reads or writes against the file root, if the
+   * controller has one.
+   *
+   * @param path The path given in the command.
+   * @return the path to use, unchanged if there is no file root.
+   * @throws IllegalArgumentException if the path is absolute or leaves the file root.
+   */
+  private String confine(String path) {
+    if (fileRoot == null) {
+      return path;
+    }
+    Path given = fileRoot.getFileSystem().getPath(path);
+    for (Path part : given) {
+      if ("..".equals(part.toString())) {
+        throw new IllegalArgumentException("Path must not leave the file root: " + path);
+      }
+    }
+    Path resolved = fileRoot.resolve(given).normalize();
+    if (given.isAbsolute() || given.getRoot() != null || !resolved.startsWith(fileRoot)) {
+      throw new IllegalArgumentException("Path must be relative to the file root: " + path);
+    }
+    return resolved.toString();
+  }
+
+  /**
+   * Creates the command for a filter limited to the pixels selected by a mask image. Every
+   * filter that accepts "split" accepts "mask" followed by the name of the mask image in
+   * its place instead, for example "blur image dest mask mask-image".
+   *
+   * @param parts The command name followed by its arguments.
+   * @return the command, or null if the command does not use a mask.
+   * @throws RuntimeException if the arguments of levels adjustment are malformed.
+   */
+  private ICommand createMaskedCommand(String[] parts) {
+    boolean levels = parts[0].equals("levels-adjust");
+    int option = levels ? 6 : 3;
+    if (parts.length != option + 2 || !parts[option].equals("mask")) {
+      return null;
+    }
+    FilterStrategy strategy;
+    switch (parts[0]) {
+      case "value-component":
+        strategy = new ValueFilterStrategy();
+        break;
+      case "luma-component":
+        strategy = new LumaFilterStrategy();
+        break;
+      case "intensity-component":
+        strategy = new IntensityFilterStrategy();
+        break;
+      case "blur":
+        strategy = new BlurFilterStrategy();
+        break;
+      case "sharpen":
+        strategy = new SharpenFilterStrategy();
+        break;
+      case "sepia":
+        strategy = new SepiaFilterStrategy();
+        break;
+      case "color-correct":
+        strategy = new ColorCorrectFilterStrategy();
+        break;
+      case "levels-adjust":
+        strategy = new AdjustLevelsFilterStrategy(Integer.parseInt(parts[1]),
+                Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        break;
+      default:
+        return null;
+    }
+    return new MaskedFilterCommand(parts[option - 2], parts[option - 1], parts[option + 1],
+            strategy, model);
+  }
+
+  /**
+   * Runs the commands of a script on a thread pool, following the data dependencies between
+   * them. A command waits for every earlier command that writes one of the names it reads
+   * or writes, and for every earlier command that reads one of the names it writes; all
+   * other commands run concurrently. Every image and file therefore sees the same
+   * sequence of reads and writes as in a serial run, and the messages of each command are
+   * shown in script order once it completes. Commands that cannot be parsed, unknown
+   * commands and nested scripts run alone, after everything before them.
+   *
+   * @param commands The commands of the script.
+   */
+  private void runParallel(List<String> commands) {
+    ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+    try {
+      List<CompletableFuture<Void>> tasks = new ArrayList<>();
+      List<BufferedView> outputs = new ArrayList<>();
+      Map<String, CompletableFuture<Void>> lastWriters = new HashMap<>();
+      Map<String, List<CompletableFuture<Void>>> readers = new HashMap<>();
+      for (String command : commands) {
+        ICommand parsed = parseQuietly(command);
+        if (parsed == null) {
+          showInOrder(tasks, outputs);
+          executeCommand(command);
+          lastWriters.clear();
+          readers.clear();
+          continue;
+        }
+
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (String source : parsed.getSources()) {
+          addIfPresent(dependencies, lastWriters.get(source));
+        }
+        for (String destination : parsed.getDestinations()) {
+          addIfPresent(dependencies, lastWriters.get(destination));
+          dependencies.addAll(readers.getOrDefault(destination, List.of()));
+        }
+
+        BufferedView output = new BufferedView();
+        CompletableFuture<Void> task = CompletableFuture
+                .allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                .thenRunAsync(() -> executeCommand(command, output), pool);
+        tasks.add(task);
+        outputs.add(output);
+
+        for (String source : parsed.getSources()) {
+          readers.computeIfAbsent(source, name -> new ArrayList<>()).add(task);
+        }
+        for (String destination : parsed.getDestinations()) {
+          lastWriters.put(destination, task);
+          readers.remove(destination);
+        }
+      }
+      showInOrder(tasks, outputs);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Creates the command implementation for a command line without reporting errors.
+   *
+   * @param command The command string.
+   * @return the command, or null if it is a nested script, unknown or malformed.
+   */
+  private ICommand parseQuietly(String command) {
+    String[] parts = command.split(" ");
+    if ("run".equals(parts[0])) {
+      return null;
+    }
+    try {
+      return createCommand(parts);
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Adds a task to a list of dependencies if there is one.
+   *
+   * @param dependencies the dependencies of a command.
+   * @param task         the task the command depends on, or null.
+   */
+  private static void addIfPresent(List<CompletableFuture<Void>> dependencies,
+                                   CompletableFuture<Void> task) {
+    if (task != null) {
+      dependencies.add(task);
+    }
+  }
+
+  /**
+   * Waits for submitted commands in script order and shows the messages of each as soon as
+   * it and all commands before it have completed.
+   *
+   * @param tasks   the submitted commands, in script order.
+   * @param outputs the messages of each command.
+   */
+  private void showInOrder(List<CompletableFuture<Void>> tasks, List<BufferedView> outputs) {
+    for (int i = 0; i < tasks.size(); i++) {
+      tasks.get(i).join();
+      outputs.get(i).showOn(view);
+    }
+    tasks.clear();
+    outputs.clear();
+  }
 }
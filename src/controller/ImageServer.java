@@ -0,0 +1,145 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.IImageModel;
+import view.StreamView;
+
+/**
+ * Serves the command language to many clients at once over a local socket, so that
+ * short jobs do not pay for starting and warming up a program each time.
+ * The server listens on the loopback interface only. Each connection gets its own
+ * controller, which reads commands one per line and replies with the same messages the
+ * console shows, the last line of each reply ending in "operation successful." or
+ * "operation failed.". All connections share one model, so an image loaded by one client
+ * stays available to later requests and to other clients under the same name. The model
+ * must therefore be safe to use from several threads.
+ * Any local user or process can connect to the port, so the files clients load, save and
+ * run are confined to a root directory, the working directory unless another is given:
+ * their paths are taken relative to it, and absolute paths or paths with a ".." part are
+ * refused.
+ */
+public class ImageServer implements Closeable {
+  private final IImageModel model;
+  private final CommandMetrics metrics;
+  private final Path fileRoot;
+  private final ServerSocket serverSocket;
+  private final ExecutorService connections = Executors.newCachedThreadPool();
+  private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Opens a server socket on the loopback interface.
+   *
+   * @param model the model shared by all connections.
+   * @param port  the port to listen on, or 0 to pick a free one.
+   * @throws IOException if the socket cannot be opened.
+   */
+  public ImageServer(IImageModel model, int port) throws IOException {
+    this(model, port, new CommandMetrics());
+  }
+
+  /**
+   * Opens a server socket on the loopback interface, recording the commands of all
+   * connections into given metrics, which clients can show with the "metrics" command.
+   * Clients may only use files within the working directory.
+   *
+   * @param model   the model shared by all connections.
+   * @param port    the port to listen on, or 0 to pick a free one.
+   * @param metrics the metrics every command is recorded into.
+   * @throws IOException if the socket cannot be opened.
+   */
+  public ImageServer(IImageModel model, int port, CommandMetrics metrics) throws IOException {
+    this(model, port, metrics, Paths.get(""));
+  }
+
+  /**
+   * Opens a server socket on the loopback interface whose clients may only use files
+   * within a given directory.
+   *
+   * @param model    the model shared by all connections.
+   * @param port     the port to listen on, or 0 to pick a free one.
+   * @param metrics  the metrics every command is recorded into.
+   * @param fileRoot the directory the files of all clients are confined to.
+   * @throws IOException if the socket cannot be opened.
+   */
+  public ImageServer(IImageModel model, int port, CommandMetrics metrics, Path fileRoot)
+          throws IOException {
+    this.model = model;
+    this.metrics = metrics;
+    this.fileRoot = fileRoot;
+    this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+  }
+
+  /**
+   * Returns the port the server listens on.
+   *
+   * @return the local port of the server socket.
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Accepts connections and serves each on its own thread, until the server is closed.
+   *
+   * @throws IOException if accepting a connection fails for a reason other than the
+   *                     server being closed.
+   */
+  public void serve() throws IOException {
+    while (!serverSocket.isClosed()) {
+      Socket client;
+      try {
+        client = serverSocket.accept();
+      } catch (SocketException e) {
+        if (serverSocket.isClosed()) {
+          return;
+        }
+        throw e;
+      }
+      clients.add(client);
+      connections.execute(() -> handle(client));
+    }
+  }
+
+  /**
+   * Runs the commands of one connection until the client sends "exit" or disconnects.
+   *
+   * @param client the connected socket.
+   */
+  private void handle(Socket client) {
+    try (client) {
+      StreamView view = new StreamView(client.getInputStream(), client.getOutputStream());
+      new ImageController(model, view, 1, metrics, fileRoot).execute();
+    } catch (IOException | UncheckedIOException e) {
+      // The client went away; there is nobody left to report to.
+    } finally {
+      clients.remove(client);
+    }
+  }
+
+  /**
+   * Stops accepting connections and closes the open ones.
+   *
+   * @throws IOException if the server socket cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket client : clients) {
+      client.close();
+    }
+    connections.shutdown();
+  }
+}
@@ -0,0 +1,195 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the tokens of a Netpbm (PPM or PGM) file straight from the bytes of the file.
+ * The file is read through a fixed-size buffer, so memory use does not depend on the
+ * size of the file, and numbers are parsed from their digits without creating Strings.
+ * Whitespace separates tokens, and a '#' starts a comment that runs to the end of the line.
+ * The samples of binary files are not tokenized but mapped into memory after the header.
+ */
+final class NetpbmReader implements Closeable {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+
+  /**
+   * Opens the file at the given path for reading.
+   *
+   * @param path the path of the file to read
+   * @throws IOException if the file cannot be opened
+   */
+  NetpbmReader(String path) throws IOException {
+    this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.buffer.flip();
+  }
+
+  /**
+   * Reads the two-character magic number at the start of the file, such as "P3".
+   *
+   * @return the magic number
+   * @throws IOException if the file cannot be read or ends before the magic number
+   */
+  String readMagic() throws IOException {
+    int first = skipSeparators();
+    int second = read();
+    if (first < 0 || second < 0) {
+      throw new IOException("Unexpected end of file.");
+    }
+    return new String(new char[]{(char) first, (char) second});
+  }
+
+  /**
+   * Reads the width, height and maximum value that follow the magic number, and checks
+   * that the maximum value fits in one byte.
+   *
+   * @return the width and the height of the image
+   * @throws IOException if the file cannot be read or the header is not valid
+   */
+  int[] readHeader() throws IOException {
+    int width = nextInt();
+    int height = nextInt();
+    int maxValue = nextInt();
+
+    if (maxValue > 255) {
+      throw new IOException("Unsupported color depth. Maximum value "
+              + "should be 255.");
+    }
+    if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE) {
+      throw new IOException("Unsupported image dimensions " + width + "x" + height + ".");
+    }
+    return new int[]{width, height};
+  }
+
+  /**
+   * Reads the next whitespace-separated decimal integer, which may have a leading minus sign.
+   *
+   * @return the integer read
+   * @throws IOException if the file cannot be read, ends before the next number,
+   *                     or the next token is not a number
+   */
+  int nextInt() throws IOException {
+    int c = skipSeparators();
+    if (c < 0) {
+      throw new IOException("Unexpected end of file.");
+    }
+    boolean negative = c == '-';
+    if (negative) {
+      c = read();
+    }
+    if (c < '0' || c > '9') {
+      throw new IOException("Invalid number in file.");
+    }
+    int value = 0;
+    do {
+      if (value > (Integer.MAX_VALUE - (c - '0')) / 10) {
+        throw new IOException("Number in file is too large.");
+      }
+      value = value * 10 + (c - '0');
+      c = read();
+    } while (c >= '0' && c <= '9');
+    if (c == '#') {
+      unread();
+    } else if (c >= 0 && !isWhitespace(c)) {
+      throw new IOException("Invalid number in file.");
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Maps the next bytes of the file into memory, for reading the samples of a binary
+   * file straight from the file cache. The bytes are skipped by this reader.
+   *
+   * @param count the number of bytes to map
+   * @return a read-only buffer over the bytes
+   * @throws IOException if the file cannot be mapped or has fewer bytes left
+   */
+  ByteBuffer mapBytes(long count) throws IOException {
+    long position = channel.position() - buffer.remaining();
+    if (channel.size() - position < count) {
+      throw new IOException("Unexpected end of file.");
+    }
+    ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, position, count);
+    channel.position(position + count);
+    buffer.clear();
+    buffer.flip();
+    return bytes;
+  }
+
+  /**
+   * Closes the file.
+   *
+   * @throws IOException if the file cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Skips whitespace and comments.
+   *
+   * @return the first byte after them, or -1 at the end of the file
+   * @throws IOException if the file cannot be read
+   */
+  private int skipSeparators() throws IOException {
+    int c = read();
+    while (true) {
+      if (c == '#') {
+        do {
+          c = read();
+        } while (c >= 0 && c != '\n' && c != '\r');
+      } else if (c >= 0 && isWhitespace(c)) {
+        c = read();
+      } else {
+        return c;
+      }
+    }
+  }
+
+  /**
+   * Reads the next byte, refilling the buffer from the file when it is empty.
+   *
+   * @return the next byte as an unsigned value, or -1 at the end of the file
+   * @throws IOException if the file cannot be read
+   */
+  private int read() throws IOException {
+    if (!buffer.hasRemaining()) {
+      buffer.clear();
+      int count;
+      do {
+        count = channel.read(buffer);
+      } while (count == 0);
+      buffer.flip();
+      if (count < 0) {
+        return -1;
+      }
+    }
+    return buffer.get() & 0xff;
+  }
+
+  /**
+   * Steps back over the byte that was just read, so that it is read again.
+   */
+  private void unread() {
+    buffer.position(buffer.position() - 1);
+  }
+
+  /**
+   * Checks whether a byte is whitespace in a Netpbm file.
+   *
+   * @param c the byte to check
+   * @return true if the byte is a space, tab, line feed, vertical tab, form feed or return
+   */
+  private static boolean isWhitespace(int c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+}
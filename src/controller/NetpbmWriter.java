@@ -0,0 +1,160 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a Netpbm (PPM or PGM) file through a fixed-size buffer. Integers are formatted into
+ * the buffer digit by digit, so writing pixel values does not create any Strings.
+ */
+final class NetpbmWriter implements Closeable {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final byte[][] SAMPLES = new byte[256][];
+
+  static {
+    for (int value = 0; value < SAMPLES.length; value++) {
+      SAMPLES[value] = Integer.toString(value).getBytes();
+    }
+  }
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final byte[] digits;
+
+  /**
+   * Creates or truncates the file at the given path for writing.
+   *
+   * @param path the path of the file to write
+   * @throws IOException if the file cannot be opened
+   */
+  NetpbmWriter(String path) throws IOException {
+    this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    this.digits = new byte[11];
+  }
+
+  /**
+   * Writes a single byte, such as a separator character.
+   *
+   * @param b the byte to write
+   * @throws IOException if the file cannot be written
+   */
+  void write(int b) throws IOException {
+    if (!buffer.hasRemaining()) {
+      flush();
+    }
+    buffer.put((byte) b);
+  }
+
+  /**
+   * Writes a range of bytes, such as a row of samples of a binary file.
+   *
+   * @param bytes  the array holding the bytes
+   * @param offset the index of the first byte to write
+   * @param length the number of bytes to write
+   * @throws IOException if the file cannot be written
+   */
+  void write(byte[] bytes, int offset, int length) throws IOException {
+    while (length > 0) {
+      if (!buffer.hasRemaining()) {
+        flush();
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.put(bytes, offset, count);
+      offset += count;
+      length -= count;
+    }
+  }
+
+  /**
+   * Writes the header of a Netpbm file with a maximum value of 255.
+   *
+   * @param magic  the magic number, such as "P3"
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @throws IOException if the file cannot be written
+   */
+  void writeHeader(String magic, int width, int height) throws IOException {
+    writeAscii(magic);
+    write('\n');
+    writeInt(width);
+    write(' ');
+    writeInt(height);
+    write('\n');
+    writeAscii("255\n");
+  }
+
+  /**
+   * Writes the bytes of a string of ASCII characters, such as a magic number.
+   *
+   * @param text the text to write
+   * @throws IOException if the file cannot be written
+   */
+  void writeAscii(String text) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      write(text.charAt(i));
+    }
+  }
+
+  /**
+   * Writes an integer in decimal.
+   *
+   * @param value the integer to write
+   * @throws IOException if the file cannot be written
+   */
+  void writeInt(int value) throws IOException {
+    if (value >= 0 && value < SAMPLES.length) {
+      byte[] sample = SAMPLES[value];
+      if (buffer.remaining() < sample.length) {
+        flush();
+      }
+      buffer.put(sample);
+      return;
+    }
+    long remaining = Math.abs((long) value);
+    int start = digits.length;
+    do {
+      digits[--start] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    } while (remaining > 0);
+    if (value < 0) {
+      digits[--start] = '-';
+    }
+    if (buffer.remaining() < digits.length - start) {
+      flush();
+    }
+    buffer.put(digits, start, digits.length - start);
+  }
+
+  /**
+   * Writes the buffered bytes and closes the file.
+   *
+   * @throws IOException if the file cannot be written or closed
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Writes the buffered bytes to the file and empties the buffer.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
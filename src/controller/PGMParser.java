@@ -0,0 +1,81 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+
+import model.image.Image;
+
+/**
+ * Implements the IImageFileParser interface for parsing PGM (grayscale) image files.
+ * Both the plain (P2) and the binary (P5) variants are loaded, and images are saved as
+ * binary PGM. A loaded image uses one array for all three channels. The samples of
+ * binary files are mapped into memory and copied into that array in one step.
+ */
+public class PGMParser implements IImageFileParser {
+
+  /**
+   * Loads the image from a specified path in the PGM format.
+   *
+   * @param path the path of the PGM image file to be loaded
+   * @return an Image object representing the loaded grayscale image
+   * @throws IOException if there's an error reading the file or
+   *                     the file is not a valid PGM
+   */
+  @Override
+  public Image loadImage(String path) throws IOException {
+    NetpbmReader reader;
+    try {
+      reader = new NetpbmReader(path);
+    } catch (NoSuchFileException e) {
+      throw new IOException("File " + path + " not found!", e);
+    }
+
+    try (NetpbmReader sc = reader) {
+      String magic = sc.readMagic();
+      if (!magic.equals("P2") && !magic.equals("P5")) {
+        throw new IOException("Invalid PGM file: file should begin with P2 or P5");
+      }
+
+      int[] dimensions = sc.readHeader();
+      int width = dimensions[0];
+      int height = dimensions[1];
+      byte[] gray = new byte[width * height];
+
+      if (magic.equals("P5")) {
+        sc.mapBytes(gray.length).get(gray);
+      } else {
+        for (int i = 0; i < gray.length; i++) {
+          gray[i] = PPMParser.clamp(sc.nextInt());
+        }
+      }
+      return new Image(width, height, gray, gray, gray);
+    }
+  }
+
+  /**
+   * Saves the given Image object to the specified path in binary PGM format.
+   * Images whose channels differ are saved as their luma component.
+   *
+   * @param path  the path where the PGM image file will be saved
+   * @param image the Image object to save
+   * @throws IOException if there's an error writing to the file
+   */
+  @Override
+  public void saveImage(String path, Image image) throws IOException {
+    if (image == null) {
+      throw new IOException("No image data to save.");
+    }
+
+    byte[] gray = image.getRedChannel();
+    if (!Arrays.equals(gray, image.getGreenChannel())
+            || !Arrays.equals(gray, image.getBlueChannel())) {
+      gray = image.toLumaComponent().getRedChannel();
+    }
+
+    try (NetpbmWriter writer = new NetpbmWriter(path)) {
+      writer.writeHeader("P5", image.getWidth(), image.getHeight());
+      writer.write(gray, 0, gray.length);
+    }
+  }
+}
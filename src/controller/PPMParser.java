@@ -1,19 +1,37 @@
 package controller;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Scanner;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
 
 import model.image.Image;
-import model.image.Pixel;
 
 /**
  * Implements the IImageFileParser interface for parsing PPM image files.
+ * Both the plain (P3) and the binary (P6) variants are loaded; images are saved as
+ * plain PPM unless the parser is created for binary output.
+ * Plain files are read and written through fixed-size buffers, one value at a time, and
+ * the samples of binary files are mapped into memory and copied row by row, so apart
+ * from the image itself memory use does not grow with the size of the file.
  */
 public class PPMParser implements IImageFileParser {
+  private final boolean binary;
+
+  /**
+   * Constructs a PPMParser that saves images as plain (P3) PPM files.
+   */
+  public PPMParser() {
+    this(false);
+  }
+
+  /**
+   * Constructs a PPMParser that saves images as binary (P6) or plain (P3) PPM files.
+   *
+   * @param binary whether images are saved as binary PPM files
+   */
+  public PPMParser(boolean binary) {
+    this.binary = binary;
+  }
 
   /**
    * Loads the image from a specified path in the PPM format.
@@ -25,50 +43,48 @@ public class PPMParser implements IImageFileParser {
    */
   @Override
   public Image loadImage(String path) throws IOException {
-    Scanner sc;
-
+    NetpbmReader reader;
     try {
-      sc = new Scanner(new FileInputStream(path));
-    } catch (FileNotFoundException e) {
+      reader = new NetpbmReader(path);
+    } catch (NoSuchFileException e) {
       throw new IOException("File " + path + " not found!", e);
     }
 
-    StringBuilder builder = new StringBuilder();
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s + System.lineSeparator());
+    try (NetpbmReader sc = reader) {
+      String magic = sc.readMagic();
+      if (!magic.equals("P3") && !magic.equals("P6")) {
+        throw new IOException("Invalid PPM file: plain RAW file should "
+                + "begin with P3");
       }
-    }
-
-    sc = new Scanner(builder.toString());
-
-    if (!sc.next().equals("P3")) {
-      throw new IOException("Invalid PPM file: plain RAW file should "
-              + "begin with P3");
-    }
-
-    int width = sc.nextInt();
-    int height = sc.nextInt();
-    int maxValue = sc.nextInt();
 
-    if (maxValue > 255) {
-      throw new IOException("Unsupported color depth. Maximum value "
-              + "should be 255.");
-    }
-
-    Image image = new Image(new Pixel[height][width]);
-
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        int red = sc.nextInt();
-        int green = sc.nextInt();
-        int blue = sc.nextInt();
-        image.setPixel(x, y, new Pixel(red, green, blue));
+      int[] dimensions = sc.readHeader();
+      int width = dimensions[0];
+      int height = dimensions[1];
+      int size = width * height;
+      byte[] red = new byte[size];
+      byte[] green = new byte[size];
+      byte[] blue = new byte[size];
+
+      if (magic.equals("P6")) {
+        ByteBuffer samples = sc.mapBytes(3L * size);
+        byte[] row = new byte[3 * width];
+        for (int y = 0; y < height; y++) {
+          samples.get(row);
+          for (int x = 0, index = y * width; x < width; x++, index++) {
+            red[index] = row[3 * x];
+            green[index] = row[3 * x + 1];
+            blue[index] = row[3 * x + 2];
+          }
+        }
+      } else {
+        for (int i = 0; i < size; i++) {
+          red[i] = clamp(sc.nextInt());
+          green[i] = clamp(sc.nextInt());
+          blue[i] = clamp(sc.nextInt());
+        }
       }
+      return new Image(width, height, red, green, blue);
     }
-
-    return image;
   }
 
   /**
@@ -80,26 +96,53 @@ public class PPMParser implements IImageFileParser {
    */
   @Override
   public void saveImage(String path, Image image) throws IOException {
-    if (image.getPixels() == null) {
+    if (image == null) {
       throw new IOException("No image data to save.");
     }
 
     int height = image.getHeight();
     int width = image.getWidth();
-
-    try (FileWriter writer = new FileWriter(new File(path))) {
-      writer.write("P3\n");
-      writer.write(width + " " + height + "\n");
-      writer.write("255\n");
+    byte[] red = image.getRedChannel();
+    byte[] green = image.getGreenChannel();
+    byte[] blue = image.getBlueChannel();
+
+    try (NetpbmWriter writer = new NetpbmWriter(path)) {
+      writer.writeHeader(binary ? "P6" : "P3", width, height);
+
+      if (binary) {
+        byte[] row = new byte[3 * width];
+        for (int y = 0; y < height; y++) {
+          for (int x = 0, index = y * width; x < width; x++, index++) {
+            row[3 * x] = red[index];
+            row[3 * x + 1] = green[index];
+            row[3 * x + 2] = blue[index];
+          }
+          writer.write(row, 0, row.length);
+        }
+        return;
+      }
 
       for (int y = 0; y < height; y++) {
-        for (int x = 0; x < width; x++) {
-          Pixel pixel = image.getPixel(x, y);
-          writer.write(pixel.getRed() + " " + pixel.getGreen()
-                  + " " + pixel.getBlue() + " ");
+        for (int index = y * width; index < (y + 1) * width; index++) {
+          writer.writeInt(red[index] & 0xff);
+          writer.write(' ');
+          writer.writeInt(green[index] & 0xff);
+          writer.write(' ');
+          writer.writeInt(blue[index] & 0xff);
+          writer.write(' ');
         }
-        writer.write("\n");
+        writer.write('\n');
       }
     }
   }
+
+  /**
+   * Clamps a color value to the range 0 to 255, as a Pixel would.
+   *
+   * @param value the color value read from the file
+   * @return the clamped value as an unsigned byte
+   */
+  static byte clamp(int value) {
+    return (byte) Math.max(0, Math.min(255, value));
+  }
 }
@@ -3,6 +3,7 @@ package controller.commands;
 import controller.IImageFileParser;
 import controller.JPEGParser;
 import controller.JPGParser;
+import controller.PGMParser;
 import controller.PNGParser;
 import controller.PPMParser;
 import model.IImageModel;
@@ -12,7 +13,7 @@ import model.IImageModel;
  * loading or saving images from/to various file formats.
  * This class encapsulates the logic for determining file extensions and
  * associating them with the appropriate image file parsers, such as PNG, JPG,
- * JPEG, and PPM.
+ * JPEG, PPM and PGM.
  */
 abstract class AbstractLoaderSaverCommand extends AbstractCommand {
   protected final String imagePath;
@@ -54,6 +55,22 @@ abstract class AbstractLoaderSaverCommand extends AbstractCommand {
    */
   protected IImageFileParser getImageObject(String path)
           throws UnsupportedOperationException {
+    return getImageObject(path, false);
+  }
+
+  /**
+   * Returns the appropriate image file parser based on the file extension, choosing the
+   * binary variant of formats that have a plain and a binary variant when asked to.
+   * PPM files are loaded in either variant and saved as binary (P6) PPM only when asked
+   * to; PGM files are always saved as binary (P5) PGM.
+   *
+   * @param path   The path of the image file.
+   * @param binary Whether images should be saved in the binary variant of the format.
+   * @return Appropriate IImageFileParser instance based on the file extension.
+   * @throws UnsupportedOperationException if the file extension is not supported.
+   */
+  protected IImageFileParser getImageObject(String path, boolean binary)
+          throws UnsupportedOperationException {
     String extension = getFileExtension(path);
 
     switch (extension) {
@@ -64,7 +81,9 @@ abstract class AbstractLoaderSaverCommand extends AbstractCommand {
       case "jpeg":
         return new JPEGParser();
       case "ppm":
-        return new PPMParser();
+        return new PPMParser(binary);
+      case "pgm":
+        return new PGMParser();
       default:
         throw new UnsupportedOperationException();
     }
@@ -1,5 +1,7 @@
 package controller.commands;
 
+import java.util.List;
+
 import model.IImageModel;
 
 /**
@@ -24,4 +26,24 @@ public abstract class AbstractTransformCommand extends AbstractCommand {
     super(imageName, model);
     this.destImageName = destImageName;
   }
+
+  /**
+   * Returns the source image name.
+   *
+   * @return a list holding the name of the source image.
+   */
+  @Override
+  public List<String> getSources() {
+    return List.of(imageName);
+  }
+
+  /**
+   * Returns the destination image name.
+   *
+   * @return a list holding the name of the destination image.
+   */
+  @Override
+  public List<String> getDestinations() {
+    return List.of(destImageName);
+  }
 }
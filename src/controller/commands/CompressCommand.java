@@ -1,17 +1,21 @@
 package controller.commands;
 
+import java.util.Optional;
+
 import model.IImageModel;
 
 /**
  * This command handles the compression of an image using the Haar Wavelet Transform.
- * The compression is done based on a specified compression ratio.
+ * The compression is done based on a specified compression ratio, optionally on
+ * independent square blocks of the image.
  */
 public class CompressCommand extends AbstractTransformCommand {
 
   private final int compressionRatio;
+  private final Optional<Integer> blockSize;
 
   /**
-   * Constructs a new CompressCommand object.
+   * Constructs a new CompressCommand object that transforms the whole image at once.
    *
    * @param compressionRatio the ratio by which the image is to be compressed.
    * @param imageName        the name of the image to compress.
@@ -20,8 +24,23 @@ public class CompressCommand extends AbstractTransformCommand {
    */
   public CompressCommand(int compressionRatio, String imageName,
                          String destImageName, IImageModel model) {
+    this(compressionRatio, imageName, destImageName, model, Optional.empty());
+  }
+
+  /**
+   * Constructs a new CompressCommand object.
+   *
+   * @param compressionRatio the ratio by which the image is to be compressed.
+   * @param imageName        the name of the image to compress.
+   * @param destImageName    the name under which the compressed image will be saved.
+   * @param model            the image model that performs the compression operation.
+   * @param blockSize        an optional width and height of blocks transformed independently.
+   */
+  public CompressCommand(int compressionRatio, String imageName, String destImageName,
+                         IImageModel model, Optional<Integer> blockSize) {
     super(imageName, destImageName, model);
     this.compressionRatio = compressionRatio;
+    this.blockSize = blockSize;
   }
 
   /**
@@ -32,6 +51,11 @@ public class CompressCommand extends AbstractTransformCommand {
    */
   @Override
   protected void processImage() throws Exception {
-    this.model.compressImage(this.imageName, this.destImageName, this.compressionRatio);
+    if (this.blockSize.isPresent()) {
+      this.model.compressImage(this.imageName, this.destImageName, this.compressionRatio,
+              this.blockSize.get());
+    } else {
+      this.model.compressImage(this.imageName, this.destImageName, this.compressionRatio);
+    }
   }
 }
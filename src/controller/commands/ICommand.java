@@ -1,5 +1,7 @@
 package controller.commands;
 
+import java.util.List;
+
 /**
  * Represents a command in the image processing application.
  * Commands that implement this interface are responsible
@@ -15,4 +17,19 @@ public interface ICommand {
    * @return true if the image processing was successful, otherwise false.
    */
   boolean execute();
+
+  /**
+   * Returns the names of the images, and the paths of the files, that this command reads.
+   * Commands that neither read nor write any of the same names can run at the same time.
+   *
+   * @return the names the command reads.
+   */
+  List<String> getSources();
+
+  /**
+   * Returns the names of the images, and the paths of the files, that this command writes.
+   *
+   * @return the names the command writes.
+   */
+  List<String> getDestinations();
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package controller.commands;
 
+import java.util.List;
+
 import controller.IImageFileParser;
 import model.IImageModel;
 
@@ -31,4 +33,24 @@ public class LoadCommand extends AbstractLoaderSaverCommand {
     IImageFileParser imageParser = getImageObject(imagePath);
     this.model.addImage(imageParser.loadImage(imagePath), imageName);
   }
+
+  /**
+   * Returns the path of the file being loaded.
+   *
+   * @return a list holding the image path.
+   */
+  @Override
+  public List<String> getSources() {
+    return List.of(imagePath);
+  }
+
+  /**
+   * Returns the name the image is loaded as.
+   *
+   * @return a list holding the image name.
+   */
+  @Override
+  public List<String> getDestinations() {
+    return List.of(imageName);
+  }
 }
@@ -0,0 +1,55 @@
+package controller.commands;
+
+import java.util.List;
+
+import model.IImageModel;
+import model.strategy.FilterStrategy;
+
+/**
+ * Represents a command that applies a filter only to the pixels of an image selected by a
+ * mask image, such as "blur image dest mask mask-image".
+ * This command uses the underlying image model to filter the selected pixels and saves the
+ * result with a new name, as specified.
+ */
+public class MaskedFilterCommand extends AbstractTransformCommand {
+  private final String maskImageName;
+  private final FilterStrategy strategy;
+
+  /**
+   * Constructs a MaskedFilterCommand with the provided source, mask and destination image
+   * names, the filter to apply and a reference to the model.
+   *
+   * @param imageName     The name of the source image to be filtered.
+   * @param destImageName The name of the destination image after filtering.
+   * @param maskImageName The name of the mask image selecting the pixels to filter.
+   * @param strategy      The filter to apply to the selected pixels.
+   * @param model         A reference to the image model.
+   */
+  public MaskedFilterCommand(String imageName, String destImageName, String maskImageName,
+                             FilterStrategy strategy, IImageModel model) {
+    super(imageName, destImageName, model);
+    this.maskImageName = maskImageName;
+    this.strategy = strategy;
+  }
+
+  /**
+   * Processes the image by directing the model to filter the pixels selected by the mask.
+   *
+   * @throws Exception if an error occurs during image processing.
+   */
+  @Override
+  protected void processImage() throws Exception {
+    this.model.applyMasked(this.imageName, this.maskImageName, this.destImageName,
+            this.strategy);
+  }
+
+  /**
+   * Returns the names of the source image and the mask image.
+   *
+   * @return the names of the images the command reads.
+   */
+  @Override
+  public List<String> getSources() {
+    return List.of(imageName, maskImageName);
+  }
+}
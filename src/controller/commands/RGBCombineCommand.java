@@ -1,5 +1,7 @@
 package controller.commands;
 
+import java.util.List;
+
 import model.IImageModel;
 
 /**
@@ -35,4 +37,24 @@ public class RGBCombineCommand extends AbstractCombineSplitCommand {
     this.model.rgbCombine(this.imageName, this.redImageName,
             this.greenImageName, this.blueImageName);
   }
+
+  /**
+   * Returns the names of the component images.
+   *
+   * @return the names of the red, green and blue source images.
+   */
+  @Override
+  public List<String> getSources() {
+    return List.of(redImageName, greenImageName, blueImageName);
+  }
+
+  /**
+   * Returns the name of the combined image.
+   *
+   * @return a list holding the name of the combined RGB image.
+   */
+  @Override
+  public List<String> getDestinations() {
+    return List.of(imageName);
+  }
 }
@@ -1,5 +1,7 @@
 package controller.commands;
 
+import java.util.List;
+
 import model.IImageModel;
 
 /**
@@ -35,4 +37,24 @@ public class RGBSplitCommand extends AbstractCombineSplitCommand {
     this.model.rgbSplit(this.imageName, this.redImageName,
             this.greenImageName, this.blueImageName);
   }
+
+  /**
+   * Returns the name of the image being split.
+   *
+   * @return a list holding the name of the source RGB image.
+   */
+  @Override
+  public List<String> getSources() {
+    return List.of(imageName);
+  }
+
+  /**
+   * Returns the names of the component images.
+   *
+   * @return the names of the red, green and blue destination images.
+   */
+  @Override
+  public List<String> getDestinations() {
+    return List.of(redImageName, greenImageName, blueImageName);
+  }
 }
@@ -1,5 +1,7 @@
 package controller.commands;
 
+import java.util.List;
+
 import controller.IImageFileParser;
 import model.IImageModel;
 
@@ -10,6 +12,8 @@ import model.IImageModel;
  */
 public class SaveCommand extends AbstractLoaderSaverCommand {
 
+  private final boolean binary;
+
   /**
    * Constructs a SaveCommand with the specified file path, image name, and
    * a reference to the model.
@@ -19,7 +23,21 @@ public class SaveCommand extends AbstractLoaderSaverCommand {
    * @param model     A reference to the image model.
    */
   public SaveCommand(String imagePath, String imageName, IImageModel model) {
+    this(imagePath, imageName, model, false);
+  }
+
+  /**
+   * Constructs a SaveCommand that may save formats with a plain and a binary variant,
+   * such as PPM, in their binary variant.
+   *
+   * @param imagePath The path where the image will be saved.
+   * @param imageName The name of the image to save.
+   * @param model     A reference to the image model.
+   * @param binary    Whether to save the image in the binary variant of its format.
+   */
+  public SaveCommand(String imagePath, String imageName, IImageModel model, boolean binary) {
     super(imagePath, imageName, model);
+    this.binary = binary;
   }
 
   /**
@@ -29,7 +47,27 @@ public class SaveCommand extends AbstractLoaderSaverCommand {
    */
   @Override
   protected void processImage() throws Exception {
-    IImageFileParser imageParser = getImageObject(imagePath);
+    IImageFileParser imageParser = getImageObject(imagePath, binary);
     imageParser.saveImage(imagePath, this.model.getImage(imageName));
   }
+
+  /**
+   * Returns the name of the image being saved.
+   *
+   * @return a list holding the image name.
+   */
+  @Override
+  public List<String> getSources() {
+    return List.of(imageName);
+  }
+
+  /**
+   * Returns the path of the file being written.
+   *
+   * @return a list holding the image path.
+   */
+  @Override
+  public List<String> getDestinations() {
+    return List.of(imagePath);
+  }
 }
@@ -0,0 +1,98 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import model.image.Image;
+import model.strategy.FilterStrategy;
+import model.strategy.FusedFilterStrategy;
+import model.strategy.TiledFilterDecorator;
+
+/**
+ * An image that has not been computed yet: an existing image and the per-pixel filters
+ * still to be applied to it, in order. Several deferred images may share the same source,
+ * so the pending operations of a model form a graph rooted at its computed images.
+ * All filters are applied together in a single pass when the image is materialized.
+ */
+class DeferredImage {
+  private final Image source;
+  private final List<FilterStrategy> operations;
+
+  /**
+   * Constructs a deferred image that is the given image with no pending operations.
+   *
+   * @param source the computed image the operations start from
+   */
+  DeferredImage(Image source) {
+    this(source, Collections.emptyList());
+  }
+
+  /**
+   * Constructs a deferred image from a source image and its pending operations.
+   *
+   * @param source     the computed image the operations start from
+   * @param operations the per-pixel filters to apply to the source, in order
+   */
+  private DeferredImage(Image source, List<FilterStrategy> operations) {
+    this.source = source;
+    this.operations = operations;
+  }
+
+  /**
+   * Returns the width of the image. Per-pixel filters keep the size of their input, so this
+   * is the width of the source.
+   *
+   * @return the width in pixels
+   */
+  int getWidth() {
+    return source.getWidth();
+  }
+
+  /**
+   * Returns the height of the image, which is the height of the source.
+   *
+   * @return the height in pixels
+   */
+  int getHeight() {
+    return source.getHeight();
+  }
+
+  /**
+   * Returns the computed image the pending operations start from, which this deferred
+   * image keeps in memory until it is computed.
+   *
+   * @return the source image
+   */
+  Image getSource() {
+    return source;
+  }
+
+  /**
+   * Returns a deferred image that applies one more per-pixel filter after the pending ones.
+   * This deferred image is left unchanged.
+   *
+   * @param strategy the per-pixel filter to apply last
+   * @return the deferred result of applying the filter to this image
+   */
+  DeferredImage then(FilterStrategy strategy) {
+    List<FilterStrategy> next = new ArrayList<>(operations);
+    next.add(strategy);
+    return new DeferredImage(source, Collections.unmodifiableList(next));
+  }
+
+  /**
+   * Computes the image by applying all pending filters to the source in a single pass.
+   *
+   * @param pool the pool to apply the filters on, or null to apply them serially
+   * @return the computed image
+   */
+  Image materialize(ForkJoinPool pool) {
+    FilterStrategy strategy = new FusedFilterStrategy(operations);
+    if (pool != null) {
+      strategy = new TiledFilterDecorator(strategy, pool);
+    }
+    return source.applyFilter(strategy);
+  }
+}
@@ -1,58 +1,66 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * This class provides methods to perform the Haar Wavelet Transform and its inverse on image data.
  * It includes utility methods for padding, truncating, and threshold calculations.
  */
 public class HaarWaveletTransform {
+  private static final double SQRT_TWO = Math.sqrt(2);
+  private static final int COLUMN_STRIP = 256;
+  private static final double LARGEST_BELOW_HALF = Math.nextDown(0.5);
 
   /**
-   * Calculates the average and difference of adjacent pairs in the list.
+   * Replaces the first m values of the array by the averages and differences of adjacent
+   * pairs, with the m / 2 averages first and the m / 2 differences after them.
    *
-   * @param s The input list of Double values.
-   * @return A list of transformed values containing averages and differences.
+   * @param s       The values to transform in place.
+   * @param m       The number of values to transform, a power of two.
+   * @param scratch A buffer of at least m values used to reorder the results.
    */
-  private List<Double> avgAndDiff(List<Double> s) {
-    List<Double> average = new ArrayList<>();
-    List<Double> difference = new ArrayList<>();
-    double sqrtTwo = Math.sqrt(2);
-    for (int i = 0; i < s.size(); i += 2) {
-      double first = s.get(i);
-      double second = (i + 1 < s.size()) ? s.get(i + 1) : 0;
-      double roundedAvg = Math.round(((first + second) / sqrtTwo) * 100.0) / 100.0;
-      double roundedDiff = Math.round(((first - second) / sqrtTwo) * 100.0) / 100.0;
-      average.add(roundedAvg);
-      difference.add(roundedDiff);
+  private static void avgAndDiff(double[] s, int m, double[] scratch) {
+    int half = m / 2;
+    for (int i = 0; i < half; i++) {
+      double first = s[2 * i];
+      double second = s[2 * i + 1];
+      scratch[i] = round((first + second) / SQRT_TWO);
+      scratch[half + i] = round((first - second) / SQRT_TWO);
     }
-    average.addAll(difference);
-    return average;
+    System.arraycopy(scratch, 0, s, 0, m);
   }
 
   /**
-   * Performs the inverse operation of avgAndDiff to reconstruct the original list of values.
+   * Performs the inverse operation of avgAndDiff on the first m values of the array.
    *
-   * @param s The list of transformed values containing averages and differences.
-   * @return The original list of Double values before the transformation.
+   * @param s       The values to revert in place.
+   * @param m       The number of values to revert, a power of two.
+   * @param scratch A buffer of at least m values used to reorder the results.
    */
-  private List<Double> invAvgAndDiff(List<Double> s) {
-    List<Double> originalSequence = new ArrayList<>();
-    int halfSize = s.size() / 2;
-    double sqrtTwo = Math.sqrt(2);
-    for (int i = 0; i < halfSize; i++) {
-      double first = s.get(i);
-      double second = s.get(i + halfSize);
-      double roundedAvg = Math.round(((first + second) / sqrtTwo) * 100.0) / 100.0;
-      double roundedDiff = Math.round(((first - second) / sqrtTwo) * 100.0) / 100.0;
-      originalSequence.add(roundedAvg);
-      originalSequence.add(roundedDiff);
+  private static void invAvgAndDiff(double[] s, int m, double[] scratch) {
+    int half = m / 2;
+    for (int i = 0; i < half; i++) {
+      double first = s[i];
+      double second = s[i + half];
+      scratch[2 * i] = round((first + second) / SQRT_TWO);
+      scratch[2 * i + 1] = round((first - second) / SQRT_TWO);
     }
-    return originalSequence;
+    System.arraycopy(scratch, 0, s, 0, m);
+  }
+
+  /**
+   * Rounds a coefficient to two decimal places, halves up, with the same result as
+   * Math.round(value * 100.0) / 100.0. Adding one half and taking the floor is exact for
+   * every value except the largest double below one half, which the sum rounds up to one,
+   * and is much cheaper than Math.round.
+   *
+   * @param value The value to round.
+   * @return The value rounded to two decimal places.
+   */
+  private static double round(double value) {
+    double hundredths = value * 100.0;
+    return (hundredths == LARGEST_BELOW_HALF ? 0.0 : Math.floor(hundredths + 0.5)) / 100.0;
   }
 
   /**
@@ -62,10 +70,22 @@ public class HaarWaveletTransform {
    * @return A new padded 2D array with dimensions that are powers of two.
    */
   private double[][] padArr(double[][] X) {
+    int newDim = powerOfTwo(Math.max(X.length, X[0].length));
+    return padTo(X, newDim, newDim);
+  }
+
+  /**
+   * Pads the input 2D array with zeros to the given dimensions.
+   *
+   * @param X         The original 2D array of doubles.
+   * @param newWidth  The number of rows of the padded array.
+   * @param newHeight The number of columns of the padded array.
+   * @return A new padded 2D array with the given dimensions.
+   */
+  private double[][] padTo(double[][] X, int newWidth, int newHeight) {
     int width = X.length;
     int height = X[0].length;
-    int newDim = powerOfTwo(Math.max(width, height));
-    double[][] paddedArray = new double[newDim][newDim];
+    double[][] paddedArray = new double[newWidth][newHeight];
     for (int i = 0; i < width; i++) {
       System.arraycopy(X[i], 0, paddedArray[i], 0, height);
     }
@@ -104,85 +124,187 @@ public class HaarWaveletTransform {
   }
 
   /**
-   * Applies the Haar Wavelet Transform to a given list of values.
-   * The transformation is applied recursively, breaking down the list
-   * into smaller parts and applying the avgAndDiff method.
+   * Applies the Haar Wavelet Transform to the first l values of the array in place.
+   * The transformation is applied repeatedly to the averages of the previous step
+   * until a single average remains.
+   *
+   * @param s       The values to be transformed.
+   * @param l       The length of the part of the array to be transformed.
+   * @param scratch A buffer of at least l values.
+   */
+  private static void transform(double[] s, int l, double[] scratch) {
+    for (int m = l; m > 1; m /= 2) {
+      avgAndDiff(s, m, scratch);
+    }
+  }
+
+  /**
+   * Applies the inverse Haar Wavelet Transform to the first l values of the array in place.
+   *
+   * @param s       The transformed values to be reverted.
+   * @param l       The length of the part of the array to be reverted.
+   * @param scratch A buffer of at least l values.
+   */
+  private static void invert(double[] s, int l, double[] scratch) {
+    for (int m = 2; m <= l; m *= 2) {
+      invAvgAndDiff(s, m, scratch);
+    }
+  }
+
+  /**
+   * Transforms or reverts the first rows values of the first columns columns of the matrix.
+   * The columns are processed a strip at a time: the strip is copied into the rows of a
+   * buffer, where each step of the transform combines two whole rows element by element,
+   * and the reordering of the averages and differences only swaps row references. The
+   * matrix is therefore read and written row by row, and the inner loops run over
+   * contiguous values.
    *
-   * @param s The list of Double values to be transformed.
-   * @param l The length of the part of the list to be transformed.
-   * @return The list of transformed values.
+   * @param mat     The matrix whose columns are processed in place.
+   * @param rows    The number of values of each column to process.
+   * @param columns The number of columns to process.
+   * @param inverse Whether to revert the transform instead of applying it.
+   * @param strip   The strip buffer, with at least rows rows.
+   * @param order   A buffer of at least rows row references.
    */
-  private List<Double> transform(List<Double> s, int l) {
-    List<Double> transformedSequence = new ArrayList<>(s);
-    int m = l;
-    while (m > 1) {
-      List<Double> temp = avgAndDiff(transformedSequence.subList(0, m));
-      for (int i = 0; i < m; i++) {
-        transformedSequence.set(i, temp.get(i));
+  private static void processColumns(double[][] mat, int rows, int columns, boolean inverse,
+                                     double[][] strip, double[][] order) {
+    if (rows < 2) {
+      return;
+    }
+    int stripWidth = strip[0].length;
+    for (int first = 0; first < columns; first += stripWidth) {
+      int count = Math.min(stripWidth, columns - first);
+      for (int i = 0; i < rows; i++) {
+        System.arraycopy(mat[i], first, strip[i], 0, count);
       }
-      m /= 2;
+      if (inverse) {
+        for (int m = 2; m <= rows; m *= 2) {
+          invAvgAndDiffRows(strip, m, count, order);
+        }
+      } else {
+        for (int m = rows; m > 1; m /= 2) {
+          avgAndDiffRows(strip, m, count, order);
+        }
+      }
+      for (int i = 0; i < rows; i++) {
+        System.arraycopy(strip[i], 0, mat[i], first, count);
+      }
+    }
+  }
+
+  /**
+   * Applies avgAndDiff to every column of the first m rows of a strip at once.
+   *
+   * @param strip The rows to transform in place; their order is changed.
+   * @param m     The number of rows to transform, a power of two.
+   * @param count The number of values of each row to transform.
+   * @param order A buffer of at least m row references.
+   */
+  private static void avgAndDiffRows(double[][] strip, int m, int count, double[][] order) {
+    int half = m / 2;
+    for (int i = 0; i < half; i++) {
+      double[] firstRow = strip[2 * i];
+      double[] secondRow = strip[2 * i + 1];
+      for (int k = 0; k < count; k++) {
+        double first = firstRow[k];
+        double second = secondRow[k];
+        firstRow[k] = round((first + second) / SQRT_TWO);
+        secondRow[k] = round((first - second) / SQRT_TWO);
+      }
+      order[i] = firstRow;
+      order[half + i] = secondRow;
     }
-    return transformedSequence;
+    System.arraycopy(order, 0, strip, 0, m);
   }
 
   /**
-   * Applies the inverse Haar Wavelet Transform to reconstruct the original list
-   * from the transformed values.
+   * Applies invAvgAndDiff to every column of the first m rows of a strip at once.
    *
-   * @param transformedSequence The list of transformed values.
-   * @param l                   The length of the part of the list to be reverted.
-   * @return The original list of values before transformation.
+   * @param strip The rows to revert in place; their order is changed.
+   * @param m     The number of rows to revert, a power of two.
+   * @param count The number of values of each row to revert.
+   * @param order A buffer of at least m row references.
    */
-  private List<Double> invert(List<Double> transformedSequence, int l) {
-    List<Double> originalSequence = new ArrayList<>(transformedSequence);
-    int m = 2;
-    while (m <= l) {
-      List<Double> temp = invAvgAndDiff(originalSequence.subList(0, m));
-      for (int i = 0; i < m; i++) {
-        originalSequence.set(i, temp.get(i));
+  private static void invAvgAndDiffRows(double[][] strip, int m, int count, double[][] order) {
+    int half = m / 2;
+    for (int i = 0; i < half; i++) {
+      double[] firstRow = strip[i];
+      double[] secondRow = strip[i + half];
+      for (int k = 0; k < count; k++) {
+        double first = firstRow[k];
+        double second = secondRow[k];
+        firstRow[k] = round((first + second) / SQRT_TWO);
+        secondRow[k] = round((first - second) / SQRT_TWO);
       }
-      m *= 2;
+      order[2 * i] = firstRow;
+      order[2 * i + 1] = secondRow;
     }
-    return originalSequence;
+    System.arraycopy(order, 0, strip, 0, m);
   }
 
   /**
-   * Performs the Haar Wavelet Transform on a 2D matrix.
+   * Finds the number of levels of the transform of a matrix, which is the number of times
+   * its larger dimension can be halved before it reaches one.
+   *
+   * @param mat The padded matrix.
+   * @return The number of levels.
+   */
+  private static int levels(double[][] mat) {
+    return Integer.numberOfTrailingZeros(Math.max(mat.length, mat[0].length));
+  }
+
+  /**
+   * Performs the Haar Wavelet Transform on a 2D matrix, padded to a square whose side
+   * is a power of two.
    *
    * @param mat The 2D matrix of doubles to be transformed.
    * @return The transformed 2D matrix.
    */
   public double[][] haar(double[][] mat) {
-    mat = padArr(mat);
-    int currentLen = mat.length;
-    while (currentLen > 1) {
-      for (int i = 0; i < currentLen; i++) {
-        List<Double> row = new ArrayList<>();
-        for (int j = 0; j < currentLen; j++) {
-          row.add(mat[i][j]);
-        }
-        List<Double> transformedRow = transform(row, currentLen);
-        for (int j = 0; j < currentLen; j++) {
-          mat[i][j] = transformedRow.get(j);
-        }
-      }
-      for (int j = 0; j < currentLen; j++) {
-        List<Double> col = new ArrayList<>();
-        for (int i = 0; i < currentLen; i++) {
-          col.add(mat[i][j]);
-        }
-        List<Double> transformedCol = transform(col, currentLen);
-        for (int i = 0; i < currentLen; i++) {
-          mat[i][j] = transformedCol.get(i);
-        }
+    return transformLevels(padArr(mat));
+  }
+
+  /**
+   * Performs the Haar Wavelet Transform on a 2D matrix, padding each dimension to a power
+   * of two on its own. A rectangular matrix is therefore not padded to a square, which
+   * keeps the work proportional to its size. For square matrices whose side is a power
+   * of two the result is the same as that of haar.
+   *
+   * @param mat The 2D matrix of doubles to be transformed.
+   * @return The transformed 2D matrix.
+   */
+  public double[][] rectangularHaar(double[][] mat) {
+    return transformLevels(padTo(mat, powerOfTwo(mat.length), powerOfTwo(mat[0].length)));
+  }
+
+  /**
+   * Transforms a padded matrix in place. At every level the rows and then the columns of
+   * the remaining top-left block are transformed, and the block is halved in each
+   * dimension that is still longer than one.
+   *
+   * @param mat The padded matrix, with dimensions that are powers of two.
+   * @return The transformed matrix.
+   */
+  private static double[][] transformLevels(double[][] mat) {
+    int rows = mat.length;
+    int columns = mat[0].length;
+    double[] scratch = new double[Math.max(rows, columns)];
+    double[][] strip = new double[rows][Math.min(COLUMN_STRIP, columns)];
+    double[][] order = new double[rows][];
+    for (int level = 0; level < levels(mat); level++) {
+      int levelRows = Math.max(1, rows >> level);
+      int levelColumns = Math.max(1, columns >> level);
+      for (int i = 0; i < levelRows; i++) {
+        transform(mat[i], levelColumns, scratch);
       }
-      currentLen = currentLen / 2;
+      processColumns(mat, levelRows, levelColumns, false, strip, order);
     }
     return mat;
   }
 
   /**
    * Reverts the Haar Wavelet Transform on a 2D matrix to its original state.
+   * The given matrix, as returned by haar or rectangularHaar, is reverted in place.
    *
    * @param mat            The 2D matrix of transformed values.
    * @param originalWidth  The original width of the matrix before padding and transformation.
@@ -190,30 +312,18 @@ public class HaarWaveletTransform {
    * @return The original 2D matrix before any transformations.
    */
   public double[][] invHaar(double[][] mat, int originalWidth, int originalHeight) {
-    int c = 2;
-    int s = mat.length;
-    while (c <= s) {
-      for (int j = 0; j < c; j++) {
-        List<Double> col = new ArrayList<>();
-        for (int i = 0; i < c; i++) {
-          col.add(mat[i][j]);
-        }
-        List<Double> invertedCol = invert(col, c);
-        for (int i = 0; i < c; i++) {
-          mat[i][j] = invertedCol.get(i);
-        }
+    int rows = mat.length;
+    int columns = mat[0].length;
+    double[] scratch = new double[Math.max(rows, columns)];
+    double[][] strip = new double[rows][Math.min(COLUMN_STRIP, columns)];
+    double[][] order = new double[rows][];
+    for (int level = levels(mat) - 1; level >= 0; level--) {
+      int levelRows = Math.max(1, rows >> level);
+      int levelColumns = Math.max(1, columns >> level);
+      processColumns(mat, levelRows, levelColumns, true, strip, order);
+      for (int i = 0; i < levelRows; i++) {
+        invert(mat[i], levelColumns, scratch);
       }
-      for (int i = 0; i < c; i++) {
-        List<Double> row = new ArrayList<>();
-        for (int j = 0; j < c; j++) {
-          row.add(mat[i][j]);
-        }
-        List<Double> invertedRow = invert(row, c);
-        for (int j = 0; j < c; j++) {
-          mat[i][j] = invertedRow.get(j);
-        }
-      }
-      c = c * 2;
     }
     return unpadArr(mat, originalWidth, originalHeight);
   }
@@ -221,6 +331,10 @@ public class HaarWaveletTransform {
   /**
    * Calculates the threshold for truncating values based on the percentage specified.
    * This threshold is used to zero out small coefficients in the transformed matrix.
+   * The threshold is the distinct magnitude found at the given percentage of all distinct
+   * magnitudes in ascending order. Coefficients produced by the transform are multiples
+   * of 0.01, so their magnitudes are marked in a bit set indexed by hundredths, which
+   * needs no sorting and grows with the largest magnitude rather than with the image.
    *
    * @param redChannel   The 2D array representing the red channel of an image.
    * @param greenChannel The 2D array representing the green channel of an image.
@@ -230,23 +344,99 @@ public class HaarWaveletTransform {
    */
   public double calThreshold(double[][] redChannel, double[][] greenChannel, double[][] blueChannel,
                              double percentage) {
+    return calThreshold(new double[][][]{redChannel, greenChannel, blueChannel}, percentage);
+  }
+
+  /**
+   * Calculates the threshold for truncating values based on the percentage specified,
+   * over the coefficients of any number of transformed matrices, such as the blocks of
+   * all three channels of an image.
+   *
+   * @param channels   The transformed matrices whose coefficients are considered together.
+   * @param percentage The percentage of coefficients to keep.
+   * @return The calculated threshold value.
+   */
+  public double calThreshold(double[][][] channels, double percentage) {
     if (percentage == 100.0) {
       return Double.MAX_VALUE;
     }
-    Set<Double> distinctValues = new HashSet<>();
-    for (double[][] channel : new double[][][]{redChannel, greenChannel, blueChannel}) {
+    BitSet hundredths = markHundredths(channels);
+    if (hundredths == null) {
+      return sortedThreshold(channels, percentage);
+    }
+    int hundredth = hundredths.nextSetBit(0);
+    for (int i = thresholdIndex(hundredths.cardinality(), percentage); i > 0; i--) {
+      hundredth = hundredths.nextSetBit(hundredth + 1);
+    }
+    return hundredth / 100.0;
+  }
+
+  /**
+   * Marks the magnitude of every coefficient, counted in hundredths, in a bit set.
+   *
+   * @param channels The channels whose coefficients are marked.
+   * @return The marked magnitudes, or null if a magnitude is not a multiple of 0.01.
+   */
+  private static BitSet markHundredths(double[][][] channels) {
+    BitSet hundredths = new BitSet();
+    for (double[][] channel : channels) {
       for (double[] array : channel) {
         for (double val : array) {
-          distinctValues.add(Math.abs(val));
+          double magnitude = Math.abs(val);
+          long hundredth = Math.round(magnitude * 100.0);
+          if (hundredth >= Integer.MAX_VALUE || hundredth / 100.0 != magnitude) {
+            return null;
+          }
+          hundredths.set((int) hundredth);
         }
       }
     }
-    List<Double> orderedValues = new ArrayList<>(distinctValues);
-    Collections.sort(orderedValues);
+    return hundredths;
+  }
 
-    int thresholdIndex = (int) (orderedValues.size() * (percentage / 100.0));
-    thresholdIndex = Math.min(thresholdIndex, orderedValues.size() - 1);
+  /**
+   * Calculates the threshold by sorting all magnitudes. This is used for coefficients
+   * that are not multiples of 0.01, which the transform itself never produces.
+   *
+   * @param channels   The channels whose coefficients are considered.
+   * @param percentage The percentage of coefficients to keep.
+   * @return The calculated threshold value.
+   */
+  private static double sortedThreshold(double[][][] channels, double percentage) {
+    int count = 0;
+    for (double[][] channel : channels) {
+      for (double[] array : channel) {
+        count += array.length;
+      }
+    }
+    double[] magnitudes = new double[count];
+    int next = 0;
+    for (double[][] channel : channels) {
+      for (double[] array : channel) {
+        for (double val : array) {
+          magnitudes[next++] = Math.abs(val);
+        }
+      }
+    }
+    Arrays.sort(magnitudes);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || Double.compare(magnitudes[distinct - 1], magnitudes[i]) != 0) {
+        magnitudes[distinct++] = magnitudes[i];
+      }
+    }
+    return magnitudes[thresholdIndex(distinct, percentage)];
+  }
 
-    return orderedValues.get(thresholdIndex);
+  /**
+   * Finds the position of the threshold among the distinct magnitudes in ascending order.
+   *
+   * @param distinct   The number of distinct magnitudes.
+   * @param percentage The percentage of coefficients to keep.
+   * @return The index of the threshold magnitude.
+   */
+  private static int thresholdIndex(int distinct, double percentage) {
+    int thresholdIndex = (int) (distinct * (percentage / 100.0));
+    return Math.min(thresholdIndex, distinct - 1);
   }
-}
\ No newline at end of file
+}
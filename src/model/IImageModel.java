@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.Optional;
 
 import model.image.Image;
+import model.strategy.FilterStrategy;
 
 /**
  * Represents an interface for image processing operations.
@@ -30,6 +31,15 @@ public interface IImageModel {
    */
   Image getImage(String imageName) throws IOException;
 
+  /**
+   * Retrieves the width and height of an image with provided name, without processing it.
+   *
+   * @param imageName The name of the image.
+   * @return an array holding the width and the height of the image.
+   * @throws IOException If the image does not exist in the model.
+   */
+  int[] getImageDimensions(String imageName) throws IOException;
+
   /**
    * Extracts the red component of the image.
    *
@@ -218,4 +228,31 @@ public interface IImageModel {
    * @throws IOException If an error occurs during the process.
    */
   void compressImage(String imageName, String destImageName, int percentage) throws IOException;
+
+  /**
+   * Compresses an image with a specified compression ratio, transforming square blocks
+   * of the image independently.
+   *
+   * @param imageName     The name of the source image.
+   * @param destImageName The name of the destination image for the compressed result.
+   * @param percentage    The compression ratio as a percentage.
+   * @param blockSize     The width and height of the blocks in pixels.
+   * @throws IOException If an error occurs during the process.
+   */
+  void compressImage(String imageName, String destImageName, int percentage, int blockSize)
+          throws IOException;
+
+  /**
+   * Applies a filter to the pixels of an image selected by a mask image, leaving the other
+   * pixels unchanged. A pixel is selected where the mask image is light (see
+   * {@link Image#toMask()}). Only the rows and columns around selected pixels are filtered.
+   *
+   * @param imageName     The name of the source image.
+   * @param maskImageName The name of the mask image, which must have the same size.
+   * @param destImageName The name of the destination image for the result.
+   * @param strategy      The filter to apply to the selected pixels.
+   * @throws IOException If the source image or the mask image is not found.
+   */
+  void applyMasked(String imageName, String maskImageName, String destImageName,
+                   FilterStrategy strategy) throws IOException;
 }
@@ -1,20 +1,25 @@
 package model;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 import model.image.Image;
 import model.strategy.AdjustLevelsFilterStrategy;
+import model.strategy.BlueComponentFilterStrategy;
 import model.strategy.BlurFilterStrategy;
+import model.strategy.BrightenFilterStrategy;
 import model.strategy.ColorCorrectFilterStrategy;
 import model.strategy.FilterStrategy;
+import model.strategy.GreenComponentFilterStrategy;
 import model.strategy.IntensityFilterStrategy;
 import model.strategy.LumaFilterStrategy;
+import model.strategy.MaskedFilterDecorator;
+import model.strategy.RedComponentFilterStrategy;
 import model.strategy.SepiaFilterStrategy;
 import model.strategy.SharpenFilterStrategy;
 import model.strategy.SplitFilterDecorator;
+import model.strategy.TiledFilterDecorator;
 import model.strategy.ValueFilterStrategy;
 
 /**
@@ -23,17 +28,186 @@ import model.strategy.ValueFilterStrategy;
  * Provides methods to extract color components, apply filters,
  * and perform various image processing operations.
  * Images are stored with a String identifier in a map.
+ * Filters are applied on a fork-join pool that splits each image into bands of rows,
+ * so that a single filter uses all available cores.
+ * In lazy mode, per-pixel operations are only recorded. The image is computed, with all
+ * pending operations fused into a single pass, when it is retrieved or used by an operation
+ * that needs the whole image, such as a neighborhood filter, a histogram or a flip.
+ * The model is thread-safe: images are kept in a concurrent store, so several controllers
+ * may run commands on one model at the same time. Commands on different images do not wait
+ * for each other, and an image replaced by one command is seen whole by the others.
  */
 public class ImageModel implements IImageModel {
 
-  private final Map<String, Image> imageMap;
+  private final ImageStore imageStore;
+  private final ForkJoinPool filterPool;
+  private final boolean lazy;
 
   /**
    * Constructs a new instance of the ImageModel.
-   * Initializes an empty map to store images.
+   * Initializes an empty map to store images, and applies filters
+   * using all available processors.
    */
   public ImageModel() {
-    this.imageMap = new HashMap<>();
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a new instance of the ImageModel that applies filters
+   * with the given number of threads.
+   * Initializes an empty map to store images.
+   *
+   * @param parallelism the number of threads used to apply a filter, 1 to filter serially
+   * @throws IllegalArgumentException if parallelism is less than 1
+   */
+  public ImageModel(int parallelism) {
+    this(parallelism, false);
+  }
+
+  /**
+   * Constructs a new instance of the ImageModel that applies filters
+   * with the given number of threads, optionally in lazy mode.
+   * In lazy mode, brighten, component extraction, sepia and levels adjustment are recorded
+   * instead of applied, and consecutive ones are applied in a single pass when the result
+   * is needed, without allocating the intermediate images.
+   *
+   * @param parallelism the number of threads used to apply a filter, 1 to filter serially
+   * @param lazy        true to defer per-pixel operations until their result is needed
+   * @throws IllegalArgumentException if parallelism is less than 1
+   */
+  public ImageModel(int parallelism, boolean lazy) {
+    this(parallelism, lazy, Long.MAX_VALUE);
+  }
+
+  /**
+   * Constructs a new instance of the ImageModel that applies filters
+   * with the given number of threads, optionally in lazy mode, and keeps at most the given
+   * number of bytes of images in memory. When the images exceed this budget, the least
+   * recently used ones are written to temporary files and read back when they are used again.
+   *
+   * @param parallelism  the number of threads used to apply a filter, 1 to filter serially
+   * @param lazy         true to defer per-pixel operations until their result is needed
+   * @param memoryBudget the number of bytes of pixel data kept in memory
+   * @throws IllegalArgumentException if parallelism is less than 1 or the budget is negative
+   */
+  public ImageModel(int parallelism, boolean lazy, long memoryBudget) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1.");
+    }
+    this.filterPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    this.imageStore = new ImageStore(filterPool, memoryBudget);
+    this.lazy = lazy;
+  }
+
+  /**
+   * Returns how many times an image used by a command was found in memory.
+   *
+   * @return the number of store hits
+   */
+  public long getStoreHits() {
+    return imageStore.getHits();
+  }
+
+  /**
+   * Returns how many times an image used by a command had to be read back from disk.
+   *
+   * @return the number of store misses
+   */
+  public long getStoreMisses() {
+    return imageStore.getMisses();
+  }
+
+  /**
+   * Returns how many times an image was written to disk to stay within the memory budget.
+   *
+   * @return the number of spills
+   */
+  public long getStoreSpills() {
+    return imageStore.getSpills();
+  }
+
+  /**
+   * Returns how many bytes of pixel data the images of this model hold in memory, counting
+   * arrays shared by several images once.
+   *
+   * @return the bytes of pixel data in memory
+   */
+  public long getStoreResidentBytes() {
+    return imageStore.getResidentBytes();
+  }
+
+  /**
+   * Returns the image stored under the given name, computing it first if it is deferred.
+   *
+   * @param imageName the name of the image
+   * @return the image, or null if there is no image with that name
+   * @throws IOException if the image was spilled to disk and cannot be read back
+   */
+  private Image lookup(String imageName) throws IOException {
+    return imageStore.get(imageName);
+  }
+
+  /**
+   * Stores an image under the given name, replacing any image or deferred image of that name.
+   *
+   * @param imageName the name of the image
+   * @param image     the image to store
+   * @throws IOException if another image cannot be spilled to disk to make room for it
+   */
+  private void store(String imageName, Image image) throws IOException {
+    imageStore.put(imageName, image);
+  }
+
+  /**
+   * Records a per-pixel filter to be applied to an image, and stores the deferred result.
+   * The filter is appended to the pending filters of the source if it is deferred itself.
+   *
+   * @param imageName     The name of the source image.
+   * @param destImageName The name under which the deferred result is stored.
+   * @param strategy      The per-pixel filter strategy to apply.
+   * @throws IOException If the source image does not exist in the model.
+   */
+  private void defer(String imageName, String destImageName, FilterStrategy strategy)
+          throws IOException {
+    DeferredImage deferred = imageStore.getDeferred(imageName);
+    if (deferred == null) {
+      throw new IOException("Image not found.");
+    }
+    imageStore.putDeferred(destImageName, deferred.then(strategy));
+  }
+
+  /**
+   * Applies a filter strategy to an image in the model and stores the result.
+   * The filter is limited to the split percentage if one is given, and runs on
+   * the model's filter pool when the model is parallel. In lazy mode, per-pixel
+   * filters are deferred.
+   *
+   * @param imageName          The name of the source image.
+   * @param destImageName      The name under which the result is stored.
+   * @param strategy           The filter strategy to apply.
+   * @param splitPercentageOpt an optional split percentage for the filter.
+   * @throws IOException If the source image does not exist in the model.
+   */
+  private void applyFilter(String imageName, String destImageName, FilterStrategy strategy,
+                           Optional<Double> splitPercentageOpt) throws IOException {
+    if (splitPercentageOpt.isPresent()) {
+      strategy = new SplitFilterDecorator(strategy, splitPercentageOpt.get());
+    }
+    if (lazy && strategy.isPerPixel()) {
+      defer(imageName, destImageName, strategy);
+      return;
+    }
+    Image image = lookup(imageName);
+    if (image != null) {
+      if (filterPool != null) {
+        strategy = new TiledFilterDecorator(strategy, filterPool);
+      }
+
+      Image resultImage = image.applyFilter(strategy);
+      store(destImageName, resultImage);
+    } else {
+      throw new IOException("Image not found.");
+    }
   }
 
   /**
@@ -47,7 +221,7 @@ public class ImageModel implements IImageModel {
   @Override
   public void addImage(Image image, String imageName) throws IOException {
     if (image != null) {
-      imageMap.put(imageName, image);
+      store(imageName, image);
     } else {
       throw new IOException("Image not loaded.");
     }
@@ -61,7 +235,7 @@ public class ImageModel implements IImageModel {
    */
   @Override
   public Image getImage(String imageName) throws IOException {
-    Image image = imageMap.get(imageName);
+    Image image = lookup(imageName);
     if (image != null) {
       return image;
     } else {
@@ -69,6 +243,23 @@ public class ImageModel implements IImageModel {
     }
   }
 
+  /**
+   * Retrieves the width and height of an image without computing a deferred image or
+   * reading back a spilled one.
+   *
+   * @param imageName The name of the image.
+   * @return the width and height of the image.
+   * @throws IOException If the image does not exist in the model.
+   */
+  @Override
+  public int[] getImageDimensions(String imageName) throws IOException {
+    int[] dimensions = imageStore.dimensions(imageName);
+    if (dimensions == null) {
+      throw new IOException("Image not found.");
+    }
+    return dimensions;
+  }
+
   /**
    * Extracts the red component of the image.
    *
@@ -78,10 +269,14 @@ public class ImageModel implements IImageModel {
    */
   @Override
   public void redComponent(String imageName, String destImageName) throws IOException {
-    Image image = imageMap.get(imageName);
+    if (lazy) {
+      defer(imageName, destImageName, new RedComponentFilterStrategy());
+      return;
+    }
+    Image image = lookup(imageName);
     if (image != null) {
       Image redComponentImage = image.extractRedComponent();
-      imageMap.put(destImageName, redComponentImage);
+      store(destImageName, redComponentImage);
     } else {
       throw new IOException("Image not found.");
     }
@@ -96,10 +291,14 @@ public class ImageModel implements IImageModel {
    */
   @Override
   public void greenComponent(String imageName, String destImageName) throws IOException {
-    Image image = imageMap.get(imageName);
+    if (lazy) {
+      defer(imageName, destImageName, new GreenComponentFilterStrategy());
+      return;
+    }
+    Image image = lookup(imageName);
     if (image != null) {
       Image greenComponentImage = image.extractGreenComponent();
-      imageMap.put(destImageName, greenComponentImage);
+      store(destImageName, greenComponentImage);
     } else {
       throw new IOException("Image not found.");
     }
@@ -114,10 +313,14 @@ public class ImageModel implements IImageModel {
    */
   @Override
   public void blueComponent(String imageName, String destImageName) throws IOException {
-    Image image = imageMap.get(imageName);
+    if (lazy) {
+      defer(imageName, destImageName, new BlueComponentFilterStrategy());
+      return;
+    }
+    Image image = lookup(imageName);
     if (image != null) {
       Image blueComponentImage = image.extractBlueComponent();
-      imageMap.put(destImageName, blueComponentImage);
+      store(destImageName, blueComponentImage);
     } else {
       throw new IOException("Image not found.");
     }
@@ -134,19 +337,7 @@ public class ImageModel implements IImageModel {
   @Override
   public void valueComponent(String imageName, String destImageName,
                              Optional<Double> splitPercentageOpt) throws IOException {
-    Image image = imageMap.get(imageName);
-    if (image != null) {
-      FilterStrategy valueStrategy = new ValueFilterStrategy();
-
-      if (splitPercentageOpt.isPresent()) {
-        valueStrategy = new SplitFilterDecorator(valueStrategy, splitPercentageOpt.get());
-      }
-
-      Image resultImage = image.applyFilter(valueStrategy);
-      imageMap.put(destImageName, resultImage);
-    } else {
-      throw new IOException("Image not found.");
-    }
+    applyFilter(imageName, destImageName, new ValueFilterStrategy(), splitPercentageOpt);
   }
 
   /**
@@ -160,19 +351,7 @@ public class ImageModel implements IImageModel {
   @Override
   public void lumaComponent(String imageName, String destImageName,
                             Optional<Double> splitPercentageOpt) throws IOException {
-    Image image = imageMap.get(imageName);
-    if (image != null) {
-      FilterStrategy lumaStrategy = new LumaFilterStrategy();
-
-      if (splitPercentageOpt.isPresent()) {
-        lumaStrategy = new SplitFilterDecorator(lumaStrategy, splitPercentageOpt.get());
-      }
-
-      Image resultImage = image.applyFilter(lumaStrategy);
-      imageMap.put(destImageName, resultImage);
-    } else {
-      throw new IOException("Image not found.");
-    }
+    applyFilter(imageName, destImageName, new LumaFilterStrategy(), splitPercentageOpt);
   }
 
   /**
@@ -186,19 +365,7 @@ public class ImageModel implements IImageModel {
   @Override
   public void intensityComponent(String imageName, String destImageName,
                                  Optional<Double> splitPercentageOpt) throws IOException {
-    Image image = imageMap.get(imageName);
-    if (image != null) {
-      FilterStrategy intensityStrategy = new IntensityFilterStrategy();
-
-      if (splitPercentageOpt.isPresent()) {
-        intensityStrategy = new SplitFilterDecorator(intensityStrategy, splitPercentageOpt.get());
-      }
-
-      Image resultImage = image.applyFilter(intensityStrategy);
-      imageMap.put(destImageName, resultImage);
-    } else {
-      throw new IOException("Image not found.");
-    }
+    applyFilter(imageName, destImageName, new IntensityFilterStrategy(), splitPercentageOpt);
   }
 
   /**
@@ -212,19 +379,7 @@ public class ImageModel implements IImageModel {
   @Override
   public void sepia(String imageName, String destImageName, Optional<Double> splitPercentageOpt)
           throws IOException {
-    Image image = imageMap.get(imageName);
-    if (image != null) {
-      FilterStrategy sepiaStrategy = new SepiaFilterStrategy();
-
-      if (splitPercentageOpt.isPresent()) {
-        sepiaStrategy = new SplitFilterDecorator(sepiaStrategy, splitPercentageOpt.get());
-      }
-
-      Image resultImage = image.applyFilter(sepiaStrategy);
-      imageMap.put(destImageName, resultImage);
-    } else {
-      throw new IOException("Image not found.");
-    }
+    applyFilter(imageName, destImageName, new SepiaFilterStrategy(), splitPercentageOpt);
   }
 
   /**
@@ -236,9 +391,9 @@ public class ImageModel implements IImageModel {
    */
   @Override
   public void horizontalFlip(String imageName, String destImageName) throws IOException {
-    Image image = imageMap.get(imageName);
+    Image image = lookup(imageName);
     if (image != null) {
-      imageMap.put(destImageName, image.horizontalFlip());
+      store(destImageName, image.horizontalFlip());
     } else {
       throw new IOException("Image not found.");
     }
@@ -253,9 +408,9 @@ public class ImageModel implements IImageModel {
    */
   @Override
   public void verticalFlip(String imageName, String destImageName) throws IOException {
-    Image image = imageMap.get(imageName);
+    Image image = lookup(imageName);
     if (image != null) {
-      imageMap.put(destImageName, image.verticalFlip());
+      store(destImageName, image.verticalFlip());
     } else {
       throw new IOException("Image not found.");
     }
@@ -272,9 +427,13 @@ public class ImageModel implements IImageModel {
   @Override
   public void brightenCommand(int increment, String imageName, String destImageName)
           throws IOException {
-    Image image = imageMap.get(imageName);
+    if (lazy) {
+      defer(imageName, destImageName, new BrightenFilterStrategy(increment));
+      return;
+    }
+    Image image = lookup(imageName);
     if (image != null) {
-      imageMap.put(destImageName, image.brighten(increment));
+      store(destImageName, image.brighten(increment));
     } else {
       throw new IOException("Image not found.");
     }
@@ -292,19 +451,7 @@ public class ImageModel implements IImageModel {
   @Override
   public void blur(String imageName, String destImageName, Optional<Double> splitPercentageOpt)
           throws IOException {
-    Image image = imageMap.get(imageName);
-    if (image != null) {
-      FilterStrategy blurStrategy = new BlurFilterStrategy();
-
-      if (splitPercentageOpt.isPresent()) {
-        blurStrategy = new SplitFilterDecorator(blurStrategy, splitPercentageOpt.get());
-      }
-
-      Image resultImage = image.applyFilter(blurStrategy);
-      imageMap.put(destImageName, resultImage);
-    } else {
-      throw new IOException("Image not found.");
-    }
+    applyFilter(imageName, destImageName, new BlurFilterStrategy(), splitPercentageOpt);
   }
 
   /**
@@ -319,19 +466,7 @@ public class ImageModel implements IImageModel {
   @Override
   public void sharpen(String imageName, String destImageName,
                       Optional<Double> splitPercentageOpt) throws IOException {
-    Image image = imageMap.get(imageName);
-    if (image != null) {
-      FilterStrategy sharpenStrategy = new SharpenFilterStrategy();
-
-      if (splitPercentageOpt.isPresent()) {
-        sharpenStrategy = new SplitFilterDecorator(sharpenStrategy, splitPercentageOpt.get());
-      }
-
-      Image resultImage = image.applyFilter(sharpenStrategy);
-      imageMap.put(destImageName, resultImage);
-    } else {
-      throw new IOException("Image not found.");
-    }
+    applyFilter(imageName, destImageName, new SharpenFilterStrategy(), splitPercentageOpt);
   }
 
   /**
@@ -347,11 +482,12 @@ public class ImageModel implements IImageModel {
   @Override
   public void rgbSplit(String imageName, String destImageNameRed, String destImageNameGreen,
                        String destImageNameBlue) throws IOException {
-    Image image = imageMap.get(imageName);
+    Image image = lookup(imageName);
     if (image != null) {
-      imageMap.put(destImageNameRed, image.extractRedComponent());
-      imageMap.put(destImageNameGreen, image.extractGreenComponent());
-      imageMap.put(destImageNameBlue, image.extractBlueComponent());
+      Image[] channels = image.splitColorChannels();
+      store(destImageNameRed, channels[0]);
+      store(destImageNameGreen, channels[1]);
+      store(destImageNameBlue, channels[2]);
     } else {
       throw new IOException("Image not found.");
     }
@@ -370,12 +506,12 @@ public class ImageModel implements IImageModel {
   @Override
   public void rgbCombine(String destImageName, String redImageName,
                          String greenImageName, String blueImageName) throws IOException {
-    Image redImage = imageMap.get(redImageName);
-    Image greenImage = imageMap.get(greenImageName);
-    Image blueImage = imageMap.get(blueImageName);
+    Image redImage = lookup(redImageName);
+    Image greenImage = lookup(greenImageName);
+    Image blueImage = lookup(blueImageName);
     if (redImage != null && greenImage != null && blueImage != null) {
       Image combinedImage = Image.combineColorChannels(redImage, greenImage, blueImage);
-      imageMap.put(destImageName, combinedImage);
+      store(destImageName, combinedImage);
     } else {
       throw new IOException("One or more source images not found.");
     }
@@ -394,12 +530,11 @@ public class ImageModel implements IImageModel {
    */
   @Override
   public int[][] histogram(String imageName) throws IOException {
-    Image image = imageMap.get(imageName);
+    Image image = lookup(imageName);
     if (image == null) {
       throw new IOException("Image not found.");
     } else {
-      int[][] histograms = image.calculateHistograms();
-      return histograms;
+      return image.calculateHistograms(filterPool);
     }
   }
 
@@ -414,20 +549,7 @@ public class ImageModel implements IImageModel {
   @Override
   public void colorCorrect(String imageName, String destImageName,
                            Optional<Double> splitPercentageOpt) throws IOException {
-    Image image = imageMap.get(imageName);
-    if (image != null) {
-      FilterStrategy colorCorrectStrategy = new ColorCorrectFilterStrategy();
-
-      if (splitPercentageOpt.isPresent()) {
-        colorCorrectStrategy = new SplitFilterDecorator(colorCorrectStrategy,
-                splitPercentageOpt.get());
-      }
-
-      Image resultImage = image.applyFilter(colorCorrectStrategy);
-      imageMap.put(destImageName, resultImage);
-    } else {
-      throw new IOException("Image not found.");
-    }
+    applyFilter(imageName, destImageName, new ColorCorrectFilterStrategy(), splitPercentageOpt);
   }
 
   /**
@@ -445,25 +567,14 @@ public class ImageModel implements IImageModel {
   public void adjustLevels(String imageName, String destImageName, int b, int m, int w,
                            Optional<Double> splitPercentageOpt)
           throws IOException {
-    Image image = imageMap.get(imageName);
-    if (image != null) {
-      FilterStrategy adjustLevelsStrategy = new AdjustLevelsFilterStrategy(b, m, w);
-
-      if (splitPercentageOpt.isPresent()) {
-        adjustLevelsStrategy = new SplitFilterDecorator(adjustLevelsStrategy,
-                splitPercentageOpt.get());
-      }
-
-      Image resultImage = image.applyFilter(adjustLevelsStrategy);
-      imageMap.put(destImageName, resultImage);
-    } else {
-      throw new IOException("Image not found.");
-    }
+    applyFilter(imageName, destImageName, new AdjustLevelsFilterStrategy(b, m, w),
+            splitPercentageOpt);
   }
 
   /**
    * Compresses the specified image by a percentage using the Haar Wavelet Transform
-   * and saves the result as a new image.
+   * and saves the result as a new image. The whole image is transformed at once, with
+   * its channels transformed in parallel.
    *
    * @param imageName     The name of the source image to compress.
    * @param destImageName The name under which the compressed image will be saved.
@@ -476,11 +587,65 @@ public class ImageModel implements IImageModel {
     if (percentage < 0 || percentage > 100) {
       throw new IllegalArgumentException("Percentage must be between 0 and 100.");
     }
-    Image image = imageMap.get(imageName);
+    Image image = lookup(imageName);
     if (image == null) {
       throw new IOException("Image not found.");
     }
-    Image compressedImage = image.compress(percentage);
-    imageMap.put(destImageName, compressedImage);
+    Image compressedImage = image.compress(percentage, filterPool);
+    store(destImageName, compressedImage);
   }
+
+  /**
+   * Compresses the specified image by a percentage using the Haar Wavelet Transform on
+   * independent square blocks, which are transformed in parallel, and saves the result
+   * as a new image.
+   *
+   * @param imageName     The name of the source image to compress.
+   * @param destImageName The name under which the compressed image will be saved.
+   * @param percentage    The percentage by which the image is to be compressed.
+   * @param blockSize     The width and height of the blocks in pixels.
+   * @throws IOException If the specified image is not found in the image map.
+   */
+  @Override
+  public void compressImage(String imageName, String destImageName, int percentage,
+                            int blockSize) throws IOException {
+    if (percentage < 0 || percentage > 100) {
+      throw new IllegalArgumentException("Percentage must be between 0 and 100.");
+    }
+    Image image = lookup(imageName);
+    if (image == null) {
+      throw new IOException("Image not found.");
+    }
+    Image compressedImage = image.compress(percentage, blockSize, filterPool);
+    store(destImageName, compressedImage);
+  }
+
+  /**
+   * Applies a filter to the pixels of an image selected by a mask image and stores the
+   * result. The mask is taken from the mask image once and kept with it, and the filter
+   * runs on the model's filter pool when the model is parallel.
+   *
+   * @param imageName     The name of the source image.
+   * @param maskImageName The name of the mask image, which must have the same size.
+   * @param destImageName The name under which the result is stored.
+   * @param strategy      The filter to apply to the selected pixels.
+   * @throws IOException If the source image or the mask image is not found.
+   * @throws IllegalArgumentException If the mask image and the source image differ in size.
+   */
+  @Override
+  public void applyMasked(String imageName, String maskImageName, String destImageName,
+                          FilterStrategy strategy) throws IOException {
+    Image image = lookup(imageName);
+    Image maskImage = lookup(maskImageName);
+    if (image == null || maskImage == null) {
+      throw new IOException("Image not found.");
+    }
+    if (filterPool != null) {
+      strategy = new TiledFilterDecorator(strategy, filterPool);
+    }
+    Image resultImage = image.applyFilter(new MaskedFilterDecorator(strategy,
+            maskImage.toMask()));
+    store(destImageName, resultImage);
+  }
+
 }
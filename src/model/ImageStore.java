@@ -0,0 +1,576 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.image.Image;
+
+/**
+ * A thread-safe registry of the named images of a model. Each name maps to a slot holding
+ * either a computed image or a deferred one. Storing an image replaces the slot of its name
+ * atomically, so a reader sees either the old or the new image, never a mix, and commands
+ * on different names never wait for each other. Each slot is locked on its own while its
+ * deferred image is computed, so that it is computed only once even if several threads
+ * ask for it, without blocking threads that use other names.
+ * The store can be given a memory budget. When the computed images in memory exceed it,
+ * the least recently used ones are spilled to binary files in a temporary directory and
+ * read back the next time they are used. Images may share channel arrays, as a view shares
+ * those of the image it was taken from and a deferred image holds on to its source, so the
+ * store counts each distinct array once, for as long as any of its slots refers to it.
+ */
+class ImageStore {
+  private static final int HEADER_BYTES = 12;
+  private static final int GREEN_IS_RED = 1;
+  private static final int BLUE_IS_RED = 2;
+  private static final int BLUE_IS_GREEN = 4;
+  private static final int WRITE_CHUNK_BYTES = 1 << 20;
+
+  private final ConcurrentMap<String, Slot> slots;
+  private final ForkJoinPool pool;
+  private final long memoryBudget;
+  private final AtomicLong residentBytes;
+  private final Map<byte[], Integer> arrayReferences;
+  private final AtomicLong clock;
+  private final AtomicLong hits;
+  private final AtomicLong misses;
+  private final AtomicLong spills;
+  private final Object evictionLock;
+  private Path spillDirectory;
+
+  /**
+   * Constructs an empty store without a memory budget that computes deferred images on
+   * the given pool.
+   *
+   * @param pool the pool deferred images are computed on, or null to compute them serially
+   */
+  ImageStore(ForkJoinPool pool) {
+    this(pool, Long.MAX_VALUE);
+  }
+
+  /**
+   * Constructs an empty store that computes deferred images on the given pool and keeps at
+   * most the given number of bytes of pixel data in memory.
+   *
+   * @param pool         the pool deferred images are computed on, or null to compute them
+   *                     serially
+   * @param memoryBudget the number of bytes of computed images kept in memory
+   * @throws IllegalArgumentException if the memory budget is negative
+   */
+  ImageStore(ForkJoinPool pool, long memoryBudget) {
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException("Memory budget cannot be negative.");
+    }
+    this.slots = new ConcurrentHashMap<>();
+    this.pool = pool;
+    this.memoryBudget = memoryBudget;
+    this.residentBytes = new AtomicLong();
+    this.arrayReferences = new IdentityHashMap<>();
+    this.clock = new AtomicLong();
+    this.hits = new AtomicLong();
+    this.misses = new AtomicLong();
+    this.spills = new AtomicLong();
+    this.evictionLock = new Object();
+  }
+
+  /**
+   * Returns the image stored under the given name, computing it first if it is deferred or
+   * reading it back if it was spilled to disk.
+   * The computed image replaces the deferred one, so it is only computed once.
+   *
+   * @param name the name of the image
+   * @return the image, or null if there is no image with that name
+   * @throws IOException if a spilled image cannot be read back
+   */
+  Image get(String name) throws IOException {
+    while (name != null) {
+      Slot slot = slots.get(name);
+      if (slot == null) {
+        return null;
+      }
+      Image image = slot.image();
+      if (image != null) {
+        evict(slot);
+        return image;
+      }
+      // The slot was replaced while we read it; look up the new one.
+    }
+    return null;
+  }
+
+  /**
+   * Returns the image stored under the given name as a deferred image, without computing it.
+   *
+   * @param name the name of the image
+   * @return the deferred image, or null if there is no image with that name
+   * @throws IOException if a spilled image cannot be read back
+   */
+  DeferredImage getDeferred(String name) throws IOException {
+    while (name != null) {
+      Slot slot = slots.get(name);
+      if (slot == null) {
+        return null;
+      }
+      DeferredImage deferred = slot.deferred();
+      if (deferred != null) {
+        evict(slot);
+        return deferred;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the width and height of the image stored under the given name, without
+   * computing it or reading it back.
+   *
+   * @param name the name of the image
+   * @return the width and height, or null if there is no image with that name
+   */
+  int[] dimensions(String name) {
+    Slot slot = name == null ? null : slots.get(name);
+    return slot == null ? null : new int[]{slot.width, slot.height};
+  }
+
+  /**
+   * Stores an image under the given name, replacing any image of that name.
+   *
+   * @param name  the name of the image, not null
+   * @param image the image to store
+   * @throws IOException if another image cannot be spilled to stay within the budget
+   */
+  void put(String name, Image image) throws IOException {
+    Slot slot = new Slot(image, null);
+    replace(name, slot);
+    evict(slot);
+  }
+
+  /**
+   * Stores a deferred image under the given name, replacing any image of that name.
+   *
+   * @param name     the name of the image, not null
+   * @param deferred the deferred image to store
+   */
+  void putDeferred(String name, DeferredImage deferred) {
+    replace(name, new Slot(null, deferred));
+  }
+
+  /**
+   * Returns how many times a computed image was found in memory.
+   *
+   * @return the number of hits
+   */
+  long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Returns how many times a spilled image had to be read back from disk.
+   *
+   * @return the number of misses
+   */
+  long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Returns how many times an image was spilled to disk.
+   *
+   * @return the number of spills
+   */
+  long getSpills() {
+    return spills.get();
+  }
+
+  /**
+   * Returns the number of bytes of channel data the store holds in memory, counting each
+   * distinct array once however many images refer to it.
+   *
+   * @return the bytes held in memory
+   */
+  long getResidentBytes() {
+    return residentBytes.get();
+  }
+
+  /**
+   * Counts a reference from a slot to each distinct array of the given storage, adding the
+   * size of the arrays that no other slot refers to to the memory held by the store.
+   *
+   * @param storage the channel arrays of an image, as returned by {@link Image#getStorage()}
+   */
+  private void hold(byte[][] storage) {
+    synchronized (arrayReferences) {
+      for (int i = 0; i < storage.length; i++) {
+        if (isFirst(storage, i) && arrayReferences.merge(storage[i], 1, Integer::sum) == 1) {
+          residentBytes.addAndGet(storage[i].length);
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops a reference counted by {@link #hold}, subtracting the size of the arrays that no
+   * slot refers to any more from the memory held by the store.
+   *
+   * @param storage the channel arrays passed to {@link #hold}
+   */
+  private void release(byte[][] storage) {
+    synchronized (arrayReferences) {
+      for (int i = 0; i < storage.length; i++) {
+        if (isFirst(storage, i)
+                && arrayReferences.merge(storage[i], -1, Integer::sum) == 0) {
+          arrayReferences.remove(storage[i]);
+          residentBytes.addAndGet(-storage[i].length);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether a channel array does not also back an earlier channel.
+   *
+   * @param storage the channel arrays of an image
+   * @param index   the index of the channel
+   * @return true if no earlier channel uses the same array
+   */
+  private static boolean isFirst(byte[][] storage, int index) {
+    for (int i = 0; i < index; i++) {
+      if (storage[i] == storage[index]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Puts a new slot under a name and releases the memory or file of the slot it replaces.
+   *
+   * @param name the name of the image
+   * @param slot the new slot
+   */
+  private void replace(String name, Slot slot) {
+    Slot old = slots.put(name, slot);
+    if (old != null) {
+      old.discard();
+    }
+  }
+
+  /**
+   * Spills the least recently used images until the images in memory fit in the budget.
+   * The slot that was just used is never spilled, so a single image larger than the budget
+   * stays in memory.
+   *
+   * @param used the slot that was just used
+   * @throws IOException if an image cannot be written to disk
+   */
+  private void evict(Slot used) throws IOException {
+    if (residentBytes.get() <= memoryBudget) {
+      return;
+    }
+    synchronized (evictionLock) {
+      while (residentBytes.get() > memoryBudget) {
+        Slot victim = null;
+        for (Slot slot : slots.values()) {
+          if (slot != used && slot.isResident()
+                  && (victim == null || slot.lastUsed < victim.lastUsed)) {
+            victim = slot;
+          }
+        }
+        if (victim == null) {
+          return;
+        }
+        victim.spill();
+      }
+    }
+  }
+
+  /**
+   * Returns the directory spilled images are written to, creating it on first use.
+   *
+   * @return the spill directory
+   * @throws IOException if the directory cannot be created
+   */
+  private synchronized Path spillDirectory() throws IOException {
+    if (spillDirectory == null) {
+      spillDirectory = Files.createTempDirectory("image-store");
+      spillDirectory.toFile().deleteOnExit();
+    }
+    return spillDirectory;
+  }
+
+  /**
+   * Writes an image to a file: its width, height and which channels share storage,
+   * followed by the raw bytes of each distinct channel. The pixels of a view are read row
+   * by row from the arrays it refers to, without copying them into arrays of its own.
+   *
+   * @param image the image to write
+   * @param file  the file to write to
+   * @throws IOException if the file cannot be written
+   */
+  private static void write(Image image, Path file) throws IOException {
+    byte[][] storage = image.getStorage();
+    byte[] red = storage[0];
+    byte[] green = storage[1];
+    byte[] blue = storage[2];
+    int flags = (green == red ? GREEN_IS_RED : 0)
+            | (blue == red ? BLUE_IS_RED : blue == green ? BLUE_IS_GREEN : 0);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(image.getWidth()).putInt(image.getHeight()).putInt(flags).flip();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(channel, header);
+      writeChannel(channel, image, red);
+      if ((flags & GREEN_IS_RED) == 0) {
+        writeChannel(channel, image, green);
+      }
+      if ((flags & (BLUE_IS_RED | BLUE_IS_GREEN)) == 0) {
+        writeChannel(channel, image, blue);
+      }
+    }
+  }
+
+  /**
+   * Writes the pixels of one channel of an image, a few rows at a time.
+   *
+   * @param channel the channel to write to
+   * @param image   the image to write
+   * @param storage the storage array of the channel
+   * @throws IOException if the bytes cannot be written
+   */
+  private static void writeChannel(FileChannel channel, Image image, byte[] storage)
+          throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int rows = Math.max(1, Math.min(height, WRITE_CHUNK_BYTES / Math.max(1, width)));
+    byte[] chunk = new byte[rows * width];
+    for (int y = 0; y < height; y += rows) {
+      int count = Math.min(rows, height - y);
+      for (int i = 0; i < count; i++) {
+        image.copyRow(storage, y + i, chunk, i * width);
+      }
+      writeFully(channel, ByteBuffer.wrap(chunk, 0, count * width));
+    }
+  }
+
+  /**
+   * Reads an image written by {@link #write}.
+   *
+   * @param file the file to read
+   * @return the image
+   * @throws IOException if the file cannot be read
+   */
+  private static Image read(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = readFully(channel, HEADER_BYTES);
+      int width = header.getInt();
+      int height = header.getInt();
+      int flags = header.getInt();
+      int size = width * height;
+      byte[] red = readFully(channel, size).array();
+      byte[] green = (flags & GREEN_IS_RED) != 0 ? red : readFully(channel, size).array();
+      byte[] blue;
+      if ((flags & BLUE_IS_RED) != 0) {
+        blue = red;
+      } else if ((flags & BLUE_IS_GREEN) != 0) {
+        blue = green;
+      } else {
+        blue = readFully(channel, size).array();
+      }
+      return new Image(width, height, red, green, blue);
+    }
+  }
+
+  /**
+   * Writes all remaining bytes of a buffer to a channel.
+   *
+   * @param channel the channel to write to
+   * @param buffer  the bytes to write
+   * @throws IOException if the bytes cannot be written
+   */
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Reads the given number of bytes from a channel.
+   *
+   * @param channel the channel to read from
+   * @param count   the number of bytes to read
+   * @return a buffer holding the bytes, positioned at its start
+   * @throws IOException if the channel ends before the bytes are read
+   */
+  private static ByteBuffer readFully(FileChannel channel, int count) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(count);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("Spilled image file is truncated.");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * The content of one name: a computed image in memory or spilled to a file, or a deferred
+   * image until it is computed.
+   */
+  private class Slot {
+    private final int width;
+    private final int height;
+    private Image image;
+    private DeferredImage deferred;
+    private Path file;
+    private boolean discarded;
+    private byte[][] held;
+    private volatile long lastUsed;
+
+    /**
+     * Constructs a slot holding either a computed or a deferred image.
+     *
+     * @param image    the computed image, or null if it is deferred
+     * @param deferred the deferred image, or null if it is computed
+     */
+    Slot(Image image, DeferredImage deferred) {
+      this.image = image;
+      this.deferred = deferred;
+      this.width = image != null ? image.getWidth() : deferred.getWidth();
+      this.height = image != null ? image.getHeight() : deferred.getHeight();
+      this.lastUsed = clock.incrementAndGet();
+      resident(image != null ? image : deferred.getSource());
+    }
+
+    /**
+     * Counts the arrays of an image this slot keeps in memory, the computed image or the
+     * source of the deferred one, towards the memory held by the store, in place of those
+     * counted before. The arrays are remembered, since a view may copy its pixels into
+     * arrays of its own while it is held.
+     *
+     * @param image the image now held in memory, or null if the slot holds none
+     */
+    private void resident(Image image) {
+      byte[][] storage = image == null ? null : image.getStorage();
+      if (storage != null) {
+        hold(storage);
+      }
+      if (held != null) {
+        release(held);
+      }
+      held = storage;
+    }
+
+    /**
+     * Recounts the computed image of this slot if it is a view that has copied its pixels
+     * since it was counted.
+     */
+    private void recount() {
+      byte[][] storage = image.getStorage();
+      for (int i = 0; i < storage.length; i++) {
+        if (storage[i] != held[i]) {
+          resident(image);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Returns the computed image of this slot, computing it or reading it back first if
+     * needed.
+     *
+     * @return the computed image, or null if the slot has been replaced
+     * @throws IOException if a spilled image cannot be read back
+     */
+    synchronized Image image() throws IOException {
+      lastUsed = clock.incrementAndGet();
+      if (discarded) {
+        return null;
+      } else if (image != null) {
+        hits.incrementAndGet();
+        recount();
+      } else if (deferred != null) {
+        image = deferred.materialize(pool);
+        deferred = null;
+        resident(image);
+      } else {
+        misses.incrementAndGet();
+        image = read(file);
+        Files.deleteIfExists(file);
+        file = null;
+        resident(image);
+      }
+      return image;
+    }
+
+    /**
+     * Returns the image of this slot as a deferred image, without computing it.
+     *
+     * @return the pending deferred image, the computed image with no pending filters, or
+     *         null if the slot has been replaced
+     * @throws IOException if a spilled image cannot be read back
+     */
+    synchronized DeferredImage deferred() throws IOException {
+      if (deferred != null && !discarded) {
+        lastUsed = clock.incrementAndGet();
+        return deferred;
+      }
+      Image computed = image();
+      return computed == null ? null : new DeferredImage(computed);
+    }
+
+    /**
+     * Returns whether the computed image of this slot is held in memory.
+     *
+     * @return true if the image is in memory
+     */
+    synchronized boolean isResident() {
+      return image != null;
+    }
+
+    /**
+     * Writes the computed image of this slot to a file and releases it from memory.
+     *
+     * @throws IOException if the image cannot be written
+     */
+    synchronized void spill() throws IOException {
+      if (image == null) {
+        return;
+      }
+      Path target = Files.createTempFile(spillDirectory(), "image", ".bin");
+      target.toFile().deleteOnExit();
+      write(image, target);
+      image = null;
+      resident(null);
+      file = target;
+      spills.incrementAndGet();
+    }
+
+    /**
+     * Releases the memory or file of this slot once it has been replaced. Threads that
+     * still hold the slot then find it empty and look the name up again.
+     */
+    synchronized void discard() {
+      discarded = true;
+      deferred = null;
+      image = null;
+      resident(null);
+      if (file != null) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          // The file is deleted on exit anyway.
+        }
+        file = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package model.image;
+
+/**
+ * Represents a point operation that maps each channel value independently, compiled into
+ * one 256-entry table per channel. Operations such as brightening, levels adjustment and
+ * color correction are evaluated once for each of the 256 possible values when the table
+ * is built, so applying them to an image is a single table lookup per channel value.
+ * Tables compose: applying {@code first.then(second)} gives the same pixels as applying
+ * {@code first} and then {@code second}, in one pass over the image.
+ */
+public class ChannelLookupTable {
+  private static final int LEVELS = 256;
+
+  private final byte[] redTable;
+  private final byte[] greenTable;
+  private final byte[] blueTable;
+
+  /**
+   * Constructs a table from its per-channel entries.
+   *
+   * @param redTable   the new value of each red value
+   * @param greenTable the new value of each green value
+   * @param blueTable  the new value of each blue value
+   */
+  private ChannelLookupTable(byte[] redTable, byte[] greenTable, byte[] blueTable) {
+    this.redTable = redTable;
+    this.greenTable = greenTable;
+    this.blueTable = blueTable;
+  }
+
+  /**
+   * Compiles brightening or darkening by a given increment, clamped to 0 to 255.
+   *
+   * @param increment the amount to change every channel value by
+   * @return the lookup table of the brightening
+   */
+  public static ChannelLookupTable brighten(int increment) {
+    byte[] table = new byte[LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      table[value] = (byte) Math.min(Math.max(value + increment, 0), 255);
+    }
+    return new ChannelLookupTable(table, table, table);
+  }
+
+  /**
+   * Compiles a levels adjustment, which fits a quadratic curve through the black point,
+   * mid-point and white point and applies it to every channel value.
+   *
+   * @param b the black point (minimum intensity value)
+   * @param m the mid-point (mid-range intensity value)
+   * @param w the white point (maximum intensity value)
+   * @return the lookup table of the levels adjustment
+   * @throws IllegalArgumentException if the level values are out of range or
+   *                                  not in ascending order
+   */
+  public static ChannelLookupTable levels(int b, int m, int w) {
+    if (b < 0 || b > 255 || m < 0 || m > 255 || w < 0 || w > 255) {
+      throw new IllegalArgumentException("Level values must be between 0 and 255.");
+    }
+
+    if (!(b <= m && m <= w)) {
+      throw new IllegalArgumentException("Level values must be in ascending order (b <= m <= w).");
+    }
+
+    double A = b * b * (m - w) - b * (m * m - w * w) + w * m * m - m * w * w;
+    double A_a = -b * (128 - 255) + 128 * w - 255 * m;
+    double A_b = b * b * (128 - 255) + 255 * m * m - 128 * w * w;
+    double A_c = b * b * (255 * m - 128 * w) - b * (255 * m * m - 128 * w * w);
+
+    double a = A_a / A;
+    double bb = A_b / A;
+    double c = A_c / A;
+
+    byte[] table = new byte[LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      table[value] = (byte) clamp((int) (a * value * value + bb * value + c));
+    }
+    return new ChannelLookupTable(table, table, table);
+  }
+
+  /**
+   * Compiles a color correction that shifts each channel so that the peaks of its
+   * histogram, ignoring the values near the edges, line up at their average.
+   *
+   * @param histograms the red, green and blue histograms to take the peak values from
+   * @return the lookup table of the color correction
+   */
+  public static ChannelLookupTable colorCorrection(int[][] histograms) {
+    int redPeak = findMeaningfulPeak(histograms[0]);
+    int greenPeak = findMeaningfulPeak(histograms[1]);
+    int bluePeak = findMeaningfulPeak(histograms[2]);
+    double averagePeak = (redPeak + greenPeak + bluePeak) / 3;
+
+    return new ChannelLookupTable(offsetTable((int) (averagePeak - redPeak)),
+            offsetTable((int) (averagePeak - greenPeak)),
+            offsetTable((int) (averagePeak - bluePeak)));
+  }
+
+  /**
+   * Finds the most meaningful peak in a histogram, ignoring the edges.
+   * This is used to determine a significant peak in color intensity.
+   *
+   * @param histogram the histogram to analyze
+   * @return the value of the most significant peak intensity
+   */
+  private static int findMeaningfulPeak(int[] histogram) {
+    int peak = 0;
+    int peakValue = 0;
+    for (int i = 10; i < 245; i++) {
+      if (histogram[i] > peak) {
+        peak = histogram[i];
+        peakValue = i;
+      }
+    }
+    return peakValue;
+  }
+
+  /**
+   * Builds a table that adds an offset to every value, clamped to 0 to 255.
+   *
+   * @param offset the amount added to every value
+   * @return the table entries
+   */
+  private static byte[] offsetTable(int offset) {
+    byte[] table = new byte[LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      table[value] = (byte) clamp(value + offset);
+    }
+    return table;
+  }
+
+  /**
+   * Clamps a given value to the range of 0 to 255.
+   *
+   * @param value the value to clamp
+   * @return the clamped value
+   */
+  private static int clamp(int value) {
+    return Math.max(0, Math.min(255, value));
+  }
+
+  /**
+   * Returns the table of one channel. The returned array must not be modified.
+   *
+   * @param channel 0 for red, 1 for green or 2 for blue
+   * @return the table entries of the channel
+   */
+  byte[] tableOf(int channel) {
+    switch (channel) {
+      case 0:
+        return redTable;
+      case 1:
+        return greenTable;
+      default:
+        return blueTable;
+    }
+  }
+
+  /**
+   * Composes this table with the one applied after it.
+   *
+   * @param next the table applied to the output of this one
+   * @return a table equivalent to applying this table and then the next
+   */
+  public ChannelLookupTable then(ChannelLookupTable next) {
+    byte[] red = compose(redTable, next.redTable);
+    byte[] green = greenTable == redTable && next.greenTable == next.redTable
+            ? red : compose(greenTable, next.greenTable);
+    byte[] blue = blueTable == redTable && next.blueTable == next.redTable
+            ? red : compose(blueTable, next.blueTable);
+    return new ChannelLookupTable(red, green, blue);
+  }
+
+  /**
+   * Composes two tables of one channel.
+   *
+   * @param first  the table applied first
+   * @param second the table applied to the output of the first
+   * @return the composed table entries
+   */
+  private static byte[] compose(byte[] first, byte[] second) {
+    byte[] table = new byte[LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      table[value] = second[first[value] & 0xff];
+    }
+    return table;
+  }
+
+  /**
+   * Applies this table to every pixel of an image. Channels that share storage in the
+   * image and have the same table, such as those of a grayscale image, are looked up once
+   * and stay shared in the result.
+   *
+   * @param image the image to map
+   * @return a new image with every channel value replaced by its table entry
+   */
+  public Image apply(Image image) {
+    byte[] red = image.getRedChannel();
+    byte[] green = image.getGreenChannel();
+    byte[] blue = image.getBlueChannel();
+
+    byte[] newRed = map(red, redTable);
+    byte[] newGreen = green == red && greenTable == redTable ? newRed : map(green, greenTable);
+    byte[] newBlue;
+    if (blue == red && blueTable == redTable) {
+      newBlue = newRed;
+    } else if (blue == green && blueTable == greenTable) {
+      newBlue = newGreen;
+    } else {
+      newBlue = map(blue, blueTable);
+    }
+    return new Image(image.getWidth(), image.getHeight(), newRed, newGreen, newBlue);
+  }
+
+  /**
+   * Looks up every value of one channel in its table.
+   *
+   * @param channel the channel values
+   * @param table   the table of the channel
+   * @return the mapped channel values
+   */
+  private static byte[] map(byte[] channel, byte[] table) {
+    byte[] mapped = new byte[channel.length];
+    for (int i = 0; i < channel.length; i++) {
+      mapped[i] = table[channel[i] & 0xff];
+    }
+    return mapped;
+  }
+}
@@ -0,0 +1,308 @@
+package model.image;
+
+import java.util.Arrays;
+
+/**
+ * Represents a linear color transform compiled for integer fixed-point evaluation.
+ * Each output channel is a weighted sum of the red, green and blue values divided by a
+ * common divisor, rounded down or to the nearest integer and clamped to 0 to 255. The
+ * weights are integers, so the sums are exact, and the division is done by multiplying
+ * with a precomputed reciprocal, so the inner loop has no division and no branches.
+ * A matrix whose three rows are the same, such as luma or intensity, produces a grayscale
+ * image and computes the sum once per pixel.
+ * Every output channel is finally mapped through a 256-entry table, which lets point
+ * operations that follow the matrix be folded into it ahead of time.
+ */
+public class ColorMatrix {
+  private static final int LEVELS = 256;
+  private static final int FRACTION_BITS = 40;
+  private static final byte[] IDENTITY = identityTable();
+
+  /**
+   * The sepia tone transform.
+   */
+  public static final ColorMatrix SEPIA = new ColorMatrix(new int[][]{
+      {393, 769, 189},
+      {349, 686, 168},
+      {272, 534, 131}
+  }, 1000, false);
+  /**
+   * The luma (relative luminance) transform, rounded to the nearest integer.
+   */
+  public static final ColorMatrix LUMA = new ColorMatrix(new int[][]{
+      {2126, 7152, 722},
+      {2126, 7152, 722},
+      {2126, 7152, 722}
+  }, 10000, true);
+  /**
+   * The intensity transform, the average of the three channels rounded down.
+   */
+  public static final ColorMatrix INTENSITY = new ColorMatrix(new int[][]{
+      {1, 1, 1},
+      {1, 1, 1},
+      {1, 1, 1}
+  }, 3, false);
+
+  private final int[][] weights;
+  private final int offset;
+  private final int bias;
+  private final long reciprocal;
+  private final boolean grayscale;
+  private final byte[][] tables;
+
+  /**
+   * Compiles the transform whose output channel i is
+   * (weights[i][0] * red + weights[i][1] * green + weights[i][2] * blue) / divisor,
+   * rounded and clamped to 0 to 255.
+   *
+   * @param weights the integer weights, one row of red, green and blue weights per output
+   *                channel
+   * @param divisor the common divisor of the weights
+   * @param rounded true to round the result to the nearest integer (halves up), false to
+   *                round it down
+   * @throws IllegalArgumentException if the weights are not a 3x3 matrix, the divisor is
+   *                                  not positive, or the sums could overflow
+   */
+  public ColorMatrix(int[][] weights, int divisor, boolean rounded) {
+    if (weights.length != 3) {
+      throw new IllegalArgumentException("Color matrix must have 3 rows.");
+    }
+    if (divisor <= 0) {
+      throw new IllegalArgumentException("Divisor must be positive.");
+    }
+    this.weights = new int[3][];
+    long negative = 0;
+    long positive = 0;
+    for (int row = 0; row < 3; row++) {
+      if (weights[row].length != 3) {
+        throw new IllegalArgumentException("Color matrix must have 3 columns.");
+      }
+      this.weights[row] = weights[row].clone();
+      long rowNegative = 0;
+      long rowPositive = 0;
+      for (int weight : weights[row]) {
+        if (weight < 0) {
+          rowNegative -= (long) weight * 255;
+        } else {
+          rowPositive += (long) weight * 255;
+        }
+      }
+      negative = Math.max(negative, rowNegative);
+      positive = Math.max(positive, rowPositive);
+    }
+    // A bias of whole divisors keeps every sum non-negative, so that shifting rounds down.
+    this.bias = (int) ((negative + divisor - 1) / divisor);
+    this.offset = bias * divisor + (rounded ? divisor / 2 : 0);
+    this.reciprocal = (1L << FRACTION_BITS) / divisor + 1;
+    // Multiplying by the reciprocal divides exactly as long as sums stay below 2^40 / divisor.
+    long largest = positive + negative + offset;
+    if (largest > Integer.MAX_VALUE || largest >= (1L << FRACTION_BITS) / divisor
+            || largest >= Long.MAX_VALUE / reciprocal) {
+      throw new IllegalArgumentException("Color matrix weights are too large.");
+    }
+    this.grayscale = Arrays.equals(weights[0], weights[1])
+            && Arrays.equals(weights[0], weights[2]);
+    this.tables = new byte[][]{IDENTITY, IDENTITY, IDENTITY};
+  }
+
+  /**
+   * Constructs a copy of a matrix with different output tables.
+   *
+   * @param matrix the matrix to copy
+   * @param tables the new output tables of the red, green and blue channels
+   */
+  private ColorMatrix(ColorMatrix matrix, byte[][] tables) {
+    this.weights = matrix.weights;
+    this.offset = matrix.offset;
+    this.bias = matrix.bias;
+    this.reciprocal = matrix.reciprocal;
+    this.grayscale = matrix.grayscale;
+    this.tables = tables;
+  }
+
+  /**
+   * Builds the table that maps every value to itself.
+   *
+   * @return the identity table
+   */
+  private static byte[] identityTable() {
+    byte[] table = new byte[LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      table[value] = (byte) value;
+    }
+    return table;
+  }
+
+  /**
+   * Returns whether the three output channels are the same weighted sum, so that the
+   * matrix turns every pixel into a single level before its output tables.
+   *
+   * @return true if the matrix produces a grayscale level for each pixel
+   */
+  public boolean isGrayscale() {
+    return grayscale;
+  }
+
+  /**
+   * Computes one output channel for a pixel, before its output table.
+   *
+   * @param row   the output channel
+   * @param red   the red value of the pixel
+   * @param green the green value of the pixel
+   * @param blue  the blue value of the pixel
+   * @return the clamped level of the output channel
+   */
+  private int level(int row, int red, int green, int blue) {
+    int[] w = weights[row];
+    int sum = w[0] * red + w[1] * green + w[2] * blue + offset;
+    int value = (int) ((sum * reciprocal) >>> FRACTION_BITS) - bias;
+    return Math.max(0, Math.min(255, value));
+  }
+
+  /**
+   * Folds a lookup table applied to the output of this matrix into its output tables.
+   *
+   * @param next the lookup table applied after this matrix
+   * @return a matrix equivalent to applying this matrix and then the table
+   */
+  public ColorMatrix then(ChannelLookupTable next) {
+    byte[][] composed = new byte[3][LEVELS];
+    for (int channel = 0; channel < 3; channel++) {
+      byte[] table = next.tableOf(channel);
+      for (int value = 0; value < LEVELS; value++) {
+        composed[channel][value] = table[tables[channel][value] & 0xff];
+      }
+    }
+    return new ColorMatrix(this, shareEqual(composed));
+  }
+
+  /**
+   * Folds another matrix applied to the output of this one into its output tables.
+   * This is only possible if this matrix is grayscale: every pixel is then reduced to
+   * a single level, and the other matrix's result for each of the 256 levels can be
+   * computed ahead of time, with the same rounding as applying the two in turn.
+   *
+   * @param next the matrix applied after this one
+   * @return a matrix equivalent to applying this matrix and then the next
+   * @throws IllegalStateException if this matrix is not grayscale
+   */
+  public ColorMatrix then(ColorMatrix next) {
+    if (!grayscale) {
+      throw new IllegalStateException("Only a grayscale matrix can absorb another matrix.");
+    }
+    byte[][] composed = new byte[3][LEVELS];
+    for (int value = 0; value < LEVELS; value++) {
+      int red = tables[0][value] & 0xff;
+      int green = tables[1][value] & 0xff;
+      int blue = tables[2][value] & 0xff;
+      for (int channel = 0; channel < 3; channel++) {
+        composed[channel][value] =
+                next.tables[channel][next.level(channel, red, green, blue)];
+      }
+    }
+    return new ColorMatrix(this, shareEqual(composed));
+  }
+
+  /**
+   * Makes channels with equal tables share one table, so that they can share their output.
+   *
+   * @param tables the red, green and blue tables
+   * @return the same tables, with equal ones replaced by the first of them
+   */
+  private static byte[][] shareEqual(byte[][] tables) {
+    if (Arrays.equals(tables[1], tables[0])) {
+      tables[1] = tables[0];
+    }
+    if (Arrays.equals(tables[2], tables[0])) {
+      tables[2] = tables[0];
+    } else if (Arrays.equals(tables[2], tables[1])) {
+      tables[2] = tables[1];
+    }
+    return tables;
+  }
+
+  /**
+   * Applies this transform to every pixel of an image. A grayscale matrix whose output
+   * tables are the same produces an image whose three channels share one array.
+   *
+   * @param image the image to transform
+   * @return a new image with the transform applied
+   */
+  public Image apply(Image image) {
+    byte[] red = image.getRedChannel();
+    byte[] green = image.getGreenChannel();
+    byte[] blue = image.getBlueChannel();
+    int size = red.length;
+    byte[] newRed = new byte[size];
+    byte[] newGreen = tables[1] == tables[0] && grayscale ? newRed : new byte[size];
+    byte[] newBlue;
+    if (tables[2] == tables[0] && grayscale) {
+      newBlue = newRed;
+    } else if (tables[2] == tables[1] && grayscale) {
+      newBlue = newGreen;
+    } else {
+      newBlue = new byte[size];
+    }
+
+    if (grayscale) {
+      applyGrayscale(red, green, blue, newRed, newGreen, newBlue);
+    } else {
+      applyRow(0, red, green, blue, newRed);
+      applyRow(1, red, green, blue, newGreen);
+      applyRow(2, red, green, blue, newBlue);
+    }
+    return new Image(image.getWidth(), image.getHeight(), newRed, newGreen, newBlue);
+  }
+
+  /**
+   * Computes the single level of each pixel and writes it through the three output tables.
+   *
+   * @param red      the red values of the image
+   * @param green    the green values of the image
+   * @param blue     the blue values of the image
+   * @param newRed   the array the red output is written into
+   * @param newGreen the array the green output is written into
+   * @param newBlue  the array the blue output is written into
+   */
+  private void applyGrayscale(byte[] red, byte[] green, byte[] blue,
+                              byte[] newRed, byte[] newGreen, byte[] newBlue) {
+    int[] w = weights[0];
+    int wr = w[0];
+    int wg = w[1];
+    int wb = w[2];
+    byte[] redTable = tables[0];
+    byte[] greenTable = tables[1];
+    byte[] blueTable = tables[2];
+    for (int i = 0; i < red.length; i++) {
+      int sum = wr * (red[i] & 0xff) + wg * (green[i] & 0xff) + wb * (blue[i] & 0xff) + offset;
+      int level = Math.max(0, Math.min(255,
+              (int) ((sum * reciprocal) >>> FRACTION_BITS) - bias));
+      newRed[i] = redTable[level];
+      newGreen[i] = greenTable[level];
+      newBlue[i] = blueTable[level];
+    }
+  }
+
+  /**
+   * Computes one output channel of every pixel.
+   *
+   * @param row    the output channel
+   * @param red    the red values of the image
+   * @param green  the green values of the image
+   * @param blue   the blue values of the image
+   * @param output the array the output channel is written into
+   */
+  private void applyRow(int row, byte[] red, byte[] green, byte[] blue, byte[] output) {
+    int[] w = weights[row];
+    int wr = w[0];
+    int wg = w[1];
+    int wb = w[2];
+    byte[] table = tables[row];
+    for (int i = 0; i < red.length; i++) {
+      int sum = wr * (red[i] & 0xff) + wg * (green[i] & 0xff) + wb * (blue[i] & 0xff) + offset;
+      int level = Math.max(0, Math.min(255,
+              (int) ((sum * reciprocal) >>> FRACTION_BITS) - bias));
+      output[i] = table[level];
+    }
+  }
+}
@@ -0,0 +1,377 @@
+package model.image;
+
+/**
+ * Represents a square convolution kernel compiled for integer fixed-point evaluation.
+ * The weights are scaled by a power of two and rounded to integers. Kernels whose weights
+ * are multiples of a power of two (such as the blur and sharpen kernels, which are
+ * multiples of 1/16 and 1/8) are represented exactly, so convolving with them gives the
+ * same result as double-precision arithmetic. Other kernels use 16 fractional bits.
+ * Kernels that are the outer product of a column and a row are detected and applied as
+ * two one-dimensional passes: a horizontal pass into a ring of rows, then a vertical pass
+ * over the ring. Pixels outside the image contribute zero.
+ */
+public class ConvolutionKernel {
+  private static final int MAX_FRACTION_BITS = 16;
+  private static final long MAX_SUM = 1L << 30;
+
+  private final int radius;
+  private final int shift;
+  private final int[][] weights;
+  private final int[] rowWeights;
+  private final int[] columnWeights;
+
+  /**
+   * Compiles the given kernel. The kernel is indexed as kernel[dy][dx], where the
+   * center element weighs the pixel itself.
+   *
+   * @param kernel the kernel weights, a square matrix with an odd size
+   * @throws IllegalArgumentException if the kernel is not a non-empty odd-sized square, or
+   *                                  if its weights are not finite or so large that a sum
+   *                                  over the kernel could overflow the fixed-point range
+   */
+  public ConvolutionKernel(double[][] kernel) {
+    int size = kernel.length;
+    if (size == 0 || size % 2 == 0) {
+      throw new IllegalArgumentException("Kernel size must be odd.");
+    }
+    double absoluteSum = 0;
+    for (double[] row : kernel) {
+      if (row.length != size) {
+        throw new IllegalArgumentException("Kernel must be square.");
+      }
+      for (double weight : row) {
+        absoluteSum += Math.abs(weight);
+      }
+    }
+    if (!(absoluteSum * 255 < MAX_SUM)) {
+      throw new IllegalArgumentException("Kernel weights are too large.");
+    }
+    this.radius = size / 2;
+    this.shift = fractionBits(kernel, absoluteSum);
+    this.weights = new int[size][size];
+    for (int dy = 0; dy < size; dy++) {
+      for (int dx = 0; dx < size; dx++) {
+        weights[dy][dx] = (int) Math.round(Math.scalb(kernel[dy][dx], shift));
+      }
+    }
+
+    int[][] factors = factorize(weights);
+    this.columnWeights = factors == null ? null : factors[0];
+    this.rowWeights = factors == null ? null : factors[1];
+  }
+
+  /**
+   * Finds the smallest number of fractional bits that represents every weight exactly,
+   * without letting a sum over the kernel overflow. If no such number exists the largest
+   * safe number of bits, at most 16, is used.
+   *
+   * @param kernel      the kernel weights
+   * @param absoluteSum the sum of the absolute values of the weights
+   * @return the number of fractional bits of the fixed-point weights
+   */
+  private static int fractionBits(double[][] kernel, double absoluteSum) {
+    int bits = 0;
+    while (bits < MAX_FRACTION_BITS
+            && Math.scalb(absoluteSum, bits + 1) * 255 < MAX_SUM
+            && !isExact(kernel, bits)) {
+      bits++;
+    }
+    return bits;
+  }
+
+  /**
+   * Checks whether all weights become integers when scaled by 2^bits.
+   *
+   * @param kernel the kernel weights
+   * @param bits   the number of fractional bits
+   * @return true if every scaled weight is an integer
+   */
+  private static boolean isExact(double[][] kernel, int bits) {
+    for (double[] row : kernel) {
+      for (double weight : row) {
+        double scaled = Math.scalb(weight, bits);
+        if (scaled != Math.rint(scaled)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Factors an integer matrix into the outer product of an integer column and row, if
+   * possible. The row is taken from the row with the largest entry, divided by the greatest
+   * common divisor of its entries, so the factorization is exact in integers.
+   *
+   * @param matrix the integer kernel weights
+   * @return the column and row factors, or null if the matrix is not separable
+   */
+  private static int[][] factorize(int[][] matrix) {
+    int size = matrix.length;
+    int pivotRow = -1;
+    int pivotColumn = -1;
+    for (int dy = 0; dy < size; dy++) {
+      for (int dx = 0; dx < size; dx++) {
+        if (pivotRow < 0
+                || Math.abs(matrix[dy][dx]) > Math.abs(matrix[pivotRow][pivotColumn])) {
+          pivotRow = dy;
+          pivotColumn = dx;
+        }
+      }
+    }
+    if (size == 1 || matrix[pivotRow][pivotColumn] == 0) {
+      return null;
+    }
+
+    int divisor = 0;
+    for (int weight : matrix[pivotRow]) {
+      divisor = gcd(divisor, Math.abs(weight));
+    }
+    int[] row = new int[size];
+    for (int dx = 0; dx < size; dx++) {
+      row[dx] = matrix[pivotRow][dx] / divisor;
+    }
+    int[] column = new int[size];
+    for (int dy = 0; dy < size; dy++) {
+      if (matrix[dy][pivotColumn] % row[pivotColumn] != 0) {
+        return null;
+      }
+      column[dy] = matrix[dy][pivotColumn] / row[pivotColumn];
+      for (int dx = 0; dx < size; dx++) {
+        if ((long) column[dy] * row[dx] != matrix[dy][dx]) {
+          return null;
+        }
+      }
+    }
+    return new int[][]{column, row};
+  }
+
+  /**
+   * Computes the greatest common divisor of two non-negative integers.
+   *
+   * @param a the first integer
+   * @param b the second integer
+   * @return the greatest common divisor of a and b
+   */
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      int remainder = a % b;
+      a = b;
+      b = remainder;
+    }
+    return a;
+  }
+
+  /**
+   * Returns the radius of this kernel, the number of pixels it reaches on each side.
+   *
+   * @return the kernel radius
+   */
+  public int getRadius() {
+    return radius;
+  }
+
+  /**
+   * Returns whether this kernel is applied as two one-dimensional passes.
+   *
+   * @return true if the kernel is separable
+   */
+  public boolean isSeparable() {
+    return rowWeights != null;
+  }
+
+  /**
+   * Convolves the given image with this kernel. Each channel value is rounded to the
+   * nearest integer, with halves rounded up, and clamped to [0, 255]. Channels that share
+   * the same array, as in grayscale images, are convolved once.
+   *
+   * @param image the image to convolve
+   * @return a new Image object with the kernel applied
+   */
+  public Image convolve(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    byte[][] source = {image.getRedChannel(), image.getGreenChannel(), image.getBlueChannel()};
+    byte[][] target = new byte[3][];
+    for (int channel = 0; channel < 3; channel++) {
+      if (channel > 0 && source[channel] == source[channel - 1]) {
+        target[channel] = target[channel - 1];
+        continue;
+      }
+      target[channel] = new byte[width * height];
+      if (isSeparable()) {
+        convolveSeparable(source[channel], target[channel], width, height);
+      } else {
+        convolveFull(source[channel], target[channel], width, height);
+      }
+    }
+    return new Image(width, height, target[0], target[1], target[2]);
+  }
+
+  /**
+   * Convolves one channel with the full two-dimensional kernel. The range of kernel rows
+   * inside the image is computed once per output row, and only the columns within the
+   * kernel radius of the left and right edges check column bounds.
+   *
+   * @param source the source channel
+   * @param target the channel the result is written into
+   * @param width  the image width
+   * @param height the image height
+   */
+  private void convolveFull(byte[] source, byte[] target, int width, int height) {
+    int size = 2 * radius + 1;
+    int interiorStart = Math.min(radius, width);
+    int interiorEnd = Math.max(interiorStart, width - radius);
+    for (int y = 0; y < height; y++) {
+      int firstRow = Math.max(0, radius - y);
+      int lastRow = Math.min(size - 1, height - 1 - y + radius);
+      int rowStart = y * width;
+
+      for (int x = 0; x < interiorStart; x++) {
+        target[rowStart + x] = round(sumClipped(source, width, x, y, firstRow, lastRow));
+      }
+      for (int x = interiorStart; x < interiorEnd; x++) {
+        int sum = 0;
+        for (int ky = firstRow; ky <= lastRow; ky++) {
+          int[] kernelRow = weights[ky];
+          int offset = (y + ky - radius) * width + x - radius;
+          for (int kx = 0; kx < size; kx++) {
+            sum += kernelRow[kx] * (source[offset + kx] & 0xff);
+          }
+        }
+        target[rowStart + x] = round(sum);
+      }
+      for (int x = interiorEnd; x < width; x++) {
+        target[rowStart + x] = round(sumClipped(source, width, x, y, firstRow, lastRow));
+      }
+    }
+  }
+
+  /**
+   * Computes the kernel sum for a pixel near the left or right edge, skipping columns
+   * outside the image.
+   *
+   * @param source   the source channel
+   * @param width    the image width
+   * @param x        the x-coordinate of the pixel
+   * @param y        the y-coordinate of the pixel
+   * @param firstRow the first kernel row inside the image
+   * @param lastRow  the last kernel row inside the image
+   * @return the fixed-point kernel sum
+   */
+  private int sumClipped(byte[] source, int width, int x, int y, int firstRow, int lastRow) {
+    int firstColumn = Math.max(0, radius - x);
+    int lastColumn = Math.min(2 * radius, width - 1 - x + radius);
+    int sum = 0;
+    for (int ky = firstRow; ky <= lastRow; ky++) {
+      int offset = (y + ky - radius) * width + x - radius;
+      for (int kx = firstColumn; kx <= lastColumn; kx++) {
+        sum += weights[ky][kx] * (source[offset + kx] & 0xff);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Convolves one channel as a horizontal pass followed by a vertical pass. The horizontal
+   * sums are exact integers kept in a ring of 2 * radius + 1 rows, so the intermediate
+   * storage grows with the image width only.
+   *
+   * @param source the source channel
+   * @param target the channel the result is written into
+   * @param width  the image width
+   * @param height the image height
+   */
+  private void convolveSeparable(byte[] source, byte[] target, int width, int height) {
+    int size = 2 * radius + 1;
+    int[][] ring = new int[size][width];
+    int[] sums = new int[width];
+    int computedRows = 0;
+    for (int y = 0; y < height; y++) {
+      int firstRow = Math.max(0, y - radius);
+      int lastRow = Math.min(height - 1, y + radius);
+      while (computedRows <= lastRow) {
+        convolveRow(source, ring[computedRows % size], computedRows * width, width);
+        computedRows++;
+      }
+
+      int weight = columnWeights[firstRow - y + radius];
+      int[] values = ring[firstRow % size];
+      for (int x = 0; x < width; x++) {
+        sums[x] = weight * values[x];
+      }
+      for (int row = firstRow + 1; row <= lastRow; row++) {
+        weight = columnWeights[row - y + radius];
+        values = ring[row % size];
+        for (int x = 0; x < width; x++) {
+          sums[x] += weight * values[x];
+        }
+      }
+
+      int rowStart = y * width;
+      for (int x = 0; x < width; x++) {
+        target[rowStart + x] = round(sums[x]);
+      }
+    }
+  }
+
+  /**
+   * Applies the row weights to one image row, skipping columns outside the image.
+   *
+   * @param source   the source channel
+   * @param target   the array the horizontal sums are written into
+   * @param rowStart the index of the first pixel of the row
+   * @param width    the image width
+   */
+  private void convolveRow(byte[] source, int[] target, int rowStart, int width) {
+    int size = 2 * radius + 1;
+    int interiorStart = Math.min(radius, width);
+    int interiorEnd = Math.max(interiorStart, width - radius);
+    for (int x = 0; x < interiorStart; x++) {
+      target[x] = sumRowClipped(source, rowStart, x, width);
+    }
+    for (int x = interiorStart; x < interiorEnd; x++) {
+      int offset = rowStart + x - radius;
+      int sum = 0;
+      for (int kx = 0; kx < size; kx++) {
+        sum += rowWeights[kx] * (source[offset + kx] & 0xff);
+      }
+      target[x] = sum;
+    }
+    for (int x = interiorEnd; x < width; x++) {
+      target[x] = sumRowClipped(source, rowStart, x, width);
+    }
+  }
+
+  /**
+   * Computes the horizontal sum for a pixel near the left or right edge.
+   *
+   * @param source   the source channel
+   * @param rowStart the index of the first pixel of the row
+   * @param x        the x-coordinate of the pixel
+   * @param width    the image width
+   * @return the weighted sum of the pixels of the row inside the kernel
+   */
+  private int sumRowClipped(byte[] source, int rowStart, int x, int width) {
+    int firstColumn = Math.max(0, radius - x);
+    int lastColumn = Math.min(2 * radius, width - 1 - x + radius);
+    int offset = rowStart + x - radius;
+    int sum = 0;
+    for (int kx = firstColumn; kx <= lastColumn; kx++) {
+      sum += rowWeights[kx] * (source[offset + kx] & 0xff);
+    }
+    return sum;
+  }
+
+  /**
+   * Converts a fixed-point sum to a channel value, rounding halves up like Math.round
+   * and clamping to [0, 255].
+   *
+   * @param sum the fixed-point kernel sum
+   * @return the channel value as a byte
+   */
+  private byte round(int sum) {
+    int value = shift == 0 ? sum : (sum + (1 << (shift - 1))) >> shift;
+    return (byte) Math.max(0, Math.min(255, value));
+  }
+}
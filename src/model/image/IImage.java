@@ -10,4 +10,8 @@ public interface IImage {
   int getHeight();
 
   void setPixel(int x, int y, Pixel pixel);
+
+  int getRGB(int x, int y) throws IllegalArgumentException;
+
+  void setRGB(int x, int y, int rgb);
 }
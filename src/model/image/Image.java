@@ -1,9 +1,14 @@
 package model.image;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 
-import controller.HistogramRenderer;
 import model.HaarWaveletTransform;
 import model.strategy.FilterStrategy;
 
@@ -11,26 +16,217 @@ import model.strategy.FilterStrategy;
  * Represents a 2D image composed of pixels.
  * Provides methods to get pixel data, retrieve the width and
  * height of the image, and set pixel values.
+ * The pixel data is stored as three planar channel arrays of unsigned bytes
+ * (one byte per channel per pixel, in row-major order) instead of one object per pixel,
+ * so every operation works directly on primitive arrays.
+ * Channel arrays may be shared between images (for example by channel splits and
+ * combines); a shared channel is copied the first time a pixel of this image is written.
+ * Flips and crops return views: images that refer to the channel arrays of the image they
+ * were taken from, with an offset and a mirroring in each direction, instead of copying
+ * them. Flipping or cropping a view gives another view of the same arrays, so chains of
+ * flips and crops take constant time. A view reads single pixels through its mapping and
+ * copies its pixels into arrays of its own only when its channel arrays are needed (by a
+ * filter, a save or a write), at most once.
  */
 public class Image implements IImage {
-  private Pixel[][] pixels;
+  private static final int RED_SHARED = 1;
+  private static final int GREEN_SHARED = 2;
+  private static final int BLUE_SHARED = 4;
+  private static final int ALL_SHARED = RED_SHARED | GREEN_SHARED | BLUE_SHARED;
+  private static final int HISTOGRAM_BAND_PIXELS = 1 << 16;
+  private static final Map<Integer, WeakReference<byte[]>> ZERO_PLANES =
+          new ConcurrentHashMap<>();
+  private static final ConvolutionKernel BLUR_KERNEL = new ConvolutionKernel(new double[][]{
+      {1.0 / 16, 1.0 / 8, 1.0 / 16},
+      {1.0 / 8, 1.0 / 4, 1.0 / 8},
+      {1.0 / 16, 1.0 / 8, 1.0 / 16}
+  });
+  private static final ConvolutionKernel SHARPEN_KERNEL = new ConvolutionKernel(new double[][]{
+      {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
+      {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+      {-1.0 / 8, 1.0 / 4, 1, 1.0 / 4, -1.0 / 8},
+      {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
+      {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}
+  });
+
+  private final int width;
+  private final int height;
+  private byte[] red;
+  private byte[] green;
+  private byte[] blue;
+  private int sharedChannels;
+  private volatile byte[][] source;
+  private volatile int[][] histograms;
+  private volatile Mask mask;
+  private final int sourceWidth;
+  private final int offsetX;
+  private final int offsetY;
+  private final boolean mirrored;
+  private final boolean flipped;
 
   /**
    * Constructs a new Image with the specified 2D array of pixels.
+   * The pixel values are copied into the image's channel arrays; a null
+   * entry is stored as a black pixel.
    *
    * @param pixels a 2D array of Pixel objects representing the image data
    */
   public Image(Pixel[][] pixels) {
-    this.pixels = pixels;
+    this(pixels.length == 0 ? 0 : pixels[0].length, pixels.length);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        Pixel pixel = pixels[y][x];
+        if (pixel != null) {
+          int index = y * width + x;
+          red[index] = (byte) pixel.getRed();
+          green[index] = (byte) pixel.getGreen();
+          blue[index] = (byte) pixel.getBlue();
+        }
+      }
+    }
+  }
+
+  /**
+   * Constructs a new black Image of the given dimensions.
+   *
+   * @param width  the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @throws IllegalArgumentException if either dimension is negative
+   */
+  public Image(int width, int height) {
+    this(width, height, new byte[checkedArea(width, height)],
+            new byte[width * height], new byte[width * height]);
   }
 
   /**
-   * Returns the 2D array of pixels that make up this image.
+   * Constructs a new Image backed by the given channel arrays. Each array holds
+   * one unsigned byte per pixel in row-major order. The arrays are used directly,
+   * not copied, so the caller must not modify them afterwards. The same array may be
+   * passed for several channels (for example for a grayscale image); such channels are
+   * treated as shared and copied on the first write.
+   *
+   * @param width  the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @param red    the red channel values
+   * @param green  the green channel values
+   * @param blue   the blue channel values
+   * @throws IllegalArgumentException if a channel array does not hold width * height values
+   */
+  public Image(int width, int height, byte[] red, byte[] green, byte[] blue) {
+    this(width, height, red, green, blue, aliasedChannels(red, green, blue));
+  }
+
+  /**
+   * Constructs a new Image backed by the given channel arrays, marking the channels
+   * in the given mask as shared with other images.
+   *
+   * @param width          the width of the image in pixels
+   * @param height         the height of the image in pixels
+   * @param red            the red channel values
+   * @param green          the green channel values
+   * @param blue           the blue channel values
+   * @param sharedChannels the mask of channels whose arrays are shared
+   * @throws IllegalArgumentException if a channel array does not hold width * height values
+   */
+  private Image(int width, int height, byte[] red, byte[] green, byte[] blue,
+                int sharedChannels) {
+    int area = checkedArea(width, height);
+    if (red.length != area || green.length != area || blue.length != area) {
+      throw new IllegalArgumentException("Channel data does not match the image dimensions.");
+    }
+    this.width = width;
+    this.height = height;
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+    this.sharedChannels = sharedChannels;
+    this.sourceWidth = width;
+    this.offsetX = 0;
+    this.offsetY = 0;
+    this.mirrored = false;
+    this.flipped = false;
+  }
+
+  /**
+   * Constructs a view of a region of the given channel arrays. Pixel (x, y) of the view is
+   * pixel (offsetX + x, offsetY + y) of the arrays, with x counted from the right of the
+   * region if it is mirrored and y counted from the bottom if it is flipped.
+   *
+   * @param width       the width of the view in pixels
+   * @param height      the height of the view in pixels
+   * @param source      the red, green and blue arrays the view refers to
+   * @param sourceWidth the width of the image the arrays belong to
+   * @param offsetX     the x-coordinate of the region in the arrays
+   * @param offsetY     the y-coordinate of the region in the arrays
+   * @param mirrored    whether the region is mirrored horizontally
+   * @param flipped     whether the region is flipped vertically
+   */
+  private Image(int width, int height, byte[][] source, int sourceWidth, int offsetX,
+                int offsetY, boolean mirrored, boolean flipped) {
+    this.width = width;
+    this.height = height;
+    this.source = source;
+    this.sourceWidth = sourceWidth;
+    this.offsetX = offsetX;
+    this.offsetY = offsetY;
+    this.mirrored = mirrored;
+    this.flipped = flipped;
+  }
+
+  /**
+   * Returns the mask of channels whose arrays are passed for more than one channel.
+   *
+   * @param red   the red channel values
+   * @param green the green channel values
+   * @param blue  the blue channel values
+   * @return the mask of aliased channels
+   */
+  private static int aliasedChannels(byte[] red, byte[] green, byte[] blue) {
+    int aliased = 0;
+    if (red == green) {
+      aliased |= RED_SHARED | GREEN_SHARED;
+    }
+    if (red == blue) {
+      aliased |= RED_SHARED | BLUE_SHARED;
+    }
+    if (green == blue) {
+      aliased |= GREEN_SHARED | BLUE_SHARED;
+    }
+    return aliased;
+  }
+
+  /**
+   * Validates the given dimensions and returns the number of pixels they span.
+   *
+   * @param width  the width of the image in pixels
+   * @param height the height of the image in pixels
+   * @return the pixel count of the image
+   * @throws IllegalArgumentException if either dimension is negative
+   */
+  private static int checkedArea(int width, int height) {
+    if (width < 0 || height < 0) {
+      throw new IllegalArgumentException("Image dimensions cannot be negative.");
+    }
+    return width * height;
+  }
+
+  /**
+   * Returns the pixels that make up this image as a 2D array.
+   * The array is built from the channel data on every call, so changes
+   * made to it are not reflected in this image.
    *
    * @return the 2D array of Pixel objects
    */
   @Override
   public Pixel[][] getPixels() {
+    materialize();
+    Pixel[][] pixels = new Pixel[height][width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int index = y * width + x;
+        pixels[y][x] = new Pixel(red[index] & 0xff, green[index] & 0xff, blue[index] & 0xff);
+      }
+    }
     return pixels;
   }
 
@@ -46,10 +242,28 @@ public class Image implements IImage {
    */
   @Override
   public Pixel getPixel(int x, int y) throws IllegalArgumentException {
-    if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) {
-      throw new IllegalArgumentException("Coordinates out of bounds!");
+    int rgb = getRGB(x, y);
+    return new Pixel(rgb >> 16 & 0xff, rgb >> 8 & 0xff, rgb & 0xff);
+  }
+
+  /**
+   * Retrieves the pixel at the specified (x, y) position packed as 0xRRGGBB.
+   *
+   * @param x the x-coordinate of the desired pixel
+   * @param y the y-coordinate of the desired pixel
+   * @return the packed RGB value of the pixel
+   * @throws IllegalArgumentException if x or y coordinates are out of bounds
+   */
+  @Override
+  public int getRGB(int x, int y) throws IllegalArgumentException {
+    int index = indexOf(x, y);
+    byte[][] view = source;
+    if (view != null) {
+      int sourceIndex = sourceIndexOf(x, y);
+      return (view[0][sourceIndex] & 0xff) << 16 | (view[1][sourceIndex] & 0xff) << 8
+              | (view[2][sourceIndex] & 0xff);
     }
-    return pixels[y][x];
+    return (red[index] & 0xff) << 16 | (green[index] & 0xff) << 8 | (blue[index] & 0xff);
   }
 
   /**
@@ -59,7 +273,7 @@ public class Image implements IImage {
    */
   @Override
   public int getWidth() {
-    return pixels[0].length;
+    return width;
   }
 
   /**
@@ -69,7 +283,7 @@ public class Image implements IImage {
    */
   @Override
   public int getHeight() {
-    return pixels.length;
+    return height;
   }
 
   /**
@@ -84,110 +298,384 @@ public class Image implements IImage {
    */
   @Override
   public void setPixel(int x, int y, Pixel pixel) {
-    if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) {
-      throw new IllegalArgumentException("Coordinates out of bounds!");
+    int index = indexOf(x, y);
+    ensureWritable();
+    red[index] = (byte) pixel.getRed();
+    green[index] = (byte) pixel.getGreen();
+    blue[index] = (byte) pixel.getBlue();
+  }
+
+  /**
+   * Sets the pixel at the specified (x, y) position from a value packed as 0xRRGGBB.
+   *
+   * @param x   the x-coordinate of the pixel to be set
+   * @param y   the y-coordinate of the pixel to be set
+   * @param rgb the packed RGB value of the pixel
+   * @throws IllegalArgumentException if x or y coordinates are out of bounds
+   */
+  @Override
+  public void setRGB(int x, int y, int rgb) {
+    int index = indexOf(x, y);
+    ensureWritable();
+    red[index] = (byte) (rgb >> 16);
+    green[index] = (byte) (rgb >> 8);
+    blue[index] = (byte) rgb;
+  }
+
+  /**
+   * Returns the red channel of this image, one unsigned byte per pixel in row-major order.
+   * The returned array is the image's own storage and must not be modified.
+   *
+   * @return the red channel values
+   */
+  public byte[] getRedChannel() {
+    materialize();
+    return red;
+  }
+
+  /**
+   * Returns the green channel of this image, one unsigned byte per pixel in row-major order.
+   * The returned array is the image's own storage and must not be modified.
+   *
+   * @return the green channel values
+   */
+  public byte[] getGreenChannel() {
+    materialize();
+    return green;
+  }
+
+  /**
+   * Returns the blue channel of this image, one unsigned byte per pixel in row-major order.
+   * The returned array is the image's own storage and must not be modified.
+   *
+   * @return the blue channel values
+   */
+  public byte[] getBlueChannel() {
+    materialize();
+    return blue;
+  }
+
+  /**
+   * Copies every channel array that is shared with another image, so that
+   * this image can be written without affecting the others.
+   */
+  private void ensureWritable() {
+    materialize();
+    histograms = null;
+    mask = null;
+    if (sharedChannels != 0) {
+      if ((sharedChannels & RED_SHARED) != 0) {
+        red = red.clone();
+      }
+      if ((sharedChannels & GREEN_SHARED) != 0) {
+        green = green.clone();
+      }
+      if ((sharedChannels & BLUE_SHARED) != 0) {
+        blue = blue.clone();
+      }
+      sharedChannels = 0;
     }
-    pixels[y][x] = pixel;
   }
 
   /**
-   * Applies a specific processing command to the image, such as extracting
-   * a color component or converting the image to sepia tone.
+   * Marks the given channel of this image as shared and returns its array,
+   * so that it can back a channel of another image. Images that only read their pixels
+   * may be shared from several threads at once, so the mask is updated under the lock
+   * of the image, as views are made.
    *
-   * @param command the processing command to apply
-   * @return a new Image object with the specified processing applied
+   * @param channel the channel mask (one of the *_SHARED constants)
+   * @return the array of the requested channel
    */
-  private Image processImage(String command) {
-    int height = this.getHeight();
-    int width = this.getWidth();
-    Pixel[][] processedPixels = new Pixel[height][width];
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel originalPixel = this.getPixel(x, y);
-        switch (command) {
-          case "red":
-            processedPixels[y][x] = new Pixel(originalPixel.getRed(), 0, 0);
-            break;
-          case "green":
-            processedPixels[y][x] = new Pixel(0, originalPixel.getGreen(), 0);
-            break;
-          case "blue":
-            processedPixels[y][x] = new Pixel(0, 0, originalPixel.getBlue());
-            break;
-          case "value":
-            int maxPixelVal = Math.max(originalPixel.getRed(),
-                    Math.max(originalPixel.getGreen(), originalPixel.getBlue()));
-            processedPixels[y][x] = new Pixel(maxPixelVal, maxPixelVal, maxPixelVal);
-            break;
-          case "luma":
-            double lumaPixelVal = (0.2126 * originalPixel.getRed()
-                    + 0.7152 * originalPixel.getGreen() + 0.0722 * originalPixel.getBlue());
-            int roundedLumaValue = (int) Math.round(lumaPixelVal);
-            processedPixels[y][x] = new Pixel(roundedLumaValue, roundedLumaValue,
-                    roundedLumaValue);
-            break;
-          case "intensity":
-            int intensityPixelVal = ((originalPixel.getRed() + originalPixel.getGreen()
-                    + originalPixel.getBlue()) / 3);
-            processedPixels[y][x] = new Pixel(intensityPixelVal,
-                    intensityPixelVal, intensityPixelVal);
-            break;
-          case "sepia":
-            int originalRed = originalPixel.getRed();
-            int originalGreen = originalPixel.getGreen();
-            int originalBlue = originalPixel.getBlue();
-
-            int newRed = Math.min(255, (int) (0.393 * originalRed
-                    + 0.769 * originalGreen + 0.189 * originalBlue));
-            int newGreen = Math.min(255, (int) (0.349 * originalRed
-                    + 0.686 * originalGreen + 0.168 * originalBlue));
-            int newBlue = Math.min(255, (int) (0.272 * originalRed
-                    + 0.534 * originalGreen + 0.131 * originalBlue));
-
-            processedPixels[y][x] = new Pixel(newRed, newGreen, newBlue);
-            break;
-          default:
-            // No action, incorrect command.
-        }
+  private byte[] shareChannel(int channel) {
+    materialize();
+    synchronized (this) {
+      sharedChannels |= channel;
+      switch (channel) {
+        case RED_SHARED:
+          return red;
+        case GREEN_SHARED:
+          return green;
+        default:
+          return blue;
       }
     }
-    return new Image(processedPixels);
   }
 
   /**
-   * Creates a horizontally flipped copy of this image.
+   * Returns whether this image is a view that has not copied its pixels yet.
    *
-   * @return a new Image object that is a horizontally flipped version of this image
+   * @return true if the pixels are still read from the arrays of another image
    */
-  public Image horizontalFlip() {
-    int height = this.getHeight();
-    int width = this.getWidth();
-    Pixel[][] hFlipPixels = new Pixel[height][width];
+  public boolean isView() {
+    return source != null;
+  }
+
+  /**
+   * Returns the number of bytes of channel data this image refers to, counting arrays that
+   * back several of its channels once. For a view, this is the data of the image it was
+   * taken from, which the view keeps from being released.
+   *
+   * @return the size of the channel arrays in bytes
+   */
+  public long getStorageBytes() {
+    byte[][] channels = getStorage();
+    long size = channels[0].length;
+    if (channels[1] != channels[0]) {
+      size += channels[1].length;
+    }
+    if (channels[2] != channels[0] && channels[2] != channels[1]) {
+      size += channels[2].length;
+    }
+    return size;
+  }
+
+  /**
+   * Returns the arrays this image reads its red, green and blue channels from, without
+   * copying the pixels of a view. For a view, these are the arrays of the image it was
+   * taken from, laid out as that image; {@link #copyRow} reads the rows of this image out
+   * of them. Channels that share storage are backed by the same array. The arrays must not
+   * be modified.
+   *
+   * @return the red, green and blue storage arrays
+   */
+  public byte[][] getStorage() {
+    byte[][] view = source;
+    return view != null ? view.clone() : new byte[][]{red, green, blue};
+  }
+
+  /**
+   * Copies one row of a channel of this image out of one of the arrays returned by
+   * {@link #getStorage()}, applying the region and mirroring of a view, so that the pixels
+   * of a view can be read row by row without copying them all into arrays of its own.
+   *
+   * @param storage a storage array of this image
+   * @param y       the row to copy
+   * @param row     the array to copy the row into
+   * @param offset  the index in the array of the first pixel of the row
+   * @throws IllegalArgumentException if the row is outside the image
+   */
+  public void copyRow(byte[] storage, int y, byte[] row, int offset) {
+    if (y < 0 || y >= height) {
+      throw new IllegalArgumentException("Row out of bounds!");
+    }
+    if (source == null && (storage == red || storage == green || storage == blue)) {
+      System.arraycopy(storage, y * width, row, offset, width);
+    } else {
+      copySourceRow(storage, y, row, offset);
+    }
+  }
 
+  /**
+   * Copies the pixels of a view into channel arrays of its own, so that it no longer
+   * refers to the arrays of another image. Channels that share one array in the source
+   * share one array in the copy. Images that are not views are left unchanged.
+   */
+  private void materialize() {
+    if (source == null) {
+      return;
+    }
+    synchronized (this) {
+      byte[][] view = source;
+      if (view == null) {
+        return;
+      }
+      byte[] newRed = copyRegion(view[0]);
+      byte[] newGreen = view[1] == view[0] ? newRed : copyRegion(view[1]);
+      byte[] newBlue;
+      if (view[2] == view[0]) {
+        newBlue = newRed;
+      } else if (view[2] == view[1]) {
+        newBlue = newGreen;
+      } else {
+        newBlue = copyRegion(view[2]);
+      }
+      red = newRed;
+      green = newGreen;
+      blue = newBlue;
+      sharedChannels = aliasedChannels(newRed, newGreen, newBlue);
+      source = null;
+    }
+  }
+
+  /**
+   * Copies the region of this view out of one source channel, applying its mirroring.
+   *
+   * @param channel the source channel array
+   * @return the channel values of this view
+   */
+  private byte[] copyRegion(byte[] channel) {
+    byte[] copy = new byte[width * height];
     for (int y = 0; y < height; y++) {
+      copySourceRow(channel, y, copy, y * width);
+    }
+    return copy;
+  }
+
+  /**
+   * Copies one row of this view out of one source channel, applying its mirroring.
+   *
+   * @param channel the source channel array
+   * @param y       the row of this view
+   * @param row     the array to copy the row into
+   * @param offset  the index in the array of the first pixel of the row
+   */
+  private void copySourceRow(byte[] channel, int y, byte[] row, int offset) {
+    int from = (offsetY + (flipped ? height - 1 - y : y)) * sourceWidth + offsetX;
+    if (mirrored) {
       for (int x = 0; x < width; x++) {
-        hFlipPixels[y][x] = this.getPixel(width - 1 - x, y);
+        row[offset + x] = channel[from + width - 1 - x];
       }
+    } else {
+      System.arraycopy(channel, from, row, offset, width);
     }
-    return new Image(hFlipPixels);
   }
 
   /**
-   * Creates a vertically flipped copy of this image.
+   * Converts the coordinates of a pixel of this view into an index of its source arrays.
    *
-   * @return a new Image object that is a vertically flipped version of this image
+   * @param x the x-coordinate of the pixel, within bounds
+   * @param y the y-coordinate of the pixel, within bounds
+   * @return the index of the pixel in the source arrays
    */
-  public Image verticalFlip() {
-    int height = this.getHeight();
-    int width = this.getWidth();
-    Pixel[][] vFlipPixels = new Pixel[height][width];
+  private int sourceIndexOf(int x, int y) {
+    return (offsetY + (flipped ? height - 1 - y : y)) * sourceWidth
+            + offsetX + (mirrored ? width - 1 - x : x);
+  }
 
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        vFlipPixels[y][x] = this.getPixel(x, height - 1 - y);
+  /**
+   * Creates a view of a region of this image, mirrored or flipped relative to this image.
+   * A view of a view refers directly to the arrays of the original image. A view that
+   * covers the whole original image unmirrored shares its arrays as an ordinary image.
+   *
+   * @param x        the x-coordinate of the region in this image
+   * @param y        the y-coordinate of the region in this image
+   * @param width    the width of the region
+   * @param height   the height of the region
+   * @param mirror   whether to mirror the region horizontally
+   * @param flip     whether to flip the region vertically
+   * @return the view
+   */
+  private Image view(int x, int y, int width, int height, boolean mirror, boolean flip) {
+    byte[][] view;
+    int baseX = x;
+    int baseY = y;
+    int baseWidth = this.width;
+    boolean newMirrored = mirror;
+    boolean newFlipped = flip;
+    synchronized (this) {
+      view = source;
+      if (view == null) {
+        view = new byte[][]{shareChannel(RED_SHARED), shareChannel(GREEN_SHARED),
+            shareChannel(BLUE_SHARED)};
+      } else {
+        baseX = offsetX + (mirrored ? this.width - x - width : x);
+        baseY = offsetY + (flipped ? this.height - y - height : y);
+        baseWidth = sourceWidth;
+        newMirrored = mirrored != mirror;
+        newFlipped = flipped != flip;
       }
     }
-    return new Image(vFlipPixels);
+    Image result;
+    if (!newMirrored && !newFlipped && baseX == 0 && baseY == 0 && width == baseWidth
+            && width * height == view[0].length) {
+      result = new Image(width, height, view[0], view[1], view[2], ALL_SHARED);
+    } else {
+      result = new Image(width, height, view, baseWidth, baseX, baseY, newMirrored,
+              newFlipped);
+    }
+    if (width == this.width && height == this.height) {
+      result.histograms = histograms;
+    }
+    return result;
+  }
+
+  /**
+   * Converts (x, y) coordinates into an index of the channel arrays.
+   *
+   * @param x the x-coordinate of the pixel
+   * @param y the y-coordinate of the pixel
+   * @return the index of the pixel in the channel arrays
+   * @throws IllegalArgumentException if x or y coordinates are out of bounds
+   */
+  private int indexOf(int x, int y) {
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      throw new IllegalArgumentException("Coordinates out of bounds!");
+    }
+    return y * width + x;
+  }
+
+  /**
+   * Returns an all-zero array of the given size, shared by every image that needs one of
+   * that size. The array is only ever used as a shared channel, which images copy before
+   * writing to it, so it stays zero. It is held weakly, and is allocated again once no
+   * image refers to it any more.
+   *
+   * @param size the number of values
+   * @return an all-zero array of that size
+   */
+  private static byte[] zeroPlane(int size) {
+    WeakReference<byte[]> cached = ZERO_PLANES.get(size);
+    byte[] zeros = cached == null ? null : cached.get();
+    if (zeros == null) {
+      zeros = new byte[size];
+      ZERO_PLANES.values().removeIf(reference -> reference.get() == null);
+      ZERO_PLANES.put(size, new WeakReference<>(zeros));
+    }
+    return zeros;
+  }
+
+  /**
+   * Creates an image that keeps a single channel of this image and sets the other two
+   * channels to zero. The kept channel shares this image's array, and the two zero
+   * channels share the all-zero array of this size, so no pixel data is copied or
+   * allocated.
+   *
+   * @param channel the channel to keep (one of the *_SHARED constants)
+   * @return a new Image object with only the requested color component
+   */
+  private Image keepChannel(int channel) {
+    byte[] kept = shareChannel(channel);
+    byte[] zeros = zeroPlane(width * height);
+    return new Image(width, height,
+            channel == RED_SHARED ? kept : zeros,
+            channel == GREEN_SHARED ? kept : zeros,
+            channel == BLUE_SHARED ? kept : zeros, ALL_SHARED);
+  }
+
+  /**
+   * Creates a view of a rectangular region of this image.
+   *
+   * @param x      the x-coordinate of the top-left corner of the region
+   * @param y      the y-coordinate of the top-left corner of the region
+   * @param width  the width of the region in pixels
+   * @param height the height of the region in pixels
+   * @return a new Image object holding the pixels of the region
+   * @throws IllegalArgumentException if the region does not lie within this image
+   */
+  public Image crop(int x, int y, int width, int height) {
+    if (x < 0 || y < 0 || width < 0 || height < 0
+            || x + width > this.width || y + height > this.height) {
+      throw new IllegalArgumentException("Region out of bounds!");
+    }
+    return view(x, y, width, height, false, false);
+  }
+
+  /**
+   * Creates a horizontally flipped view of this image.
+   *
+   * @return a new Image object that is a horizontally flipped version of this image
+   */
+  public Image horizontalFlip() {
+    return view(0, 0, width, height, true, false);
+  }
+
+  /**
+   * Creates a vertically flipped view of this image.
+   *
+   * @return a new Image object that is a vertically flipped version of this image
+   */
+  public Image verticalFlip() {
+    return view(0, 0, width, height, false, true);
   }
 
   /**
@@ -197,60 +685,21 @@ public class Image implements IImage {
    * @return a new Image object with the brightness adjusted
    */
   public Image brighten(int increment) {
-    int height = this.getHeight();
-    int width = this.getWidth();
-    Pixel[][] brightenPixels = new Pixel[height][width];
-
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel originalPixel = this.getPixel(x, y);
-        int red = Math.min(Math.max(originalPixel.getRed() + increment, 0), 255);
-        int green = Math.min(Math.max(originalPixel.getGreen() + increment, 0), 255);
-        int blue = Math.min(Math.max(originalPixel.getBlue() + increment, 0), 255);
-        brightenPixels[y][x] = new Pixel(red, green, blue);
-      }
-    }
-    return new Image(brightenPixels);
+    return ChannelLookupTable.brighten(increment).apply(this);
   }
 
+
   /**
    * Applies a kernel to the image for operations like blurring or sharpening.
+   * The kernel is indexed as kernel[dy][dx] and must be square with an odd size;
+   * pixels outside the image contribute zero.
    *
    * @param kernel the matrix representing the kernel
    * @return a new Image object with the kernel applied
+   * @throws IllegalArgumentException if the kernel is not square with an odd size
    */
-  private Image applyKernel(double[][] kernel) {
-    int height = this.getHeight();
-    int width = this.getWidth();
-    Pixel[][] newPixels = new Pixel[height][width];
-
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        double redSum = 0, greenSum = 0, blueSum = 0;
-        int kernelRadius = kernel.length / 2;
-
-        for (int i = -kernelRadius; i <= kernelRadius; i++) {
-          for (int j = -kernelRadius; j <= kernelRadius; j++) {
-            int kernelX = i + kernelRadius;
-            int kernelY = j + kernelRadius;
-
-            if (x + i >= 0 && x + i < width && y + j >= 0 && y + j < height) {
-              Pixel neighboringPixel = this.getPixel(x + i, y + j);
-              redSum += neighboringPixel.getRed() * kernel[kernelY][kernelX];
-              greenSum += neighboringPixel.getGreen() * kernel[kernelY][kernelX];
-              blueSum += neighboringPixel.getBlue() * kernel[kernelY][kernelX];
-            }
-          }
-        }
-
-        int newRed = Math.min(255, Math.max(0, (int) Math.round(redSum)));
-        int newGreen = Math.min(255, Math.max(0, (int) Math.round(greenSum)));
-        int newBlue = Math.min(255, Math.max(0, (int) Math.round(blueSum)));
-
-        newPixels[y][x] = new Pixel(newRed, newGreen, newBlue);
-      }
-    }
-    return new Image(newPixels);
+  public Image applyKernel(double[][] kernel) {
+    return new ConvolutionKernel(kernel).convolve(this);
   }
 
   /**
@@ -259,12 +708,7 @@ public class Image implements IImage {
    * @return a new Image object that is a blurred version of this image
    */
   public Image blur() {
-    double[][] blurKernel = {
-            {1.0 / 16, 1.0 / 8, 1.0 / 16},
-            {1.0 / 8, 1.0 / 4, 1.0 / 8},
-            {1.0 / 16, 1.0 / 8, 1.0 / 16}
-    };
-    return applyKernel(blurKernel);
+    return BLUR_KERNEL.convolve(this);
   }
 
   /**
@@ -273,14 +717,7 @@ public class Image implements IImage {
    * @return a new Image object that is a sharpened version of this image
    */
   public Image sharpen() {
-    double[][] sharpenKernel = {
-            {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8},
-            {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
-            {-1.0 / 8, 1.0 / 4, 1, 1.0 / 4, -1.0 / 8},
-            {-1.0 / 8, 1.0 / 4, 1.0 / 4, 1.0 / 4, -1.0 / 8},
-            {-1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8, -1.0 / 8}
-    };
-    return applyKernel(sharpenKernel);
+    return SHARPEN_KERNEL.convolve(this);
   }
 
   /**
@@ -290,7 +727,7 @@ public class Image implements IImage {
    * @return a new Image object with only the red color component
    */
   public Image extractRedComponent() {
-    return processImage("red");
+    return keepChannel(RED_SHARED);
   }
 
   /**
@@ -300,7 +737,7 @@ public class Image implements IImage {
    * @return a new Image object with only the green color component
    */
   public Image extractGreenComponent() {
-    return processImage("green");
+    return keepChannel(GREEN_SHARED);
   }
 
   /**
@@ -310,7 +747,20 @@ public class Image implements IImage {
    * @return a new Image object with only the blue color component
    */
   public Image extractBlueComponent() {
-    return processImage("blue");
+    return keepChannel(BLUE_SHARED);
+  }
+
+  /**
+   * Splits this image into its red, green and blue components, equivalent to calling
+   * {@link #extractRedComponent()}, {@link #extractGreenComponent()} and
+   * {@link #extractBlueComponent()}. The three results share this image's channel
+   * arrays and a single all-zero array, so the split does not copy or allocate pixel data.
+   *
+   * @return an array holding the red, green and blue component images, in that order
+   */
+  public Image[] splitColorChannels() {
+    return new Image[]{keepChannel(RED_SHARED), keepChannel(GREEN_SHARED),
+        keepChannel(BLUE_SHARED)};
   }
 
   /**
@@ -320,7 +770,13 @@ public class Image implements IImage {
    * @return a new Image object converted to grayscale using the value component
    */
   public Image toValueComponent() {
-    return processImage("value");
+    materialize();
+    int size = width * height;
+    byte[] value = new byte[size];
+    for (int i = 0; i < size; i++) {
+      value[i] = (byte) Math.max(red[i] & 0xff, Math.max(green[i] & 0xff, blue[i] & 0xff));
+    }
+    return new Image(width, height, value, value, value);
   }
 
   /**
@@ -330,7 +786,7 @@ public class Image implements IImage {
    * @return a new Image object converted to grayscale using the luma component
    */
   public Image toLumaComponent() {
-    return processImage("luma");
+    return ColorMatrix.LUMA.apply(this);
   }
 
   /**
@@ -340,7 +796,7 @@ public class Image implements IImage {
    * @return a new Image object converted to grayscale using the intensity component
    */
   public Image toIntensityComponent() {
-    return processImage("intensity");
+    return ColorMatrix.INTENSITY.apply(this);
   }
 
   /**
@@ -349,11 +805,12 @@ public class Image implements IImage {
    * @return a new Image object with a sepia tone applied
    */
   public Image toSepia() {
-    return processImage("sepia");
+    return ColorMatrix.SEPIA.apply(this);
   }
 
   /**
    * Combines the color channels from three separate images to create a new image.
+   * The new image shares the channel arrays of the source images instead of copying them.
    *
    * @param redImage   the image providing the red color channel
    * @param greenImage the image providing the green color channel
@@ -370,18 +827,26 @@ public class Image implements IImage {
       throw new IllegalArgumentException("All images must have the same dimensions.");
     }
 
-    Pixel[][] combinedPixels = new Pixel[height][width];
-
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        int red = redImage.getPixel(x, y).getRed();
-        int green = greenImage.getPixel(x, y).getGreen();
-        int blue = blueImage.getPixel(x, y).getBlue();
+    return new Image(width, height, redImage.shareChannel(RED_SHARED),
+            greenImage.shareChannel(GREEN_SHARED), blueImage.shareChannel(BLUE_SHARED),
+            ALL_SHARED);
+  }
 
-        combinedPixels[y][x] = new Pixel(red, green, blue);
-      }
+  /**
+   * Returns the mask of the light pixels of this image, for use as a selection. The mask is
+   * kept with the image until a pixel of it is written, so an image used as the mask of many
+   * operations is only scanned once.
+   *
+   * @return the mask selecting the pixels whose brightest channel is at least 128
+   */
+  public Mask toMask() {
+    Mask cached = mask;
+    if (cached == null) {
+      materialize();
+      cached = Mask.of(width, height, red, green, blue);
+      mask = cached;
     }
-    return new Image(combinedPixels);
+    return cached;
   }
 
   /**
@@ -390,89 +855,121 @@ public class Image implements IImage {
    * @return a 2D array containing three histograms (one for each color channel).
    */
   public int[][] calculateHistograms() {
-    int[] redHistogram = new int[256];
-    int[] greenHistogram = new int[256];
-    int[] blueHistogram = new int[256];
-
-    for (int y = 0; y < getHeight(); y++) {
-      for (int x = 0; x < getWidth(); x++) {
-        Pixel pixel = getPixel(x, y);
-        redHistogram[pixel.getRed()]++;
-        greenHistogram[pixel.getGreen()]++;
-        blueHistogram[pixel.getBlue()]++;
-      }
-    }
-    return new int[][]{redHistogram, greenHistogram, blueHistogram};
+    return calculateHistograms(null);
   }
 
   /**
-   * Performs color correction on this image based on the peak values of the color histograms.
-   * It adjusts each color channel to have the same peak value, normalizing the color balance.
+   * Calculates histograms for each color channel (red, green, and blue) of this image in one
+   * pass over its channel arrays. With a pool, bands of rows are counted in parallel into
+   * bins of their own, which are added up at the end. The histograms are kept with the image
+   * until a pixel of it is written, so calculating them again, or for a flip of the image,
+   * costs only a copy. A view is counted from the arrays it refers to, without copying its
+   * pixels.
    *
-   * @return a new image with color correction applied
+   * @param pool the pool on which bands of rows are counted in parallel, or null to count
+   *             them on the calling thread
+   * @return a 2D array containing three histograms (one for each color channel), which the
+   *         caller may modify
    */
-  public Image colorCorrect() {
-
-    int[][] histograms = this.calculateHistograms();
-
-    int[] redHistogram = histograms[0];
-    int[] greenHistogram = histograms[1];
-    int[] blueHistogram = histograms[2];
-
-    int redPeak = findMeaningfulPeak(redHistogram);
-    int greenPeak = findMeaningfulPeak(greenHistogram);
-    int bluePeak = findMeaningfulPeak(blueHistogram);
-    double averagePeak = (redPeak + greenPeak + bluePeak) / 3;
-
-    return applyColorCorrection(redPeak, greenPeak, bluePeak, averagePeak);
+  public int[][] calculateHistograms(ForkJoinPool pool) {
+    int[][] cached = histograms;
+    if (cached == null) {
+      cached = countHistograms(pool);
+      histograms = cached;
+    }
+    return new int[][]{cached[0].clone(), cached[1].clone(), cached[2].clone()};
   }
 
   /**
-   * Finds the most meaningful peak in a histogram, ignoring the edges.
-   * This is used to determine a significant peak in color intensity.
+   * Counts the values of each channel, once per distinct channel array.
    *
-   * @param histogram the histogram to analyze
-   * @return the value of the most significant peak intensity
+   * @param pool the pool on which bands of rows are counted, or null
+   * @return the red, green and blue histograms
    */
-  private int findMeaningfulPeak(int[] histogram) {
-    int peak = 0;
-    int peakValue = 0;
-    for (int i = 10; i < 245; i++) {
-      if (histogram[i] > peak) {
-        peak = histogram[i];
-        peakValue = i;
+  private int[][] countHistograms(ForkJoinPool pool) {
+    byte[][] view = source;
+    byte[][] channels;
+    int stride;
+    int startX;
+    int startY;
+    if (view != null) {
+      channels = view;
+      stride = sourceWidth;
+      startX = offsetX;
+      startY = offsetY;
+    } else {
+      channels = new byte[][]{red, green, blue};
+      stride = width;
+      startX = 0;
+      startY = 0;
+    }
+    boolean countGreen = channels[1] != channels[0];
+    boolean countBlue = channels[2] != channels[0] && channels[2] != channels[1];
+
+    int bands = pool == null || (long) width * height < HISTOGRAM_BAND_PIXELS
+            ? 1 : Math.min(height, pool.getParallelism());
+    int[][][] bins = new int[bands][3][256];
+    forEachBlock(bands, pool, band -> {
+      int[] redBins = bins[band][0];
+      int[] greenBins = bins[band][1];
+      int[] blueBins = bins[band][2];
+      int endRow = (int) ((long) height * (band + 1) / bands);
+      for (int row = (int) ((long) height * band / bands); row < endRow; row++) {
+        int start = (startY + row) * stride + startX;
+        int end = start + width;
+        for (int i = start; i < end; i++) {
+          redBins[channels[0][i] & 0xff]++;
+        }
+        if (countGreen) {
+          for (int i = start; i < end; i++) {
+            greenBins[channels[1][i] & 0xff]++;
+          }
+        }
+        if (countBlue) {
+          for (int i = start; i < end; i++) {
+            blueBins[channels[2][i] & 0xff]++;
+          }
+        }
       }
+    });
+
+    int[][] total = bins[0];
+    for (int band = 1; band < bands; band++) {
+      for (int channel = 0; channel < 3; channel++) {
+        for (int value = 0; value < 256; value++) {
+          total[channel][value] += bins[band][channel][value];
+        }
+      }
+    }
+    if (!countGreen) {
+      total[1] = total[0].clone();
+    }
+    if (!countBlue) {
+      total[2] = (channels[2] == channels[0] ? total[0] : total[1]).clone();
     }
-    return peakValue;
+    return total;
   }
 
   /**
-   * Applies color correction to the image based on the provided peak values
-   * for each color channel.
+   * Performs color correction on this image based on the peak values of the color histograms.
+   * It adjusts each color channel to have the same peak value, normalizing the color balance.
    *
-   * @param redPeak     the peak value of the red channel histogram
-   * @param greenPeak   the peak value of the green channel histogram
-   * @param bluePeak    the peak value of the blue channel histogram
-   * @param averagePeak the average of the peak values from all three histograms
-   * @return a new image with the color correction applied
+   * @return a new image with color correction applied
    */
-  private Image applyColorCorrection(int redPeak, int greenPeak, int bluePeak, double averagePeak) {
-    Pixel[][] correctedPixels = new Pixel[this.getHeight()][this.getWidth()];
-    double redOffset = averagePeak - redPeak;
-    double greenOffset = averagePeak - greenPeak;
-    double blueOffset = averagePeak - bluePeak;
-
-    for (int y = 0; y < this.getHeight(); y++) {
-      for (int x = 0; x < this.getWidth(); x++) {
-        Pixel pixel = this.getPixel(x, y);
-        int correctedRed = clamp((int) pixel.getRed() + (int) redOffset);
-        int correctedGreen = clamp(pixel.getGreen() + (int) greenOffset);
-        int correctedBlue = clamp(pixel.getBlue() + (int) blueOffset);
-        correctedPixels[y][x] = new Pixel(correctedRed, correctedGreen, correctedBlue);
-      }
-    }
+  public Image colorCorrect() {
+    return colorCorrect(this.calculateHistograms());
+  }
 
-    return new Image(correctedPixels);
+  /**
+   * Performs color correction on this image using the given histograms instead of this
+   * image's own. This lets a part of an image be corrected with the histograms of the
+   * whole image, giving the same pixels as correcting the whole image.
+   *
+   * @param histograms the red, green and blue histograms to take the peak values from
+   * @return a new image with color correction applied
+   */
+  public Image colorCorrect(int[][] histograms) {
+    return ChannelLookupTable.colorCorrection(histograms).apply(this);
   }
 
   /**
@@ -497,99 +994,122 @@ public class Image implements IImage {
    *                                  not in ascending order
    */
   public Image adjustLevels(int b, int m, int w) {
-    if (b < 0 || b > 255 || m < 0 || m > 255 || w < 0 || w > 255) {
-      throw new IllegalArgumentException("Level values must be between 0 and 255.");
-    }
-
-    if (!(b <= m && m <= w)) {
-      throw new IllegalArgumentException("Level values must be in ascending order (b <= m <= w).");
-    }
-
-    Pixel[][] pixels = new Pixel[getHeight()][getWidth()];
-
-    double A = b * b * (m - w) - b * (m * m - w * w) + w * m * m - m * w * w;
-    double A_a = -b * (128 - 255) + 128 * w - 255 * m;
-    double A_b = b * b * (128 - 255) + 255 * m * m - 128 * w * w;
-    double A_c = b * b * (255 * m - 128 * w) - b * (255 * m * m - 128 * w * w);
-
-    double a = A_a / A;
-    double bb = A_b / A;
-    double c = A_c / A;
-
-    for (int y = 0; y < getHeight(); y++) {
-      for (int x = 0; x < getWidth(); x++) {
-        Pixel pixel = getPixel(x, y);
-
-        int newRed = clamp((int) (a * pixel.getRed() * pixel.getRed()
-                + bb * pixel.getRed() + c));
-        int newGreen = clamp((int) (a * pixel.getGreen() * pixel.getGreen()
-                + bb * pixel.getGreen() + c));
-        int newBlue = clamp((int) (a * pixel.getBlue() * pixel.getBlue()
-                + bb * pixel.getBlue() + c));
-
-        pixels[y][x] = new Pixel(newRed, newGreen, newBlue);
-      }
-    }
-
-    return new Image(pixels);
+    return ChannelLookupTable.levels(b, m, w).apply(this);
   }
 
   /**
    * Compresses this image using the Haar Wavelet Transform and returns the compressed image.
+   * The whole image is transformed at once, padded to a power of two in each dimension on
+   * its own rather than to a square.
    *
    * @param percentage The percentage by which to compress the image.
    * @return A new compressed Image.
    */
   public Image compress(int percentage) {
-    int width = this.getWidth();
-    int height = this.getHeight();
+    return compress(percentage, null);
+  }
 
-    double[][] redChannel = new double[height][width];
-    double[][] greenChannel = new double[height][width];
-    double[][] blueChannel = new double[height][width];
+  /**
+   * Compresses this image using the Haar Wavelet Transform and returns the compressed image.
+   * The whole image is transformed at once, padded to a power of two in each dimension on
+   * its own rather than to a square, and the three channels are transformed in parallel.
+   *
+   * @param percentage The percentage by which to compress the image.
+   * @param pool       The pool on which the channels are transformed in parallel, or null
+   *                   to transform them on the calling thread.
+   * @return A new compressed Image.
+   */
+  public Image compress(int percentage, ForkJoinPool pool) {
+    return compress(percentage, Math.max(1, Math.max(width, height)), pool);
+  }
 
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        Pixel pixel = this.getPixel(x, y);
-        redChannel[y][x] = pixel.getRed();
-        greenChannel[y][x] = pixel.getGreen();
-        blueChannel[y][x] = pixel.getBlue();
-      }
+  /**
+   * Compresses this image using the Haar Wavelet Transform on independent blocks and
+   * returns the compressed image. The image is divided into blocks of blockSize by
+   * blockSize pixels, smaller at the right and bottom edges. Each block is padded to a
+   * power of two in each dimension on its own and transformed separately, so the work
+   * grows with the number of pixels instead of with a padded square. One threshold is
+   * taken over the coefficients of all blocks and channels, and every channel of every
+   * block is a separate task on the pool.
+   *
+   * @param percentage The percentage by which to compress the image.
+   * @param blockSize  The width and height of the blocks in pixels.
+   * @param pool       The pool on which the blocks are transformed in parallel, or null
+   *                   to transform them on the calling thread.
+   * @return A new compressed Image.
+   * @throws IllegalArgumentException if the block size is not positive
+   */
+  public Image compress(int percentage, int blockSize, ForkJoinPool pool) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be positive.");
     }
-    redChannel = transpose(redChannel);
-    greenChannel = transpose(greenChannel);
-    blueChannel = transpose(blueChannel);
-
+    int blockColumns = (width + blockSize - 1) / blockSize;
+    int blocks = blockColumns * ((height + blockSize - 1) / blockSize);
+    materialize();
+    byte[][] channels = {red, green, blue};
+    double[][][] coefficients = new double[3 * blocks][][];
     HaarWaveletTransform haarWaveletTransform = new HaarWaveletTransform();
-    redChannel = haarWaveletTransform.haar(redChannel);
-    greenChannel = haarWaveletTransform.haar(greenChannel);
-    blueChannel = haarWaveletTransform.haar(blueChannel);
 
-    double threshold = haarWaveletTransform.calThreshold(redChannel,
-            greenChannel, blueChannel, percentage);
-
-    redChannel = truncate(redChannel, threshold);
-    greenChannel = truncate(greenChannel, threshold);
-    blueChannel = truncate(blueChannel, threshold);
-
-    redChannel = haarWaveletTransform.invHaar(redChannel, width, height);
-    greenChannel = haarWaveletTransform.invHaar(greenChannel, width, height);
-    blueChannel = haarWaveletTransform.invHaar(blueChannel, width, height);
-
-    redChannel = transpose(redChannel);
-    greenChannel = transpose(greenChannel);
-    blueChannel = transpose(blueChannel);
+    forEachBlock(3 * blocks, pool, task -> {
+      int block = task / 3;
+      int c = task % 3;
+      int left = block % blockColumns * blockSize;
+      int top = block / blockColumns * blockSize;
+      int blockWidth = Math.min(blockSize, width - left);
+      int blockHeight = Math.min(blockSize, height - top);
+      double[][] matrix = new double[blockWidth][blockHeight];
+      for (int x = 0; x < blockWidth; x++) {
+        for (int y = 0; y < blockHeight; y++) {
+          matrix[x][y] = channels[c][(top + y) * width + left + x] & 0xff;
+        }
+      }
+      coefficients[task] = haarWaveletTransform.rectangularHaar(matrix);
+    });
+
+    double threshold = haarWaveletTransform.calThreshold(coefficients, percentage);
+
+    byte[][] compressed = new byte[3][width * height];
+    forEachBlock(3 * blocks, pool, task -> {
+      int block = task / 3;
+      int c = task % 3;
+      int left = block % blockColumns * blockSize;
+      int top = block / blockColumns * blockSize;
+      int blockWidth = Math.min(blockSize, width - left);
+      int blockHeight = Math.min(blockSize, height - top);
+      double[][] matrix = haarWaveletTransform.invHaar(
+              truncate(coefficients[task], threshold), blockWidth, blockHeight);
+      for (int x = 0; x < blockWidth; x++) {
+        for (int y = 0; y < blockHeight; y++) {
+          compressed[c][(top + y) * width + left + x] =
+                  (byte) Math.round(Math.max(0, Math.min(255, matrix[x][y])));
+        }
+      }
+    });
+    return new Image(width, height, compressed[0], compressed[1], compressed[2]);
+  }
 
-    Pixel[][] compressedPixels = new Pixel[height][width];
-    for (int y = 0; y < height; y++) {
-      for (int x = 0; x < width; x++) {
-        int red = (int) Math.round(Math.max(0, Math.min(255, redChannel[y][x])));
-        int green = (int) Math.round(Math.max(0, Math.min(255, greenChannel[y][x])));
-        int blue = (int) Math.round(Math.max(0, Math.min(255, blueChannel[y][x])));
-        compressedPixels[y][x] = new Pixel(red, green, blue);
+  /**
+   * Runs an action for every block index, in parallel on the given pool if there is one.
+   *
+   * @param blocks The number of blocks.
+   * @param pool   The pool to run the actions on, or null to run them on the calling thread.
+   * @param action The action to run for each block index.
+   */
+  private static void forEachBlock(int blocks, ForkJoinPool pool, IntConsumer action) {
+    if (pool == null || blocks == 1) {
+      for (int block = 0; block < blocks; block++) {
+        action.accept(block);
       }
+      return;
     }
-    return new Image(compressedPixels);
+    List<ForkJoinTask<?>> tasks = new ArrayList<>(blocks);
+    for (int block = 0; block < blocks; block++) {
+      int index = block;
+      tasks.add(ForkJoinTask.adapt(() -> action.accept(index)));
+    }
+    pool.invoke(ForkJoinTask.adapt(() -> {
+      ForkJoinTask.invokeAll(tasks);
+    }));
   }
 
   /**
@@ -613,25 +1133,6 @@ public class Image implements IImage {
     return channel;
   }
 
-  /**
-   * Transposes a given 2D matrix.
-   *
-   * @param matrix The 2D matrix to be transposed.
-   * @return The transposed matrix.
-   */
-  private double[][] transpose(double[][] matrix) {
-    int originalHeight = matrix.length;
-    int originalWidth = matrix[0].length;
-    double[][] transposedMatrix = new double[originalWidth][originalHeight];
-
-    for (int i = 0; i < originalHeight; i++) {
-      for (int j = 0; j < originalWidth; j++) {
-        transposedMatrix[j][i] = matrix[i][j];
-      }
-    }
-    return transposedMatrix;
-  }
-
   /**
    * Applies a specified filter strategy to this image.
    *
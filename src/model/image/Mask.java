@@ -0,0 +1,177 @@
+package model.image;
+
+import java.util.Arrays;
+
+/**
+ * A selection of pixels of an image, stored row by row as runs of selected columns.
+ * A mask is made from an image of the same size by {@link Image#toMask()}: a pixel is
+ * selected where the mask image is light, that is where its brightest channel is at least
+ * 128, so a black image with white areas selects the white areas. A mask that selects a few
+ * small areas takes a few integers per row that crosses them, and rows without selected
+ * pixels can be skipped without looking at their pixels. Masks are immutable.
+ */
+public class Mask {
+  private static final int THRESHOLD = 128;
+
+  private final int width;
+  private final int height;
+  private final int[] rowStarts;
+  private final int[] runs;
+
+  /**
+   * Constructs a mask from its runs.
+   *
+   * @param width     the width of the mask in pixels
+   * @param height    the height of the mask in pixels
+   * @param rowStarts for each row, and one past the last, the index of its first run
+   * @param runs      the start (inclusive) and end (exclusive) column of every run, row after
+   *                  row
+   */
+  private Mask(int width, int height, int[] rowStarts, int[] runs) {
+    this.width = width;
+    this.height = height;
+    this.rowStarts = rowStarts;
+    this.runs = runs;
+  }
+
+  /**
+   * Builds a mask from the channels of a mask image.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param red    the red channel values
+   * @param green  the green channel values
+   * @param blue   the blue channel values
+   * @return the mask of the light pixels of the image
+   */
+  static Mask of(int width, int height, byte[] red, byte[] green, byte[] blue) {
+    int[] rowStarts = new int[height + 1];
+    int[] runs = new int[16];
+    int count = 0;
+    for (int y = 0; y < height; y++) {
+      rowStarts[y] = count;
+      int rowStart = y * width;
+      int x = 0;
+      while (x < width) {
+        while (x < width && !isLight(red, green, blue, rowStart + x)) {
+          x++;
+        }
+        if (x == width) {
+          break;
+        }
+        int start = x;
+        while (x < width && isLight(red, green, blue, rowStart + x)) {
+          x++;
+        }
+        if (count * 2 + 2 > runs.length) {
+          runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        runs[count * 2] = start;
+        runs[count * 2 + 1] = x;
+        count++;
+      }
+    }
+    rowStarts[height] = count;
+    return new Mask(width, height, rowStarts, Arrays.copyOf(runs, count * 2));
+  }
+
+  /**
+   * Returns whether a pixel of a mask image selects its position.
+   *
+   * @param red   the red channel values
+   * @param green the green channel values
+   * @param blue  the blue channel values
+   * @param index the index of the pixel
+   * @return true if the brightest channel of the pixel reaches the threshold
+   */
+  private static boolean isLight(byte[] red, byte[] green, byte[] blue, int index) {
+    return (red[index] & 0xff) >= THRESHOLD || (green[index] & 0xff) >= THRESHOLD
+            || (blue[index] & 0xff) >= THRESHOLD;
+  }
+
+  /**
+   * Returns the width of this mask.
+   *
+   * @return the width in pixels
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Returns the height of this mask.
+   *
+   * @return the height in pixels
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Returns the number of runs of selected pixels in a row.
+   *
+   * @param y the row
+   * @return the number of runs, 0 if no pixel of the row is selected
+   * @throws IndexOutOfBoundsException if the row is outside the mask
+   */
+  public int getRunCount(int y) {
+    return rowStarts[y + 1] - rowStarts[y];
+  }
+
+  /**
+   * Returns the first column of a run of selected pixels.
+   *
+   * @param y   the row
+   * @param run the index of the run within the row, from left to right
+   * @return the first selected column of the run
+   */
+  public int getRunStart(int y, int run) {
+    return runs[(rowStarts[y] + run) * 2];
+  }
+
+  /**
+   * Returns the column after the last one of a run of selected pixels.
+   *
+   * @param y   the row
+   * @param run the index of the run within the row, from left to right
+   * @return the first unselected column after the run
+   */
+  public int getRunEnd(int y, int run) {
+    return runs[(rowStarts[y] + run) * 2 + 1];
+  }
+
+  /**
+   * Returns whether a pixel is selected.
+   *
+   * @param x the x-coordinate of the pixel
+   * @param y the y-coordinate of the pixel
+   * @return true if the pixel is selected
+   * @throws IllegalArgumentException if the pixel is outside the mask
+   */
+  public boolean isSelected(int x, int y) {
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      throw new IllegalArgumentException("Coordinates out of bounds!");
+    }
+    for (int run = 0; run < getRunCount(y); run++) {
+      if (x < getRunStart(y, run)) {
+        return false;
+      } else if (x < getRunEnd(y, run)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the number of selected pixels.
+   *
+   * @return the number of selected pixels
+   */
+  public long getSelectedCount() {
+    long count = 0;
+    for (int i = 0; i < runs.length; i += 2) {
+      count += runs[i + 1] - runs[i];
+    }
+    return count;
+  }
+}
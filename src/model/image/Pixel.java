@@ -63,4 +63,32 @@ public class Pixel implements IPixel{
     return blue;
   }
 
+  /**
+   * Compares this pixel with another object. Two pixels are equal if
+   * their red, green and blue components are all equal.
+   *
+   * @param o the object to compare with
+   * @return true if the object is a pixel with the same color components
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Pixel)) {
+      return false;
+    }
+    Pixel other = (Pixel) o;
+    return red == other.red && green == other.green && blue == other.blue;
+  }
+
+  /**
+   * Returns a hash code consistent with {@link #equals(Object)}.
+   *
+   * @return the packed RGB value of this pixel
+   */
+  @Override
+  public int hashCode() {
+    return red << 16 | green << 8 | blue;
+  }
 }
@@ -1,15 +1,13 @@
 package model.strategy;
 
-import model.image.Image;
+import model.image.ChannelLookupTable;
 
 /**
  * Implements the FilterStrategy to apply a levels adjustment to an image.
  * Levels adjustment alters the intensity of the shadows, midtones, and highlights of an image.
+ * The levels curve is compiled into a lookup table, so it composes with other point operations.
  */
-public class AdjustLevelsFilterStrategy implements FilterStrategy {
-  private final int b;
-  private final int m;
-  private final int w;
+public class AdjustLevelsFilterStrategy extends LookupTableFilterStrategy {
 
   /**
    * Constructs an AdjustLevelsFilterStrategy with specified values for shadows, midtones,
@@ -21,22 +19,9 @@ public class AdjustLevelsFilterStrategy implements FilterStrategy {
    *          'b' and less than 'w'.
    * @param w The white point value for highlights, must be in the range [0, 255] and greater
    *          than 'b' and 'm'.
+   * @throws IllegalArgumentException if the values are out of range or not in ascending order
    */
   public AdjustLevelsFilterStrategy(int b, int m, int w) {
-    this.b = b;
-    this.m = m;
-    this.w = w;
-  }
-
-  /**
-   * Applies the levels adjustment to the given image using the shadow, midtone, and highlight
-   * values provided at construction. The result is a new image with adjusted intensity levels.
-   *
-   * @param image The image to which the levels adjustment is to be applied.
-   * @return A new Image instance with adjusted levels.
-   */
-  @Override
-  public Image apply(Image image) {
-    return image.adjustLevels(b, m, w);
+    super(ChannelLookupTable.levels(b, m, w));
   }
 }
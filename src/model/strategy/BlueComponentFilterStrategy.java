@@ -0,0 +1,31 @@
+package model.strategy;
+
+import model.image.Image;
+
+/**
+ * Implements the FilterStrategy to extract the blue component of an image.
+ */
+public class BlueComponentFilterStrategy implements FilterStrategy {
+
+  /**
+   * Extracts the blue component of the given image using the extractBlueComponent method
+   * of the Image class.
+   *
+   * @param image The image whose blue component is to be extracted.
+   * @return A new Image instance that only contains the blue channel of the original image.
+   */
+  @Override
+  public Image apply(Image image) {
+    return image.extractBlueComponent();
+  }
+
+  /**
+   * Returns true, as the blue channel of each pixel is kept on its own.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isPerPixel() {
+    return true;
+  }
+}
@@ -0,0 +1,19 @@
+package model.strategy;
+
+import model.image.ChannelLookupTable;
+
+/**
+ * Implements the FilterStrategy to brighten or darken an image by a fixed increment.
+ * The increment is compiled into a lookup table, so it composes with other point operations.
+ */
+public class BrightenFilterStrategy extends LookupTableFilterStrategy {
+
+  /**
+   * Constructs a BrightenFilterStrategy with the increment added to every channel value.
+   *
+   * @param increment The amount to change the brightness by, negative to darken.
+   */
+  public BrightenFilterStrategy(int increment) {
+    super(ChannelLookupTable.brighten(increment));
+  }
+}
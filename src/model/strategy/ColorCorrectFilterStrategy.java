@@ -1,5 +1,6 @@
 package model.strategy;
 
+import model.image.ChannelLookupTable;
 import model.image.Image;
 
 /**
@@ -19,4 +20,17 @@ public class ColorCorrectFilterStrategy implements FilterStrategy {
   public Image apply(Image image) {
     return image.colorCorrect();
   }
+
+  /**
+   * Computes the histograms of the whole image and compiles the correction into a lookup
+   * table, so that parts of the image are corrected with the same peak values as the whole.
+   *
+   * @param image the whole image the filter will be applied to
+   * @return a filter that corrects any part of the image using the whole image's histograms
+   */
+  @Override
+  public FilterStrategy prepare(Image image) {
+    return new LookupTableFilterStrategy(
+            ChannelLookupTable.colorCorrection(image.calculateHistograms()));
+  }
 }
@@ -0,0 +1,74 @@
+package model.strategy;
+
+import model.image.ColorMatrix;
+import model.image.Image;
+
+/**
+ * Implements the FilterStrategy for linear color transforms compiled into a ColorMatrix.
+ * Lookup table strategies that follow a color matrix, and any color matrix that follows a
+ * grayscale one, can be folded into it, so that the whole chain is evaluated in a single
+ * fixed-point pass with the same result as applying the strategies in turn.
+ */
+public class ColorMatrixStrategy implements FilterStrategy {
+  private final ColorMatrix matrix;
+
+  /**
+   * Constructs a ColorMatrixStrategy that applies the given matrix.
+   *
+   * @param matrix The color matrix applied to every pixel.
+   */
+  public ColorMatrixStrategy(ColorMatrix matrix) {
+    this.matrix = matrix;
+  }
+
+  /**
+   * Applies the color matrix to every pixel of the given image.
+   *
+   * @param image The image to which the color matrix is to be applied.
+   * @return A new Image instance with the color transform applied.
+   */
+  @Override
+  public Image apply(Image image) {
+    return matrix.apply(image);
+  }
+
+  /**
+   * Returns true, as each pixel is transformed on its own.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isPerPixel() {
+    return true;
+  }
+
+  /**
+   * Returns whether the given strategy can be folded into this one by {@link #then}.
+   *
+   * @param next The strategy applied after this one.
+   * @return true for lookup table strategies, and for color matrix strategies if this
+   *         matrix is grayscale
+   */
+  public boolean canAbsorb(FilterStrategy next) {
+    return next instanceof LookupTableFilterStrategy
+            || next instanceof ColorMatrixStrategy && matrix.isGrayscale();
+  }
+
+  /**
+   * Folds a strategy applied after this one into it.
+   *
+   * @param next The strategy applied to the output of this one.
+   * @return A strategy equivalent to applying this strategy and then the next.
+   * @throws IllegalArgumentException if the strategy cannot be folded into this one
+   */
+  public ColorMatrixStrategy then(FilterStrategy next) {
+    if (!canAbsorb(next)) {
+      throw new IllegalArgumentException("Filter cannot be folded into this color matrix.");
+    }
+    if (next instanceof LookupTableFilterStrategy) {
+      return new ColorMatrixStrategy(
+              matrix.then(((LookupTableFilterStrategy) next).getTable()));
+    }
+    return new ColorMatrixStrategy(matrix.then(((ColorMatrixStrategy) next).matrix));
+  }
+}
@@ -16,4 +16,72 @@ public interface FilterStrategy {
    * @return A new Image instance that results from applying the filter to the input image.
    */
   Image apply(Image image);
+
+  /**
+   * Returns how many neighboring rows and columns on each side of a pixel this filter
+   * reads to compute that pixel. Filters that only look at the pixel itself return 0.
+   * This lets the image be processed in parts that overlap by this many rows.
+   *
+   * @return the radius of the neighborhood read for each output pixel
+   */
+  default int getHaloRadius() {
+    return 0;
+  }
+
+  /**
+   * Resolves any statistics of the whole image that this filter depends on and returns a
+   * filter that can be applied to parts of the image independently. Applying the returned
+   * filter to a part of the image, padded by {@link #getHaloRadius()} rows, gives the same
+   * pixels as applying this filter to the whole image.
+   *
+   * @param image the whole image the filter will be applied to
+   * @return a filter whose output only depends on each pixel's neighborhood
+   */
+  default FilterStrategy prepare(Image image) {
+    return this;
+  }
+
+  /**
+   * Applies this filter to a rectangular region of the image only. The region is filtered
+   * together with a margin of {@link #getHaloRadius()} pixels on each side that lies within
+   * the image, after whole-image statistics are resolved by {@link #prepare(Image)}, so the
+   * result holds the same pixels as the region of the filtered whole image, at a cost in
+   * proportion to the size of the region.
+   *
+   * @param image  the whole image
+   * @param x      the x-coordinate of the top-left corner of the region
+   * @param y      the y-coordinate of the top-left corner of the region
+   * @param width  the width of the region in pixels
+   * @param height the height of the region in pixels
+   * @return a new image of the size of the region, holding its filtered pixels
+   * @throws IllegalArgumentException if the region does not lie within the image
+   */
+  default Image applyToRegion(Image image, int x, int y, int width, int height) {
+    Image region = image.crop(x, y, width, height);
+    if (width == 0 || height == 0) {
+      return region;
+    }
+    FilterStrategy strategy = prepare(image);
+    int halo = strategy.getHaloRadius();
+    int haloX = Math.max(0, x - halo);
+    int haloY = Math.max(0, y - halo);
+    int haloWidth = Math.min(image.getWidth(), x + width + halo) - haloX;
+    int haloHeight = Math.min(image.getHeight(), y + height + halo) - haloY;
+    Image filtered = strategy.apply(image.crop(haloX, haloY, haloWidth, haloHeight));
+    if (haloWidth == width && haloHeight == height) {
+      return filtered;
+    }
+    return filtered.crop(x - haloX, y - haloY, width, height);
+  }
+
+  /**
+   * Returns whether this filter computes each output pixel only from the input pixel at the
+   * same position, without any statistics of the whole image. Several such filters can be
+   * applied one after another to a few rows at a time, in a single pass over the image.
+   *
+   * @return true if this filter works pixel by pixel, false otherwise
+   */
+  default boolean isPerPixel() {
+    return false;
+  }
 }
@@ -0,0 +1,94 @@
+package model.strategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import model.image.Image;
+
+/**
+ * A FilterStrategy that applies a sequence of per-pixel filter strategies in a single pass.
+ * Instead of filtering the whole image once for every strategy, the image is processed in
+ * bands of a few rows that fit in the processor cache: every strategy is applied to a band
+ * before moving on to the next one. Only the bands and the final image are allocated, and
+ * the result is identical to applying the strategies one after another to the whole image.
+ * Consecutive lookup table strategies are composed into a single table beforehand, and
+ * lookup tables following a color matrix, or color matrices following a grayscale one, are
+ * folded into it, so such chains are applied in one pass over the pixels.
+ */
+public class FusedFilterStrategy implements FilterStrategy {
+  private static final int BAND_PIXELS = 1 << 14;
+
+  private final List<FilterStrategy> strategies;
+
+  /**
+   * Constructs a FusedFilterStrategy that applies the given strategies in order.
+   *
+   * @param strategies The per-pixel filter strategies, in the order they are applied.
+   * @throws IllegalArgumentException if one of the strategies does not work pixel by pixel
+   */
+  public FusedFilterStrategy(List<FilterStrategy> strategies) {
+    List<FilterStrategy> fused = new ArrayList<>();
+    for (FilterStrategy strategy : strategies) {
+      if (!strategy.isPerPixel()) {
+        throw new IllegalArgumentException("Only per-pixel filters can be fused.");
+      }
+      FilterStrategy previous = fused.isEmpty() ? null : fused.get(fused.size() - 1);
+      if (previous instanceof LookupTableFilterStrategy
+              && strategy instanceof LookupTableFilterStrategy) {
+        fused.set(fused.size() - 1, ((LookupTableFilterStrategy) previous)
+                .then((LookupTableFilterStrategy) strategy));
+      } else if (previous instanceof ColorMatrixStrategy
+              && ((ColorMatrixStrategy) previous).canAbsorb(strategy)) {
+        fused.set(fused.size() - 1, ((ColorMatrixStrategy) previous).then(strategy));
+      } else {
+        fused.add(strategy);
+      }
+    }
+    this.strategies = Collections.unmodifiableList(fused);
+  }
+
+  /**
+   * Applies all strategies to the image, band by band. A single strategy is applied to
+   * the whole image directly.
+   *
+   * @param image The image to which the strategies are to be applied.
+   * @return A new Image instance with all strategies applied.
+   */
+  @Override
+  public Image apply(Image image) {
+    if (strategies.size() == 1) {
+      return strategies.get(0).apply(image);
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int size = width * height;
+    byte[] newRed = new byte[size];
+    byte[] newGreen = new byte[size];
+    byte[] newBlue = new byte[size];
+
+    int bandRows = Math.max(1, BAND_PIXELS / Math.max(1, width));
+    for (int startRow = 0; startRow < height; startRow += bandRows) {
+      int rows = Math.min(bandRows, height - startRow);
+      Image band = image.crop(0, startRow, width, rows);
+      for (FilterStrategy strategy : strategies) {
+        band = strategy.apply(band);
+      }
+      int offset = startRow * width;
+      System.arraycopy(band.getRedChannel(), 0, newRed, offset, rows * width);
+      System.arraycopy(band.getGreenChannel(), 0, newGreen, offset, rows * width);
+      System.arraycopy(band.getBlueChannel(), 0, newBlue, offset, rows * width);
+    }
+    return new Image(width, height, newRed, newGreen, newBlue);
+  }
+
+  /**
+   * Returns true, as every fused strategy works pixel by pixel.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isPerPixel() {
+    return true;
+  }
+}
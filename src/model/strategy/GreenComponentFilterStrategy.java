@@ -0,0 +1,31 @@
+package model.strategy;
+
+import model.image.Image;
+
+/**
+ * Implements the FilterStrategy to extract the green component of an image.
+ */
+public class GreenComponentFilterStrategy implements FilterStrategy {
+
+  /**
+   * Extracts the green component of the given image using the extractGreenComponent method
+   * of the Image class.
+   *
+   * @param image The image whose green component is to be extracted.
+   * @return A new Image instance that only contains the green channel of the original image.
+   */
+  @Override
+  public Image apply(Image image) {
+    return image.extractGreenComponent();
+  }
+
+  /**
+   * Returns true, as the green channel of each pixel is kept on its own.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isPerPixel() {
+    return true;
+  }
+}
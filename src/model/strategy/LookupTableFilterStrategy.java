@@ -0,0 +1,62 @@
+package model.strategy;
+
+import model.image.ChannelLookupTable;
+import model.image.Image;
+
+/**
+ * Implements the FilterStrategy for point operations compiled into a ChannelLookupTable.
+ * Consecutive lookup table strategies can be composed into one, which maps every channel
+ * value in a single lookup however many operations it stands for.
+ */
+public class LookupTableFilterStrategy implements FilterStrategy {
+  private final ChannelLookupTable table;
+
+  /**
+   * Constructs a LookupTableFilterStrategy that applies the given table.
+   *
+   * @param table The lookup table applied to every pixel.
+   */
+  public LookupTableFilterStrategy(ChannelLookupTable table) {
+    this.table = table;
+  }
+
+  /**
+   * Applies the lookup table to every pixel of the given image.
+   *
+   * @param image The image to which the lookup table is to be applied.
+   * @return A new Image instance with every channel value mapped through the table.
+   */
+  @Override
+  public Image apply(Image image) {
+    return table.apply(image);
+  }
+
+  /**
+   * Returns true, as every channel value is looked up on its own.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isPerPixel() {
+    return true;
+  }
+
+  /**
+   * Returns the lookup table applied by this strategy.
+   *
+   * @return the lookup table
+   */
+  public ChannelLookupTable getTable() {
+    return table;
+  }
+
+  /**
+   * Composes this strategy with one applied after it.
+   *
+   * @param next The lookup table strategy applied to the output of this one.
+   * @return A strategy equivalent to applying this strategy and then the next.
+   */
+  public LookupTableFilterStrategy then(LookupTableFilterStrategy next) {
+    return new LookupTableFilterStrategy(table.then(next.table));
+  }
+}
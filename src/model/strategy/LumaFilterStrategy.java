@@ -1,24 +1,20 @@
 package model.strategy;
 
-import model.image.Image;
+import model.image.ColorMatrix;
 
 /**
  * Implements the FilterStrategy interface to apply a luma-based filter to an image.
  * This strategy converts the image to a grayscale version using the luma component
  * which is a weighted sum of the RGB color channels.
+ * The luma component is computed by the fixed-point ColorMatrix.LUMA, so point operations
+ * that follow it can be folded into a single pass.
  */
-public class LumaFilterStrategy implements FilterStrategy {
+public class LumaFilterStrategy extends ColorMatrixStrategy {
 
   /**
-   * Applies a luma-based filter to the provided image, converting it to grayscale.
-   * This method relies on the toLumaComponent method of the Image class to calculate
-   * the luma value and produce a grayscale image.
-   *
-   * @param image The image to be converted to grayscale using the luma component.
-   * @return A new Image instance that is the grayscale version of the original image.
+   * Constructs a LumaFilterStrategy.
    */
-  @Override
-  public Image apply(Image image) {
-    return image.toLumaComponent();
+  public LumaFilterStrategy() {
+    super(ColorMatrix.LUMA);
   }
 }
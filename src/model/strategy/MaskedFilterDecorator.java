@@ -0,0 +1,210 @@
+package model.strategy;
+
+import java.util.Arrays;
+
+import model.image.Image;
+import model.image.Mask;
+
+/**
+ * A decorator for FilterStrategy that applies a given filter strategy only to the pixels
+ * selected by a mask, while the other pixels remain as in the original image.
+ * Rows without selected pixels are skipped. The runs of selected pixels are gathered row by
+ * row into rectangular regions, each filtered with a margin of the halo radius of the
+ * filter, so selected pixels get the same values as they would in the filtered whole image.
+ * A run joins the region of a run to its left or of a run close to it in the row above, and
+ * only if that grows the padded rectangle of the region by no more than filtering the run
+ * as a region of its own would take, so a diagonal stroke or far apart spots are covered by
+ * several small regions instead of one spanning the image, and the work is never more than
+ * that of filtering each run with its halo on its own. The mask covers the whole
+ * image, so this decorator goes around a TiledFilterDecorator rather than inside one, and
+ * the regions are then filtered in parallel.
+ */
+public class MaskedFilterDecorator implements FilterStrategy {
+  private final FilterStrategy originalStrategy;
+  private final Mask mask;
+
+  /**
+   * Constructs a MaskedFilterDecorator with a given filter strategy and a mask.
+   *
+   * @param strategy The original filter strategy to be applied to the selected pixels.
+   * @param mask     The mask selecting the pixels to filter.
+   */
+  public MaskedFilterDecorator(FilterStrategy strategy, Mask mask) {
+    this.originalStrategy = strategy;
+    this.mask = mask;
+  }
+
+  /**
+   * Applies the decorated filter strategy to the selected pixels of the image.
+   *
+   * @param image The image to which the filter strategy is to be applied.
+   * @return A new Image instance with the filter applied where the mask is set.
+   * @throws IllegalArgumentException if the mask and the image differ in size.
+   */
+  @Override
+  public Image apply(Image image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (mask.getWidth() != width || mask.getHeight() != height) {
+      throw new IllegalArgumentException("Mask must have the same dimensions as the image.");
+    }
+    byte[][] masked = {image.getRedChannel().clone(), image.getGreenChannel().clone(),
+        image.getBlueChannel().clone()};
+    FilterStrategy strategy = originalStrategy.prepare(image);
+    int halo = strategy.getHaloRadius();
+
+    int reach = 2 * halo + 1;
+    Region[] previous = new Region[0];
+    for (int y = 0; y < height; y++) {
+      Region[] current = new Region[mask.getRunCount(y)];
+      int first = 0;
+      for (int run = 0; run < current.length; run++) {
+        int start = mask.getRunStart(y, run);
+        int end = mask.getRunEnd(y, run);
+        while (first < previous.length && mask.getRunEnd(y - 1, first) + reach <= start) {
+          first++;
+        }
+        Region best = run > 0 && current[run - 1].accepts(y, start, end, halo)
+                ? current[run - 1] : null;
+        for (int above = first; above < previous.length
+                && mask.getRunStart(y - 1, above) < end + reach; above++) {
+          Region candidate = previous[above];
+          if (candidate.accepts(y, start, end, halo) && (best == null
+                  || candidate.paddedAreaWith(y, start, end, halo)
+                  < best.paddedAreaWith(y, start, end, halo))) {
+            best = candidate;
+          }
+        }
+        if (best == null) {
+          best = new Region(y);
+        }
+        best.add(y, start, end);
+        current[run] = best;
+      }
+      for (Region region : previous) {
+        if (region.bottom <= y) {
+          region.filter(strategy, image, masked);
+        }
+      }
+      previous = current;
+    }
+    for (Region region : previous) {
+      region.filter(strategy, image, masked);
+    }
+
+    return new Image(width, height, masked[0], masked[1], masked[2]);
+  }
+
+  /**
+   * Returns the neighborhood radius of the decorated filter strategy.
+   *
+   * @return the halo radius of the original strategy
+   */
+  @Override
+  public int getHaloRadius() {
+    return originalStrategy.getHaloRadius();
+  }
+
+  /**
+   * A rectangle of consecutive rows around some runs of selected pixels, which is filtered
+   * as one region.
+   */
+  private static class Region {
+    private final int top;
+    private int bottom;
+    private int left = Integer.MAX_VALUE;
+    private int right = Integer.MIN_VALUE;
+    private int[] runs = new int[12];
+    private int count;
+    private boolean filtered;
+
+    /**
+     * Constructs an empty region starting at the given row.
+     *
+     * @param top the first row of the region
+     */
+    Region(int top) {
+      this.top = top;
+      this.bottom = top;
+    }
+
+    /**
+     * Returns the padded area of this region if it took in a run of the given row.
+     *
+     * @param y     the row of the run, the last row of the region or the one below it
+     * @param start the first column of the run
+     * @param end   the column after the run
+     * @param halo  the halo radius of the filter
+     * @return the area of the rectangle around the region and the run, padded by the halo
+     */
+    long paddedAreaWith(int y, int start, int end, int halo) {
+      long newWidth = Math.max(right, end) - Math.min(left, start) + 2L * halo;
+      long newHeight = Math.max(bottom, y + 1) - top + 2L * halo;
+      return newWidth * newHeight;
+    }
+
+    /**
+     * Returns whether a run of the given row may join this region, that is whether the
+     * padded rectangle of the region grows by no more than the padded area of the run.
+     *
+     * @param y     the row of the run, the last row of the region or the one below it
+     * @param start the first column of the run
+     * @param end   the column after the run
+     * @param halo  the halo radius of the filter
+     * @return true if the run may join this region
+     */
+    boolean accepts(int y, int start, int end, int halo) {
+      long area = (right - left + 2L * halo) * (bottom - top + 2L * halo);
+      long growth = paddedAreaWith(y, start, end, halo) - area;
+      return growth <= (end - start + 2L * halo) * (1 + 2L * halo);
+    }
+
+    /**
+     * Adds a run of selected pixels to this region.
+     *
+     * @param y     the row of the run, the last row of the region or the one below it
+     * @param start the first column of the run
+     * @param end   the column after the run
+     */
+    void add(int y, int start, int end) {
+      bottom = Math.max(bottom, y + 1);
+      left = Math.min(left, start);
+      right = Math.max(right, end);
+      if (count * 3 + 3 > runs.length) {
+        runs = Arrays.copyOf(runs, runs.length * 2);
+      }
+      runs[count * 3] = y;
+      runs[count * 3 + 1] = start;
+      runs[count * 3 + 2] = end;
+      count++;
+    }
+
+    /**
+     * Filters this region of the image and copies the filtered pixels of its runs, unless
+     * that has been done already.
+     *
+     * @param strategy the prepared filter strategy
+     * @param image    the whole image
+     * @param masked   the red, green and blue channels of the result
+     */
+    void filter(FilterStrategy strategy, Image image, byte[][] masked) {
+      if (filtered) {
+        return;
+      }
+      filtered = true;
+      int regionWidth = right - left;
+      Image region = strategy.applyToRegion(image, left, top, regionWidth, bottom - top);
+      byte[][] pixels = {region.getRedChannel(), region.getGreenChannel(),
+          region.getBlueChannel()};
+      for (int i = 0; i < count * 3; i += 3) {
+        int start = runs[i + 1];
+        int length = runs[i + 2] - start;
+        int from = (runs[i] - top) * regionWidth + start - left;
+        int to = runs[i] * image.getWidth() + start;
+        for (int channel = 0; channel < 3; channel++) {
+          System.arraycopy(pixels[channel], from, masked[channel], to, length);
+        }
+      }
+    }
+  }
+}
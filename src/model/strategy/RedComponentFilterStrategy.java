@@ -0,0 +1,31 @@
+package model.strategy;
+
+import model.image.Image;
+
+/**
+ * Implements the FilterStrategy to extract the red component of an image.
+ */
+public class RedComponentFilterStrategy implements FilterStrategy {
+
+  /**
+   * Extracts the red component of the given image using the extractRedComponent method
+   * of the Image class.
+   *
+   * @param image The image whose red component is to be extracted.
+   * @return A new Image instance that only contains the red channel of the original image.
+   */
+  @Override
+  public Image apply(Image image) {
+    return image.extractRedComponent();
+  }
+
+  /**
+   * Returns true, as the red channel of each pixel is kept on its own.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isPerPixel() {
+    return true;
+  }
+}
@@ -1,21 +1,18 @@
 package model.strategy;
 
-import model.image.Image;
+import model.image.ColorMatrix;
 
 /**
  * Implements the FilterStrategy to convert an image to a sepia tone.
+ * The sepia tone is computed by the fixed-point ColorMatrix.SEPIA, so point operations
+ * that follow it can be folded into a single pass.
  */
-public class SepiaFilterStrategy implements FilterStrategy {
+public class SepiaFilterStrategy extends ColorMatrixStrategy {
 
   /**
-   * Applies a sepia tone filter to the given image. This method utilizes the
-   * toSepia method of the Image class to perform the conversion.
-   *
-   * @param image The image to which the sepia filter is to be applied.
-   * @return A new Image instance with a sepia tone applied.
+   * Constructs a SepiaFilterStrategy.
    */
-  @Override
-  public Image apply(Image image) {
-    return image.toSepia();
+  public SepiaFilterStrategy() {
+    super(ColorMatrix.SEPIA);
   }
 }
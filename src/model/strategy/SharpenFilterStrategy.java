@@ -18,4 +18,14 @@ public class SharpenFilterStrategy implements FilterStrategy {
   public Image apply(Image image) {
     return image.sharpen();
   }
+
+  /**
+   * Returns the radius of the 5x5 sharpening kernel.
+   *
+   * @return 2, as each sharpened pixel reads neighbors up to two pixels away
+   */
+  @Override
+  public int getHaloRadius() {
+    return 2;
+  }
 }
@@ -1,7 +1,6 @@
 package model.strategy;
 
 import model.image.Image;
-import model.image.Pixel;
 
 /**
  * A decorator for FilterStrategy that applies a given filter strategy to only a portion of the
@@ -30,28 +29,71 @@ public class SplitFilterDecorator implements FilterStrategy {
   /**
    * Applies the decorated filter strategy to the image up to the specified split point.
    * Pixels to the left of the split point are processed by the original strategy,
-   * while pixels to the right remain as in the original image.
+   * while pixels to the right remain as in the original image. Only the columns left of
+   * the split point, and the neighbors the filter reads for them, are filtered.
    *
    * @param originalImage The original image to which the filter strategy is to be applied.
    * @return A new Image instance with the filter applied up to the split point.
    */
   @Override
   public Image apply(Image originalImage) {
-    Image filteredImage = originalStrategy.apply(originalImage);
     int splitPoint = (int) (originalImage.getWidth() * (splitPercentage / 100.0));
 
-    Pixel[][] mixedPixels = new Pixel[originalImage.getHeight()][originalImage.getWidth()];
+    int width = originalImage.getWidth();
+    int height = originalImage.getHeight();
+    byte[] mixedRed = originalImage.getRedChannel().clone();
+    byte[] mixedGreen = originalImage.getGreenChannel().clone();
+    byte[] mixedBlue = originalImage.getBlueChannel().clone();
+    if (splitPoint == 0) {
+      return new Image(width, height, mixedRed, mixedGreen, mixedBlue);
+    }
 
-    for (int y = 0; y < originalImage.getHeight(); y++) {
-      for (int x = 0; x < originalImage.getWidth(); x++) {
-        if (x < splitPoint) {
-          mixedPixels[y][x] = filteredImage.getPixel(x, y);
-        } else {
-          mixedPixels[y][x] = originalImage.getPixel(x, y);
-        }
-      }
+    Image filteredImage = originalStrategy.applyToRegion(originalImage, 0, 0, splitPoint,
+            height);
+    byte[] filteredRed = filteredImage.getRedChannel();
+    byte[] filteredGreen = filteredImage.getGreenChannel();
+    byte[] filteredBlue = filteredImage.getBlueChannel();
+    for (int y = 0; y < height; y++) {
+      int rowStart = y * width;
+      int filteredStart = y * splitPoint;
+      System.arraycopy(filteredRed, filteredStart, mixedRed, rowStart, splitPoint);
+      System.arraycopy(filteredGreen, filteredStart, mixedGreen, rowStart, splitPoint);
+      System.arraycopy(filteredBlue, filteredStart, mixedBlue, rowStart, splitPoint);
     }
 
-    return new Image(mixedPixels);
+    return new Image(width, height, mixedRed, mixedGreen, mixedBlue);
+  }
+
+  /**
+   * Returns the neighborhood radius of the decorated filter strategy.
+   *
+   * @return the halo radius of the original strategy
+   */
+  @Override
+  public int getHaloRadius() {
+    return originalStrategy.getHaloRadius();
+  }
+
+  /**
+   * Prepares the decorated filter strategy for the whole image. The split point only
+   * depends on the image width, so parts made of whole rows keep the same split.
+   *
+   * @param image the whole image the filter will be applied to
+   * @return a split decorator around the prepared original strategy
+   */
+  @Override
+  public FilterStrategy prepare(Image image) {
+    return new SplitFilterDecorator(originalStrategy.prepare(image), splitPercentage);
+  }
+
+  /**
+   * Returns whether the decorated filter strategy works pixel by pixel. The split point only
+   * depends on the image width, so it stays in place on any band of whole rows.
+   *
+   * @return whether the original strategy works pixel by pixel
+   */
+  @Override
+  public boolean isPerPixel() {
+    return originalStrategy.isPerPixel();
   }
 }
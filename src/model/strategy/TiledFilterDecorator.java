@@ -0,0 +1,150 @@
+package model.strategy;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.image.Image;
+
+/**
+ * A decorator for FilterStrategy that applies a given filter strategy on several cores.
+ * The image is split into horizontal bands of whole rows which are filtered in parallel
+ * on a fork-join pool. Each band is extended by the halo radius of the filter, so that
+ * neighborhood filters such as blur and sharpen see the same neighbors as they would on the
+ * whole image, and the result is identical to applying the filter to the whole image.
+ */
+public class TiledFilterDecorator implements FilterStrategy {
+  private static final int MIN_BAND_ROWS = 32;
+  private static final int BANDS_PER_THREAD = 4;
+
+  private final FilterStrategy originalStrategy;
+  private final ForkJoinPool pool;
+
+  /**
+   * Constructs a TiledFilterDecorator with a given filter strategy and the pool to run it on.
+   * The parallelism of the pool decides how many bands are filtered at the same time.
+   *
+   * @param strategy The original filter strategy to be applied to the image.
+   * @param pool     The fork-join pool on which the bands are filtered.
+   */
+  public TiledFilterDecorator(FilterStrategy strategy, ForkJoinPool pool) {
+    this.originalStrategy = strategy;
+    this.pool = pool;
+  }
+
+  /**
+   * Applies the decorated filter strategy to the image, band by band in parallel.
+   * Images too small to be worth splitting are filtered directly.
+   *
+   * @param image The image to which the filter strategy is to be applied.
+   * @return A new Image instance with the filter applied.
+   */
+  @Override
+  public Image apply(Image image) {
+    FilterStrategy strategy = originalStrategy.prepare(image);
+    int height = image.getHeight();
+    int bands = Math.min(pool.getParallelism() * BANDS_PER_THREAD, height / MIN_BAND_ROWS);
+    if (bands <= 1) {
+      return strategy.apply(image);
+    }
+
+    int size = image.getWidth() * height;
+    byte[][] channels = {new byte[size], new byte[size], new byte[size]};
+    pool.invoke(new BandTask(strategy, image, channels, bands, 0, bands));
+    return new Image(image.getWidth(), height, channels[0], channels[1], channels[2]);
+  }
+
+  /**
+   * Returns the neighborhood radius of the decorated filter strategy.
+   *
+   * @return the halo radius of the original strategy
+   */
+  @Override
+  public int getHaloRadius() {
+    return originalStrategy.getHaloRadius();
+  }
+
+  /**
+   * Prepares the decorated filter strategy for the whole image, so that a region of it is
+   * filtered in parallel with the statistics of the whole image.
+   *
+   * @param image the whole image the filter will be applied to
+   * @return a tiled decorator around the prepared original strategy
+   */
+  @Override
+  public FilterStrategy prepare(Image image) {
+    return new TiledFilterDecorator(originalStrategy.prepare(image), pool);
+  }
+
+  /**
+   * Filters a range of bands, splitting the range in half until a single band remains.
+   */
+  private static class BandTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final FilterStrategy strategy;
+    private final Image source;
+    private final byte[][] channels;
+    private final int bands;
+    private final int firstBand;
+    private final int lastBand;
+
+    /**
+     * Constructs a task that filters bands firstBand (inclusive) to lastBand (exclusive).
+     *
+     * @param strategy  the prepared filter strategy to apply
+     * @param source    the whole source image
+     * @param channels  the red, green and blue arrays the filtered rows are written into
+     * @param bands     the total number of bands the image is split into
+     * @param firstBand the first band filtered by this task
+     * @param lastBand  the band after the last one filtered by this task
+     */
+    BandTask(FilterStrategy strategy, Image source, byte[][] channels, int bands,
+             int firstBand, int lastBand) {
+      this.strategy = strategy;
+      this.source = source;
+      this.channels = channels;
+      this.bands = bands;
+      this.firstBand = firstBand;
+      this.lastBand = lastBand;
+    }
+
+    /**
+     * Filters the bands of this task, or forks two tasks for each half of them.
+     */
+    @Override
+    protected void compute() {
+      if (lastBand - firstBand > 1) {
+        int middle = (firstBand + lastBand) >>> 1;
+        invokeAll(new BandTask(strategy, source, channels, bands, firstBand, middle),
+                new BandTask(strategy, source, channels, bands, middle, lastBand));
+        return;
+      }
+      int height = source.getHeight();
+      int width = source.getWidth();
+      int startRow = (int) ((long) height * firstBand / bands);
+      int endRow = (int) ((long) height * lastBand / bands);
+      int halo = strategy.getHaloRadius();
+      int haloStart = Math.max(0, startRow - halo);
+      int haloEnd = Math.min(height, endRow + halo);
+
+      Image band = strategy.apply(source.crop(0, haloStart, width, haloEnd - haloStart));
+
+      int from = (startRow - haloStart) * width;
+      int to = startRow * width;
+      int length = (endRow - startRow) * width;
+      System.arraycopy(band.getRedChannel(), from, channels[0], to, length);
+      System.arraycopy(band.getGreenChannel(), from, channels[1], to, length);
+      System.arraycopy(band.getBlueChannel(), from, channels[2], to, length);
+    }
+  }
+
+  /**
+   * Returns whether the decorated filter strategy works pixel by pixel.
+   *
+   * @return whether the original strategy works pixel by pixel
+   */
+  @Override
+  public boolean isPerPixel() {
+    return originalStrategy.isPerPixel();
+  }
+}
@@ -20,4 +20,14 @@ public class ValueFilterStrategy implements FilterStrategy {
   public Image apply(Image image) {
     return image.toValueComponent();
   }
+
+  /**
+   * Returns true, as the value component is computed from each pixel on its own.
+   *
+   * @return true
+   */
+  @Override
+  public boolean isPerPixel() {
+    return true;
+  }
 }
@@ -0,0 +1,78 @@
+package view;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents a view that talks to a remote client over a pair of streams, such as those of
+ * a socket. Commands are read one per line, and messages and errors are written one per
+ * line to the same output, errors prefixed with "ERROR: " as on the console. Every line is
+ * flushed as soon as it is written, so the client sees each reply right away.
+ */
+public class StreamView implements IView {
+
+  /**
+   * Reader for the commands sent by the client.
+   */
+  private final BufferedReader reader;
+
+  /**
+   * Writer for the replies sent to the client.
+   */
+  private final PrintWriter writer;
+
+  /**
+   * Initializes a new instance of the StreamView over the given streams.
+   *
+   * @param input  the stream the commands are read from.
+   * @param output the stream the messages and errors are written to.
+   */
+  public StreamView(InputStream input, OutputStream output) {
+    this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    this.writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), true);
+  }
+
+  /**
+   * Writes a message to the client.
+   *
+   * @param message Message to be displayed.
+   */
+  @Override
+  public void showMessage(String message) {
+    writer.println(message);
+  }
+
+  /**
+   * Reads the next command sent by the client. When the client closes its side of the
+   * connection, this returns "exit" so that the controller stops.
+   *
+   * @return The client's command input.
+   * @throws UncheckedIOException if the stream cannot be read.
+   */
+  @Override
+  public String getInput() {
+    try {
+      String line = reader.readLine();
+      return line == null ? "exit" : line.trim();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes an error message to the client.
+   *
+   * @param errorMessage Error message to be displayed.
+   */
+  @Override
+  public void showError(String errorMessage) {
+    writer.println("ERROR: " + errorMessage);
+  }
+}
@@ -0,0 +1,123 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import controller.BatchRunner;
+import controller.PPMParser;
+import model.ImageModel;
+import model.image.Image;
+import view.ConsoleView;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the BatchRunner class.
+ * These tests run a script template on a folder of input files.
+ */
+public class BatchRunnerTest {
+
+  private final ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+  private final PrintStream originalOut = System.out;
+  public TemporaryFolder testFolder = new TemporaryFolder();
+  private Path inputs;
+  private Path template;
+
+  /**
+   * Creates two input images, a file that is not a valid image, and a template that
+   * saves the red component and a flipped copy of each input.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Before
+  public void setUp() throws IOException {
+    System.setOut(new PrintStream(outContent));
+    testFolder.create();
+    inputs = testFolder.newFolder("inputs").toPath();
+    Files.copy(Paths.get("res/controllerTest/main_model_test_img.jpg"),
+            inputs.resolve("first.jpg"));
+    Files.copy(Paths.get("res/controllerTest/main_model_test_img_ppm.ppm"),
+            inputs.resolve("second.ppm"));
+    Files.write(inputs.resolve("broken.png"), List.of("not an image"));
+    Files.write(inputs.resolve("notes.txt"), List.of("not an input"));
+    template = testFolder.newFile("template.txt").toPath();
+    Files.write(template, List.of(
+            "# Applied to every input",
+            "load {input} img",
+            "red-component img red",
+            "horizontal-flip img flipped",
+            "save {output}/{name}-red.ppm red",
+            "save {output}/{name}-flipped.ppm flipped"));
+  }
+
+  /**
+   * Restores the standard output after each test.
+   */
+  @After
+  public void tearDown() {
+    System.setOut(originalOut);
+  }
+
+  /**
+   * Tests that every image file of a directory is processed, the outputs match running
+   * the same commands on one model, and the report records the failed file.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Test
+  public void testBatchOverDirectory() throws IOException {
+    Path output = testFolder.getRoot().toPath().resolve("output");
+    new BatchRunner(() -> new ImageModel(1), new ConsoleView(), 2)
+            .run(template.toString(), inputs.toString(), output.toString());
+
+    assertEquals("Batch finished: 2 succeeded, 1 failed." + System.lineSeparator(),
+            outContent.toString());
+    List<String> report = Files.readAllLines(output.resolve(BatchRunner.REPORT_FILE));
+    assertEquals(4, report.size());
+    assertEquals("file,status,detail", report.get(0));
+    assertTrue(report.get(1).startsWith(inputs.resolve("broken.png") + ",failure,"));
+    assertEquals(inputs.resolve("first.jpg") + ",success,", report.get(2));
+    assertEquals(inputs.resolve("second.ppm") + ",success,", report.get(3));
+
+    PPMParser parser = new PPMParser();
+    ImageModel model = new ImageModel();
+    model.addImage(parser.loadImage(inputs.resolve("second.ppm").toString()), "img");
+    model.horizontalFlip("img", "flipped");
+    Image expected = model.getImage("flipped");
+    Image actual = parser.loadImage(output.resolve("second-flipped.ppm").toString());
+    assertArrayEquals(expected.getRedChannel(), actual.getRedChannel());
+    assertArrayEquals(expected.getGreenChannel(), actual.getGreenChannel());
+    assertArrayEquals(expected.getBlueChannel(), actual.getBlueChannel());
+    assertTrue(Files.exists(output.resolve("first-red.ppm")));
+    assertFalse(Files.exists(output.resolve("broken-red.ppm")));
+  }
+
+  /**
+   * Tests that a glob selects the input files by their names.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Test
+  public void testBatchOverGlob() throws IOException {
+    Path output = testFolder.getRoot().toPath().resolve("glob");
+    new BatchRunner(() -> new ImageModel(1), new ConsoleView(), 1)
+            .run(template.toString(), inputs + "/*.{jpg,ppm}", output.toString());
+
+    assertEquals("Batch finished: 2 succeeded, 0 failed." + System.lineSeparator(),
+            outContent.toString());
+    assertEquals(3, Files.readAllLines(output.resolve(BatchRunner.REPORT_FILE)).size());
+    assertTrue(Files.exists(output.resolve("first-flipped.ppm")));
+    assertTrue(Files.exists(output.resolve("second-red.ppm")));
+  }
+}
@@ -136,4 +136,47 @@ public class HaarWaveletTransformTest {
     assertEquals(expected50PercentThreshold, actual50PercentThreshold, 0.001);
     assertEquals(expected80PercentThreshold, actual80PercentThreshold, 0.001);
   }
+
+  /**
+   * Tests that a matrix which is neither square nor a power of two in size is restored
+   * by the inverse transform, up to the rounding of the coefficients.
+   */
+  @Test
+  public void testHaarRoundTripNonSquare() {
+    hwt = new HaarWaveletTransform();
+    double[][] input = {
+            {10.0, 20.0, 30.0},
+            {40.0, 50.0, 60.0},
+            {70.0, 80.0, 90.0},
+            {100.0, 110.0, 120.0},
+            {130.0, 140.0, 150.0}
+    };
+
+    double[][] transformed = hwt.haar(input);
+    assertEquals(8, transformed.length);
+    assertEquals(8, transformed[0].length);
+
+    double[][] result = hwt.invHaar(transformed, input.length, input[0].length);
+    assertEquals(input.length, result.length);
+    for (int i = 0; i < input.length; i++) {
+      assertArrayEquals(input[i], result[i], 0.1);
+    }
+  }
+
+  /**
+   * Tests that the threshold counts each magnitude once, also for values that are not
+   * multiples of 0.01.
+   */
+  @Test
+  public void testCalThresholdDistinctMagnitudes() {
+    hwt = new HaarWaveletTransform();
+
+    double[][] redChannel = {{0.125, -0.125}, {0.125, 0.125}};
+    double[][] greenChannel = {{-0.25, 0.25}, {0.25, 0.25}};
+    double[][] blueChannel = {{0.375, 0.375}, {-0.375, 0.5}};
+
+    assertEquals(0.125, hwt.calThreshold(redChannel, greenChannel, blueChannel, 0.0), 0.0);
+    assertEquals(0.375, hwt.calThreshold(redChannel, greenChannel, blueChannel, 50.0), 0.0);
+    assertEquals(0.5, hwt.calThreshold(redChannel, greenChannel, blueChannel, 99.0), 0.0);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+import org.junit.Test;
+
+import controller.HistogramRenderer;
+import model.image.Image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the HistogramRenderer class.
+ */
+public class HistogramRendererTest {
+
+  /**
+   * Test that the histogram image is 256 by 256 pixels, white with a light gray grid every
+   * 16 pixels, and that the given histograms are left unchanged.
+   */
+  @Test
+  public void testBackgroundAndGrid() {
+    int[][] histograms = new int[3][256];
+    histograms[0][0] = 7;
+    int[][] copy = {histograms[0].clone(), histograms[1].clone(), histograms[2].clone()};
+
+    Image image = HistogramRenderer.createHistogramImage(histograms);
+    assertEquals(256, image.getWidth());
+    assertEquals(256, image.getHeight());
+    assertEquals(0xffffff, image.getRGB(8, 8));
+    assertEquals(0xc0c0c0, image.getRGB(16, 8));
+    assertEquals(0xc0c0c0, image.getRGB(8, 240));
+    for (int channel = 0; channel < 3; channel++) {
+      assertArrayEquals(copy[channel], histograms[channel]);
+    }
+  }
+
+  /**
+   * Test that the lines are scaled to the largest frequency of all channels, drawn in red,
+   * green and blue in that order, and stay in range for counts of large images.
+   */
+  @Test
+  public void testLines() {
+    int[][] histograms = new int[3][256];
+    histograms[0][0] = 100_000_000;
+    histograms[1][100] = 50_000_000;
+    histograms[2][200] = 100_000_000;
+    histograms[2][201] = 100_000_000;
+
+    Image image = HistogramRenderer.createHistogramImage(histograms);
+    assertEquals(0xff0000, image.getRGB(0, 1));
+    assertEquals(0x00ff00, image.getRGB(100, 256 - 127));
+    assertEquals(0x0000ff, image.getRGB(200, 1));
+    assertEquals(0x0000ff, image.getRGB(201, 1));
+    // Zero counts are drawn at y = 256, just below the image.
+    assertEquals(0xffffff, image.getRGB(50, 255));
+  }
+
+  /**
+   * Test that histograms with no counts, such as those of an empty image, can be drawn.
+   */
+  @Test
+  public void testEmptyHistograms() {
+    Image image = HistogramRenderer.createHistogramImage(new int[3][256]);
+    assertEquals(0xffffff, image.getRGB(8, 255));
+  }
+}
@@ -7,15 +7,22 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import controller.CommandMetrics;
 import controller.ImageController;
 import model.ImageModel;
 import model.image.Image;
 import model.image.Pixel;
 import view.ConsoleView;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -127,6 +134,47 @@ public class ImageControllerMainModelTest {
     System.setIn(System.in);
   }
 
+  /**
+   * Tests that the binary option of the save command writes a P6 file that loads back
+   * with the same pixels.
+   */
+  @Test
+  public void testControllerSaveBinaryPPMMainModel() throws IOException {
+    ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(outContent));
+    String allInputData = String.join(System.lineSeparator(),
+            "load res/controllerTest/main_model_test_img_ppm.ppm main_model_test_img_ppm",
+            "save res/controllerTest/main_model_test_img_p6.ppm main_model_test_img_ppm binary",
+            "load res/controllerTest/main_model_test_img_p6.ppm main_model_test_img_p6"
+    );
+    System.setIn(new ByteArrayInputStream(allInputData.getBytes()));
+    ConsoleView view = new ConsoleView();
+    ImageController controller = new ImageController(imageModel, view);
+    try {
+      controller.execute();
+    } catch (NoSuchElementException ignored) {
+    }
+    String expectedOutput = String.join(System.lineSeparator(),
+            "load operation successful.",
+            "save operation successful.",
+            "load operation successful.", "");
+    assertEquals(expectedOutput, outContent.toString());
+
+    byte[] savedBytes = Files.readAllBytes(
+            Paths.get("res/controllerTest/main_model_test_img_p6.ppm"));
+    assertEquals('P', savedBytes[0]);
+    assertEquals('6', savedBytes[1]);
+    Image original = imageModel.getImage("main_model_test_img_ppm");
+    Image binary = imageModel.getImage("main_model_test_img_p6");
+    for (int y = 0; y < original.getHeight(); y++) {
+      for (int x = 0; x < original.getWidth(); x++) {
+        assertEquals(original.getPixel(x, y), binary.getPixel(x, y));
+      }
+    }
+    System.setOut(System.out);
+    System.setIn(System.in);
+  }
+
   /**
    * Tests the blue component method call of the ImageController
    * class using execute.
@@ -1306,4 +1354,107 @@ public class ImageControllerMainModelTest {
     System.setOut(System.out);
     System.setIn(System.in);
   }
+
+  /**
+   * Tests that running a script with independent commands on several threads gives the
+   * same messages and images as running it serially, including names that are reused,
+   * a file that is saved and loaded again, and commands that fail.
+   */
+  @Test
+  public void testParallelScriptMatchesSerial() throws IOException {
+    Path directory = Files.createTempDirectory("parallel-script");
+    String saved = directory.resolve("saved.png").toString();
+    Path script = directory.resolve("script.txt");
+    Files.write(script, List.of(
+            "load res/controllerTest/main_model_test_img.jpg img",
+            "red-component img r",
+            "blur img b",
+            "sepia img s",
+            "rgb-split img sr sg sb",
+            "brighten 20 b b",
+            "horizontal-flip s img",
+            "save " + saved + " b",
+            "sharpen missing x",
+            "load " + saved + " reloaded",
+            "unknown-command img",
+            "luma-component img l",
+            "rgb-combine combined r sg sb",
+            "vertical-flip r b"));
+
+    String[] names = {"img", "r", "b", "s", "sr", "sg", "sb", "reloaded", "l", "combined"};
+    String[] outputs = new String[2];
+    ImageModel[] models = new ImageModel[2];
+    PrintStream originalErr = System.err;
+    try {
+      for (int run = 0; run < 2; run++) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(output);
+        System.setOut(stream);
+        System.setErr(stream);
+        models[run] = new ImageModel();
+        new ImageController(models[run], new ConsoleView(), run == 0 ? 1 : 4)
+                .runScript(script.toString());
+        outputs[run] = output.toString();
+      }
+    } finally {
+      System.setErr(originalErr);
+    }
+
+    assertEquals(outputs[0], outputs[1]);
+    assertTrue(outputs[0].contains("Unknown command unknown-command"));
+    for (String name : names) {
+      Image serial = models[0].getImage(name);
+      Image parallel = models[1].getImage(name);
+      assertEquals(name, serial.getWidth(), parallel.getWidth());
+      assertArrayEquals(name, serial.getRedChannel(), parallel.getRedChannel());
+      assertArrayEquals(name, serial.getGreenChannel(), parallel.getGreenChannel());
+      assertArrayEquals(name, serial.getBlueChannel(), parallel.getBlueChannel());
+    }
+  }
+
+  /**
+   * Tests that every known command is recorded in the metrics, that the metrics command
+   * shows one line per command name, and that the metrics can be written as CSV and JSON.
+   */
+  @Test
+  public void testCommandMetrics() throws IOException {
+    ByteArrayOutputStream outContent = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(outContent));
+    String allInputData = String.join(System.lineSeparator(),
+            "load res/controllerTest/main_model_test_img.jpg img",
+            "blur img img-blur",
+            "blur img-blur img-blur2",
+            "sharpen missing x",
+            "metrics");
+    System.setIn(new ByteArrayInputStream(allInputData.getBytes()));
+    CommandMetrics metrics = new CommandMetrics();
+    ImageController controller = new ImageController(imageModel, new ConsoleView(), 1, metrics);
+    try {
+      controller.execute();
+    } catch (NoSuchElementException ignored) {
+    }
+
+    assertEquals(2, metrics.getCount("blur"));
+    assertEquals(1, metrics.getCount("sharpen"));
+    assertEquals(0, metrics.getCount("metrics"));
+    List<String> summary = metrics.summary();
+    assertEquals(3, summary.size());
+    Image image = imageModel.getImage("img");
+    assertTrue(summary.get(0), summary.get(0).startsWith("blur: 2 runs, 0 failed, wall ms p50 "));
+    assertTrue(summary.get(0), summary.get(0).endsWith(
+            "largest " + image.getWidth() + "x" + image.getHeight()));
+    assertTrue(summary.get(2), summary.get(2).startsWith("sharpen: 1 runs, 1 failed"));
+    assertTrue(outContent.toString().contains(summary.get(2) + System.lineSeparator()
+            + "metrics operation successful."));
+
+    assertFalse(metrics.toCsv().contains("\r"));
+    String[] csv = metrics.toCsv().split("\n");
+    assertEquals("command,metric,count,failures,sum,min,max,mean,p50,p90,p99", csv[0]);
+    assertEquals(1 + 3 * 5, csv.length);
+    assertTrue(csv[4], csv[4].startsWith("blur,width,2,0," + 2 * image.getWidth() + ","));
+    String json = metrics.toJson();
+    assertTrue(json, json.contains("\"load\": {\"count\": 1, \"failures\": 0"));
+    assertTrue(json, json.contains("\"height\": {\"count\": 2, \"sum\": "
+            + 2 * image.getHeight()));
+  }
 }
@@ -362,6 +362,30 @@ public class ImageControllerTest {
     assertTrue(model.getLog().contains("RGB Combine method called."));
   }
 
+  /**
+   * Tests that a filter followed by "mask" and a mask image name calls the masked filter
+   * method of the model, for a plain filter and for levels adjustment.
+   */
+  @Test
+  public void testControllerMaskedFilterMethodMock() {
+    String inputData = "blur image-name dest-image-name mask mask-name\n"
+            + "levels-adjust 10 100 200 image-name dest-image-name mask mask-name";
+    ByteArrayInputStream inContent = new ByteArrayInputStream(inputData.getBytes());
+    System.setIn(inContent);
+    ConsoleView view = new ConsoleView();
+    MockModel model = new MockModel();
+    ImageController controller = new ImageController(model, view);
+    try {
+      controller.execute();
+    } catch (NoSuchElementException ignored) {
+    }
+    String expectedOutput = "blur operation successful." + System.lineSeparator()
+            + "levels-adjust operation successful." + System.lineSeparator();
+    assertEquals(expectedOutput, outContent.toString());
+    assertEquals("Masked filter method called.Masked filter method called.",
+            model.getLog());
+  }
+
   /**
    * Tests the Histogram method call of the ImageController
    * class using execute.
@@ -406,6 +430,26 @@ public class ImageControllerTest {
     assertTrue(model.getLog().contains("Compress method called."));
   }
 
+  /**
+   * Tests that the block option of the compress command is passed to the model.
+   */
+  @Test
+  public void testControllerCompressBlockMethodMock() {
+    String inputData = "compress 80 image-name dest-image-name block 256";
+    ByteArrayInputStream inContent = new ByteArrayInputStream(inputData.getBytes());
+    System.setIn(inContent);
+    ConsoleView view = new ConsoleView();
+    MockModel model = new MockModel();
+    ImageController controller = new ImageController(model, view);
+    try {
+      controller.execute();
+    } catch (NoSuchElementException ignored) {
+    }
+    String expectedOutput = "compress operation successful.";
+    assertEquals(expectedOutput + System.lineSeparator(), outContent.toString());
+    assertTrue(model.getLog().contains("Compress method called with block size 256."));
+  }
+
   /**
    * Tests the RGB Color Correct method call of the ImageController
    * class using execute.
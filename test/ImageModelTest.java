@@ -2,14 +2,29 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import model.ImageModel;
 import model.image.Image;
 import model.image.Pixel;
+import model.strategy.BlurFilterStrategy;
+import model.strategy.ColorCorrectFilterStrategy;
+import model.strategy.FilterStrategy;
+import model.strategy.MaskedFilterDecorator;
+import model.strategy.SharpenFilterStrategy;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -1065,12 +1080,12 @@ public class ImageModelTest {
     Image compressedImage = imageModel.getImage("compressTestImage");
 
     Pixel[][] expectedPixelData = new Pixel[][]{
-            {new Pixel(105, 155, 225), new Pixel(105, 155, 225),
-                    new Pixel(125, 175, 240),
-                    new Pixel(125, 175, 240)},
-            {new Pixel(145, 195, 225), new Pixel(145, 195, 225),
-                    new Pixel(165, 215, 240),
-                    new Pixel(165, 215, 240)}
+            {new Pixel(125, 175, 225), new Pixel(125, 175, 225),
+                    new Pixel(145, 195, 240),
+                    new Pixel(145, 195, 240)},
+            {new Pixel(125, 175, 225), new Pixel(125, 175, 225),
+                    new Pixel(145, 195, 240),
+                    new Pixel(145, 195, 240)}
     };
 
     for (int y = 0; y < compressedImage.getHeight(); y++) {
@@ -1872,4 +1887,367 @@ public class ImageModelTest {
       }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Builds a model holding a 37x23 image with varied colors under the name "src".
+   */
+  private static ImageModel modelWithSource(boolean lazy) throws IOException {
+    return modelWithSource(new ImageModel(1, lazy));
+  }
+
+  /**
+   * Adds a 37x23 image with varied colors to the given model under the name "src".
+   */
+  private static ImageModel modelWithSource(ImageModel model) throws IOException {
+    int width = 37;
+    int height = 23;
+    byte[] red = new byte[width * height];
+    byte[] green = new byte[width * height];
+    byte[] blue = new byte[width * height];
+    for (int i = 0; i < red.length; i++) {
+      red[i] = (byte) (i * 7);
+      green[i] = (byte) (i * 13 + 40);
+      blue[i] = (byte) (255 - i * 3);
+    }
+    model.addImage(new Image(width, height, red, green, blue), "src");
+    return model;
+  }
+
+  /**
+   * Applies a chain of per-pixel operations, with a split and a neighborhood filter in between.
+   */
+  private static void runPipeline(ImageModel model) throws IOException {
+    model.brightenCommand(30, "src", "a");
+    model.sepia("a", "b", Optional.empty());
+    model.adjustLevels("b", "c", 20, 100, 230, Optional.empty());
+    model.lumaComponent("c", "d", Optional.of(40.0));
+    model.redComponent("a", "e");
+    model.blur("d", "f", Optional.empty());
+    model.brightenCommand(-10, "f", "g");
+    model.intensityComponent("g", "h", Optional.empty());
+  }
+
+  private static void assertSameImage(Image expected, Image actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertArrayEquals(expected.getRedChannel(), actual.getRedChannel());
+    assertArrayEquals(expected.getGreenChannel(), actual.getGreenChannel());
+    assertArrayEquals(expected.getBlueChannel(), actual.getBlueChannel());
+  }
+
+  /**
+   * Test that a lazy model produces the same images as an eager one.
+   */
+  @Test
+  public void testLazyPipelineMatchesEager() throws IOException {
+    ImageModel eager = modelWithSource(false);
+    ImageModel lazy = modelWithSource(true);
+    runPipeline(eager);
+    runPipeline(lazy);
+    for (String name : new String[]{"h", "e", "c", "a", "g"}) {
+      assertSameImage(eager.getImage(name), lazy.getImage(name));
+    }
+  }
+
+  /**
+   * Test that a deferred image keeps its source even if the source name is replaced.
+   */
+  @Test
+  public void testLazyImageKeepsReplacedSource() throws IOException {
+    ImageModel eager = modelWithSource(false);
+    ImageModel lazy = modelWithSource(true);
+    eager.brightenCommand(50, "src", "bright");
+    lazy.brightenCommand(50, "src", "bright");
+    lazy.brightenCommand(-100, "src", "src");
+    lazy.sepia("src", "src", Optional.empty());
+    assertSameImage(eager.getImage("bright"), lazy.getImage("bright"));
+  }
+
+  /**
+   * Test that a lazy model still reports a missing source and invalid levels right away.
+   */
+  @Test
+  public void testLazyErrorsAreImmediate() throws IOException {
+    ImageModel lazy = modelWithSource(true);
+    try {
+      lazy.brightenCommand(10, "missing", "dest");
+      fail("An exception should occur.");
+    } catch (IOException e) {
+      assertEquals("Image not found.", e.getMessage());
+    }
+    try {
+      lazy.adjustLevels("src", "dest", 200, 100, 50, Optional.empty());
+      fail("An exception should occur.");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Level values must be in ascending order (b <= m <= w).", e.getMessage());
+    }
+  }
+
+  /**
+   * Test that commands run from several threads on one model give the same images as
+   * running them serially, including a deferred image read by all threads at once.
+   */
+  @Test
+  public void testConcurrentCommands() throws Exception {
+    ImageModel serial = modelWithSource(true);
+    ImageModel shared = modelWithSource(true);
+    serial.brightenCommand(25, "src", "shared");
+    shared.brightenCommand(25, "src", "shared");
+    int threads = 8;
+    for (int i = 0; i < threads; i++) {
+      serial.sepia("shared", "s" + i, Optional.empty());
+      serial.brightenCommand(i, "s" + i, "b" + i);
+      serial.blur("b" + i, "r" + i, Optional.empty());
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Image>> results = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      int index = i;
+      results.add(executor.submit(() -> {
+        shared.sepia("shared", "s" + index, Optional.empty());
+        shared.brightenCommand(index, "s" + index, "b" + index);
+        shared.blur("b" + index, "r" + index, Optional.empty());
+        return shared.getImage("r" + index);
+      }));
+    }
+    for (int i = 0; i < threads; i++) {
+      assertSameImage(serial.getImage("r" + i), results.get(i).get());
+    }
+    executor.shutdown();
+    assertSameImage(serial.getImage("shared"), shared.getImage("shared"));
+  }
+
+  /**
+   * Test that a model with a small memory budget spills images to disk and reads them back
+   * unchanged.
+   */
+  @Test
+  public void testMemoryBudgetSpillsAndReloads() throws IOException {
+    ImageModel unbounded = modelWithSource(false);
+    ImageModel bounded = modelWithSource(new ImageModel(1, false, 2 * 37 * 23 * 3));
+    runPipeline(unbounded);
+    runPipeline(bounded);
+
+    assertEquals(0, unbounded.getStoreSpills());
+    assertTrue(bounded.getStoreSpills() > 0);
+    long misses = bounded.getStoreMisses();
+    for (String name : new String[]{"src", "a", "b", "c", "d", "e", "f", "g", "h"}) {
+      assertSameImage(unbounded.getImage(name), bounded.getImage(name));
+    }
+    assertTrue(bounded.getStoreMisses() > misses);
+    assertTrue(bounded.getStoreHits() > 0);
+  }
+
+  /**
+   * Test that flipped views count towards the memory budget as the arrays they share with
+   * their source, and that spilling a view writes its pixels without copying them into
+   * arrays of its own first.
+   */
+  @Test
+  public void testMemoryBudgetCountsViewsOnce() throws IOException {
+    long size = 37 * 23 * 3;
+    ImageModel model = modelWithSource(new ImageModel(1, false, 2 * size));
+    Image source = model.getImage("src");
+    assertEquals(size, model.getStoreResidentBytes());
+    model.horizontalFlip("src", "a");
+    model.verticalFlip("a", "b");
+    assertEquals(size, model.getStoreResidentBytes());
+
+    Image view = model.getImage("b");
+    assertTrue(view.isView());
+    model.brightenCommand(10, "src", "c");
+    model.brightenCommand(20, "src", "d");
+    assertTrue(model.getStoreSpills() >= 3);
+    assertTrue(view.isView());
+    assertEquals(2 * size, model.getStoreResidentBytes());
+
+    Image reloaded = model.getImage("b");
+    assertFalse(reloaded.isView());
+    for (int y = 0; y < 23; y++) {
+      for (int x = 0; x < 37; x++) {
+        assertEquals(source.getRGB(36 - x, 22 - y), reloaded.getRGB(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test that channel arrays shared by component, split and combined images are counted
+   * once, and that the source of a deferred image is counted until it is computed.
+   */
+  @Test
+  public void testMemoryBudgetCountsSharedArraysOnce() throws IOException {
+    ImageModel model = modelWithSource(false);
+    model.redComponent("src", "r");
+    model.rgbSplit("src", "red", "green", "blue");
+    model.rgbCombine("combined", "red", "green", "blue");
+    String[] names = {"src", "r", "red", "green", "blue", "combined"};
+    Map<byte[], Boolean> arrays = new IdentityHashMap<>();
+    long total = 0;
+    for (String name : names) {
+      Image image = model.getImage(name);
+      total += image.getStorageBytes();
+      for (byte[] array : image.getStorage()) {
+        arrays.put(array, true);
+      }
+    }
+    long distinct = 0;
+    for (byte[] array : arrays.keySet()) {
+      distinct += array.length;
+    }
+    assertEquals(distinct, model.getStoreResidentBytes());
+    assertTrue(distinct < total);
+
+    long size = 37 * 23 * 3;
+    ImageModel lazy = modelWithSource(new ImageModel(1, true));
+    lazy.brightenCommand(10, "src", "a");
+    lazy.addImage(new Image(1, 1), "src");
+    assertEquals(size + 3, lazy.getStoreResidentBytes());
+    lazy.getImage("a");
+    lazy.addImage(new Image(1, 1), "a");
+    assertEquals(6, lazy.getStoreResidentBytes());
+  }
+
+  /**
+   * Test that split previews of neighborhood and whole-image filters, which now only
+   * filter the columns left of the split and their neighbors, match the whole filtered
+   * image left of the split and the source right of it, on a parallel model.
+   */
+  @Test
+  public void testSplitPreviewFiltersOnlyLeftColumns() throws IOException {
+    ImageModel parallel = new ImageModel(4, false);
+    Image source = new Image(61, 100);
+    for (int y = 0; y < 100; y++) {
+      for (int x = 0; x < 61; x++) {
+        source.setPixel(x, y, new Pixel((x * 13 + y) % 256, (y * 5) % 256, (x * y) % 256));
+      }
+    }
+    parallel.addImage(source, "src");
+    parallel.sharpen("src", "sharpened", Optional.empty());
+    parallel.colorCorrect("src", "corrected", Optional.empty());
+
+    for (double percentage : new double[]{0, 12.5, 50, 99}) {
+      int splitPoint = (int) (61 * percentage / 100);
+      parallel.sharpen("src", "sharpenedSplit", Optional.of(percentage));
+      parallel.colorCorrect("src", "correctedSplit", Optional.of(percentage));
+      Image sharpened = parallel.getImage("sharpened");
+      Image corrected = parallel.getImage("corrected");
+      Image sharpenedSplit = parallel.getImage("sharpenedSplit");
+      Image correctedSplit = parallel.getImage("correctedSplit");
+      for (int y = 0; y < 100; y++) {
+        for (int x = 0; x < 61; x++) {
+          boolean left = x < splitPoint;
+          assertEquals((left ? sharpened : source).getPixel(x, y),
+                  sharpenedSplit.getPixel(x, y));
+          assertEquals((left ? corrected : source).getPixel(x, y),
+                  correctedSplit.getPixel(x, y));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that a masked filter changes only the pixels selected by the mask image, to the
+   * values they have in the whole filtered image, on a serial and a parallel model.
+   */
+  @Test
+  public void testApplyMasked() throws IOException {
+    Image source = new Image(61, 100);
+    Image maskImage = new Image(61, 100);
+    for (int y = 0; y < 100; y++) {
+      for (int x = 0; x < 61; x++) {
+        source.setPixel(x, y, new Pixel((x * 13 + y) % 256, (y * 5) % 256, (x * y) % 256));
+        boolean selected = (y >= 10 && y < 20 && x >= 40 && x < 50)
+                || (y >= 60 && y < 90 && (x < 3 || x == 30));
+        maskImage.setPixel(x, y, selected ? new Pixel(255, 255, 255) : new Pixel(0, 0, 0));
+      }
+    }
+    for (ImageModel model : new ImageModel[]{new ImageModel(1), new ImageModel(4)}) {
+      model.addImage(source, "src");
+      model.addImage(maskImage, "mask");
+      model.sharpen("src", "sharpened", Optional.empty());
+      model.colorCorrect("src", "corrected", Optional.empty());
+      model.applyMasked("src", "mask", "sharpenedMasked", new SharpenFilterStrategy());
+      model.applyMasked("src", "mask", "correctedMasked", new ColorCorrectFilterStrategy());
+
+      Image sharpened = model.getImage("sharpened");
+      Image corrected = model.getImage("corrected");
+      Image sharpenedMasked = model.getImage("sharpenedMasked");
+      Image correctedMasked = model.getImage("correctedMasked");
+      for (int y = 0; y < 100; y++) {
+        for (int x = 0; x < 61; x++) {
+          boolean selected = maskImage.getRGB(x, y) != 0;
+          assertEquals((selected ? sharpened : source).getPixel(x, y),
+                  sharpenedMasked.getPixel(x, y));
+          assertEquals((selected ? corrected : source).getPixel(x, y),
+                  correctedMasked.getPixel(x, y));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test that a diagonal stroke and two far apart spots are filtered in small regions around
+   * the selected pixels rather than in rectangles spanning the image, and still get the
+   * values of the whole filtered image.
+   */
+  @Test
+  public void testApplyMaskedDiagonal() {
+    int size = 400;
+    Image source = new Image(size, size);
+    Image maskImage = new Image(size, size);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        source.setPixel(x, y, new Pixel((x * 7 + y) % 256, (y * 3) % 256, (x ^ y) % 256));
+        boolean selected = Math.abs(x - y) <= 1
+                || (y >= 20 && y < 25 && (x < 5 || x >= size - 5));
+        maskImage.setPixel(x, y, selected ? new Pixel(255, 255, 255) : new Pixel(0, 0, 0));
+      }
+    }
+    long[] filteredArea = new long[1];
+    FilterStrategy blur = new BlurFilterStrategy();
+    FilterStrategy countingBlur = new FilterStrategy() {
+      @Override
+      public Image apply(Image image) {
+        filteredArea[0] += (long) image.getWidth() * image.getHeight();
+        return blur.apply(image);
+      }
+
+      @Override
+      public int getHaloRadius() {
+        return blur.getHaloRadius();
+      }
+    };
+
+    Image blurred = blur.apply(source);
+    Image masked = new MaskedFilterDecorator(countingBlur, maskImage.toMask()).apply(source);
+    long selected = maskImage.toMask().getSelectedCount();
+    assertTrue("filtered " + filteredArea[0] + " pixels for " + selected + " selected",
+            filteredArea[0] < 10 * selected);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        boolean isSelected = maskImage.getRGB(x, y) != 0;
+        assertEquals((isSelected ? blurred : source).getPixel(x, y), masked.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test that a masked filter with a missing mask image throws an IOException.
+   */
+  @Test(expected = IOException.class)
+  public void testApplyMaskedMaskNotFound() throws IOException {
+    imageModel.addImage(new Image(pixelData), "TestImage");
+    imageModel.applyMasked("TestImage", "noMask", "dest", new BlurFilterStrategy());
+  }
+
+  /**
+   * Test that a mask image of another size than the source image is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testApplyMaskedSizeMismatch() throws IOException {
+    imageModel.addImage(new Image(pixelData), "TestImage");
+    imageModel.addImage(new Image(1, 1), "mask");
+    imageModel.applyMasked("TestImage", "mask", "dest", new BlurFilterStrategy());
+  }
+}
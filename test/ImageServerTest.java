@@ -0,0 +1,162 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import controller.ImageServer;
+import model.ImageModel;
+import model.image.Image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for the ImageServer class.
+ * These tests talk to a server on a free local port through sockets.
+ */
+public class ImageServerTest {
+
+  private ImageModel model;
+  private ImageServer server;
+  private Thread serverThread;
+
+  /**
+   * Starts a server on a free port.
+   *
+   * @throws IOException if the server socket cannot be opened
+   */
+  @Before
+  public void setUp() throws IOException {
+    model = new ImageModel();
+    server = new ImageServer(model, 0);
+    serverThread = new Thread(() -> {
+      try {
+        server.serve();
+      } catch (IOException ignored) {
+      }
+    });
+    serverThread.start();
+  }
+
+  /**
+   * Stops the server.
+   *
+   * @throws Exception if the server cannot be closed
+   */
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+    serverThread.join(5000);
+  }
+
+  /**
+   * Tests that a client gets one reply per command, with errors on the same stream.
+   *
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testCommandReplies() throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      BufferedReader in = new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+
+      out.println("load res/controllerTest/main_model_test_img.jpg img");
+      assertEquals("load operation successful.", in.readLine());
+      out.println("sepia img img-sepia");
+      assertEquals("sepia operation successful.", in.readLine());
+      out.println("blur missing x");
+      assertEquals("ERROR: blur operation failed.", in.readLine());
+      out.println("exit");
+      assertNull(in.readLine());
+    }
+  }
+
+  /**
+   * Tests that images loaded by one client stay available to other clients, including
+   * after the first client has disconnected.
+   *
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testImagesAreSharedAcrossClients() throws IOException {
+    try (Socket first = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      BufferedReader firstIn = new BufferedReader(
+              new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8));
+      PrintWriter firstOut = new PrintWriter(first.getOutputStream(), true);
+      firstOut.println("load res/controllerTest/main_model_test_img.jpg shared");
+      assertEquals("load operation successful.", firstIn.readLine());
+    }
+    try (Socket second = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      BufferedReader secondIn = new BufferedReader(
+              new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8));
+      PrintWriter secondOut = new PrintWriter(second.getOutputStream(), true);
+      secondOut.println("red-component shared shared-red");
+      assertEquals("red-component operation successful.", secondIn.readLine());
+    }
+    Image red = model.getImage("shared-red");
+    Image source = model.getImage("shared");
+    assertEquals(source.getWidth(), red.getWidth());
+    assertEquals(source.getPixel(0, 0).getRed(), red.getPixel(0, 0).getRed());
+    assertEquals(0, red.getPixel(0, 0).getGreen());
+  }
+
+  /**
+   * Tests that clients cannot load, save or run files outside the working directory of the
+   * server, by absolute path or through "..".
+   *
+   * @throws IOException if the connection fails
+   */
+  @Test
+  public void testPathsOutsideRootAreRefused() throws IOException {
+    Path outside = Files.createTempDirectory("image-server-test");
+    Path escaped = outside.resolve("escaped.ppm");
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      BufferedReader in = new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+
+      out.println("load res/controllerTest/main_model_test_img.jpg img");
+      assertEquals("load operation successful.", in.readLine());
+      out.println("save " + escaped.toAbsolutePath() + " img");
+      assertEquals("ERROR: save operation failed.", lastReplyLine(in));
+      out.println("save res/../../escaped.ppm img");
+      assertEquals("ERROR: save operation failed.", lastReplyLine(in));
+      out.println("load ../main_model_test_img.jpg other");
+      assertEquals("ERROR: load operation failed.", lastReplyLine(in));
+      out.println("run " + escaped.toAbsolutePath());
+      assertEquals("ERROR: run operation failed.", lastReplyLine(in));
+      out.println("exit");
+      assertNull(in.readLine());
+    } finally {
+      assertFalse(Files.exists(escaped));
+      Files.delete(outside);
+    }
+  }
+
+  /**
+   * Reads the lines of a reply up to its last one, which ends the reply.
+   *
+   * @param in the reader of the connection
+   * @return the last line of the reply
+   * @throws IOException if the connection fails
+   */
+  private static String lastReplyLine(BufferedReader in) throws IOException {
+    String line = in.readLine();
+    while (line != null && !line.endsWith("operation successful.")
+            && !line.endsWith("operation failed.")) {
+      line = in.readLine();
+    }
+    return line;
+  }
+}
@@ -2,12 +2,20 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
+import model.image.ChannelLookupTable;
+import model.image.ColorMatrix;
 import model.image.Image;
+import model.image.Mask;
 import model.image.Pixel;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * JUnit test class for the Image class.
@@ -584,12 +592,12 @@ public class ImageTest {
     Image compressedImage = img.compress(percentage);
 
     Pixel[][] expectedPixelData = new Pixel[][]{
-            {new Pixel(105, 155, 225), new Pixel(105, 155, 225),
-                    new Pixel(125, 175, 240),
-                    new Pixel(125, 175, 240)},
-            {new Pixel(145, 195, 225), new Pixel(145, 195, 225),
-                    new Pixel(165, 215, 240),
-                    new Pixel(165, 215, 240)}
+            {new Pixel(125, 175, 225), new Pixel(125, 175, 225),
+                    new Pixel(145, 195, 240),
+                    new Pixel(145, 195, 240)},
+            {new Pixel(125, 175, 225), new Pixel(125, 175, 225),
+                    new Pixel(145, 195, 240),
+                    new Pixel(145, 195, 240)}
     };
 
     for (int y = 0; y < compressedImage.getHeight(); y++) {
@@ -697,4 +705,368 @@ public class ImageTest {
       }
     }
   }
+
+  /**
+   * Test that writing to a split channel image does not change the source image
+   * or the other channel images that share its data.
+   */
+  @Test
+  public void testSplitColorChannelsCopyOnWrite() {
+    Image[] channels = image.splitColorChannels();
+    channels[0].setPixel(0, 0, new Pixel(1, 2, 3));
+
+    assertEquals(new Pixel(1, 2, 3), channels[0].getPixel(0, 0));
+    assertEquals(new Pixel(100, 150, 200), image.getPixel(0, 0));
+    assertEquals(new Pixel(0, 150, 0), channels[1].getPixel(0, 0));
+    assertEquals(new Pixel(0, 0, 200), channels[2].getPixel(0, 0));
+  }
+
+  /**
+   * Test that component images of the same size share one all-zero array, which a write to
+   * one of them does not change.
+   */
+  @Test
+  public void testComponentsShareZeroPlane() {
+    Image[] channels = image.splitColorChannels();
+    Image red = image.extractRedComponent();
+    assertSame(channels[0].getGreenChannel(), channels[1].getRedChannel());
+    assertSame(channels[0].getGreenChannel(), red.getBlueChannel());
+
+    red.setPixel(0, 0, new Pixel(1, 2, 3));
+    assertEquals(new Pixel(1, 2, 3), red.getPixel(0, 0));
+    assertArrayEquals(new byte[4], channels[0].getGreenChannel());
+    assertEquals(new Pixel(0, 0, 200), image.extractBlueComponent().getPixel(0, 0));
+    assertEquals(new Pixel(0, 150, 0), channels[1].getPixel(0, 0));
+    assertEquals(new Pixel(100, 0, 0), channels[0].getPixel(0, 0));
+  }
+
+  /**
+   * Test that writing to the source image after a combine does not change the combined image.
+   */
+  @Test
+  public void testCombineColorChannelsCopyOnWrite() {
+    Image combinedImage = Image.combineColorChannels(image, image, image);
+    image.setPixel(1, 1, new Pixel(0, 0, 0));
+
+    assertEquals(new Pixel(130, 180, 230), combinedImage.getPixel(1, 1));
+    assertEquals(new Pixel(0, 0, 0), image.getPixel(1, 1));
+  }
+
+  /**
+   * Test that a kernel which is not a multiple of a power of two is rounded like
+   * double-precision convolution, with pixels outside the image contributing zero.
+   */
+  @Test
+  public void testApplyKernelArbitraryWeights() {
+    double[][] kernel = {{0, 0, 0}, {0.3, 0.3, 0.3}, {0, 0, 0}};
+    Image result = image.applyKernel(kernel);
+
+    assertEquals(new Pixel(63, 93, 123), result.getPixel(0, 0));
+    assertEquals(new Pixel(63, 93, 123), result.getPixel(1, 0));
+    assertEquals(new Pixel(75, 105, 135), result.getPixel(0, 1));
+  }
+
+  /**
+   * Test that an even-sized kernel is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testApplyKernelEvenSize() {
+    image.applyKernel(new double[][]{{0.25, 0.25}, {0.25, 0.25}});
+  }
+
+  /**
+   * Test that a kernel whose weights do not fit the fixed-point range is rejected instead
+   * of being clamped.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testApplyKernelWeightsTooLarge() {
+    image.applyKernel(new double[][]{{1e10}});
+  }
+
+  /**
+   * Test that a kernel with a weight that is not a number is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testApplyKernelNotANumber() {
+    image.applyKernel(new double[][]{{0, 0, 0}, {0, Double.NaN, 0}, {0, 0, 0}});
+  }
+
+  /**
+   * Test that a composed lookup table gives the same pixels as the operations one by one.
+   */
+  @Test
+  public void testLookupTableComposition() {
+    Image expected = image.adjustLevels(20, 100, 230).brighten(-30);
+    Image actual = ChannelLookupTable.levels(20, 100, 230)
+            .then(ChannelLookupTable.brighten(-30)).apply(image);
+
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test that mapping a grayscale image through a lookup table keeps it grayscale.
+   */
+  @Test
+  public void testLookupTableKeepsGrayscaleShared() {
+    Image gray = image.toIntensityComponent();
+    Image bright = gray.brighten(40);
+
+    assertSame(bright.getRedChannel(), bright.getGreenChannel());
+    assertSame(bright.getRedChannel(), bright.getBlueChannel());
+    assertEquals(Math.min(255, gray.getPixel(1, 1).getRed() + 40),
+            bright.getPixel(1, 1).getBlue());
+  }
+
+  /**
+   * Test that folding a sepia matrix and a lookup table into a grayscale matrix gives the
+   * same pixels as applying them one by one.
+   */
+  @Test
+  public void testColorMatrixFolding() {
+    Image expected = image.toLumaComponent().toSepia().brighten(-20);
+    Image actual = ColorMatrix.LUMA.then(ColorMatrix.SEPIA)
+            .then(ChannelLookupTable.brighten(-20)).apply(image);
+
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(expected.getPixel(x, y), actual.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test that a color matrix is evaluated with exact integer arithmetic, rounding halves up.
+   */
+  @Test
+  public void testColorMatrixExactRounding() {
+    Image tie = new Image(new Pixel[][]{{new Pixel(50, 0, 0), new Pixel(0, 0, 250)}});
+    Image half = new ColorMatrix(new int[][]{{1, 0, 0}, {0, 0, 1}, {1, 0, 1}}, 100, true)
+            .apply(tie);
+
+    assertEquals(new Pixel(1, 0, 1), half.getPixel(0, 0));
+    assertEquals(new Pixel(0, 3, 3), half.getPixel(1, 0));
+  }
+
+  /**
+   * Test that only a grayscale matrix can absorb another matrix.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testColorMatrixFoldingNeedsGrayscale() {
+    ColorMatrix.SEPIA.then(ColorMatrix.LUMA);
+  }
+
+  /**
+   * Test that compressing a square image whose side is a power of two in one block gives
+   * the same result as compressing it without blocks.
+   */
+  @Test
+  public void testCompressSingleBlockMatchesWholeImage() {
+    Image whole = image.compress(50);
+    Image block = image.compress(50, 2, null);
+
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(whole.getPixel(x, y), block.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test that compressing blocks in parallel gives the same result as compressing them on
+   * the calling thread, including the smaller blocks at the edges.
+   */
+  @Test
+  public void testCompressBlocksInParallel() {
+    Image gradient = new Image(37, 23);
+    for (int y = 0; y < 23; y++) {
+      for (int x = 0; x < 37; x++) {
+        gradient.setPixel(x, y, new Pixel(x * 7, y * 11, (x * y) % 256));
+      }
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    Image parallel = gradient.compress(50, 8, pool);
+    pool.shutdown();
+    Image serial = gradient.compress(50, 8, null);
+
+    assertEquals(37, parallel.getWidth());
+    assertEquals(23, parallel.getHeight());
+    for (int y = 0; y < 23; y++) {
+      for (int x = 0; x < 37; x++) {
+        assertEquals(serial.getPixel(x, y), parallel.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test that a block size that is not positive is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCompressInvalidBlockSize() {
+    image.compress(50, 0, null);
+  }
+
+  /**
+   * Test that chains of flips and crops are views that copy no pixels until their channels
+   * are needed, and then hold the same pixels as flipping and cropping a copy step by step.
+   */
+  @Test
+  public void testFlipAndCropViews() {
+    Image gradient = new Image(7, 5);
+    for (int y = 0; y < 5; y++) {
+      for (int x = 0; x < 7; x++) {
+        gradient.setPixel(x, y, new Pixel(x * 30, y * 50, x + y));
+      }
+    }
+    Image view = gradient.horizontalFlip().crop(1, 1, 4, 3).verticalFlip().crop(1, 0, 2, 3);
+    assertTrue(view.isView());
+    assertEquals(gradient.getStorageBytes(), view.getStorageBytes());
+    assertEquals(2, view.getWidth());
+    assertEquals(3, view.getHeight());
+    for (int y = 0; y < 3; y++) {
+      for (int x = 0; x < 2; x++) {
+        // x maps to 7 - 1 - (1 + 1 + x) in the original, y to 1 + (3 - 1 - y).
+        assertEquals(gradient.getPixel(4 - x, 3 - y), view.getPixel(x, y));
+      }
+    }
+    byte[][] storage = view.getStorage();
+    assertSame(gradient.getRedChannel(), storage[0]);
+    byte[] rows = new byte[1 + 2 * 3];
+    for (int y = 0; y < 3; y++) {
+      view.copyRow(storage[0], y, rows, 1 + y * 2);
+    }
+    for (int y = 0; y < 3; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(gradient.getPixel(4 - x, 3 - y).getRed(), rows[1 + y * 2 + x] & 0xff);
+      }
+    }
+    assertTrue(view.isView());
+
+    byte[] red = view.getRedChannel();
+    assertFalse(view.isView());
+    assertEquals(6, red.length);
+    assertEquals(18, view.getStorageBytes());
+    for (int y = 0; y < 3; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(gradient.getPixel(4 - x, 3 - y), view.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test that flipping an image twice gives back its channel arrays without copying them.
+   */
+  @Test
+  public void testDoubleFlipSharesChannels() {
+    Image twice = image.horizontalFlip().horizontalFlip();
+    assertFalse(twice.isView());
+    assertSame(image.getRedChannel(), twice.getRedChannel());
+    assertSame(image.getBlueChannel(), twice.getBlueChannel());
+  }
+
+  /**
+   * Test that writing to an image after taking a view of it, or writing to the view, does
+   * not change the other.
+   */
+  @Test
+  public void testViewIsCopyOnWrite() {
+    Image flipped = image.verticalFlip();
+    image.setPixel(0, 0, new Pixel(1, 2, 3));
+    assertEquals(new Pixel(120, 170, 220), flipped.getPixel(0, 0));
+    assertEquals(new Pixel(100, 150, 200), flipped.getPixel(0, 1));
+
+    flipped.setPixel(1, 1, new Pixel(4, 5, 6));
+    assertEquals(new Pixel(110, 160, 210), image.getPixel(1, 0));
+    assertEquals(new Pixel(1, 2, 3), image.getPixel(0, 0));
+  }
+
+  /**
+   * Test that a crop outside the image is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testCropOutOfBounds() {
+    image.horizontalFlip().crop(1, 0, 2, 1);
+  }
+
+  /**
+   * Test that counting histograms in parallel bands gives the same counts as counting them
+   * on the calling thread, for an image with separate channels, a grayscale image whose
+   * channels share one array, and a cropped view.
+   */
+  @Test
+  public void testParallelHistograms() {
+    Image gradient = new Image(301, 257);
+    for (int y = 0; y < 257; y++) {
+      for (int x = 0; x < 301; x++) {
+        gradient.setPixel(x, y, new Pixel(x % 256, y % 256, (x * y) % 256));
+      }
+    }
+    ForkJoinPool pool = new ForkJoinPool(4);
+    Image[] images = {gradient, gradient.toLumaComponent(),
+        gradient.horizontalFlip().crop(13, 7, 280, 240)};
+    for (Image tested : images) {
+      Image copy = new Image(tested.getPixels());
+      int[][] expected = copy.calculateHistograms();
+      int[][] parallel = tested.calculateHistograms(pool);
+      for (int channel = 0; channel < 3; channel++) {
+        assertArrayEquals(expected[channel], parallel[channel]);
+      }
+    }
+    pool.shutdown();
+  }
+
+  /**
+   * Test that histograms are kept with the image, that changing the returned arrays does
+   * not change them, and that writing a pixel makes them be counted again.
+   */
+  @Test
+  public void testHistogramsAreCached() {
+    int[][] first = image.calculateHistograms();
+    assertEquals(1, first[0][100]);
+    first[0][100] = 42;
+    assertEquals(1, image.calculateHistograms()[0][100]);
+    assertEquals(1, image.verticalFlip().calculateHistograms()[0][100]);
+
+    image.setPixel(1, 1, new Pixel(100, 0, 0));
+    int[][] updated = image.calculateHistograms();
+    assertEquals(2, updated[0][100]);
+    assertEquals(0, updated[0][130]);
+  }
+
+  /**
+   * Test that a mask selects the light pixels of an image as runs per row, and that it is
+   * kept with the image until a pixel of the image is written.
+   */
+  @Test
+  public void testMask() {
+    Image maskImage = new Image(6, 3);
+    maskImage.setPixel(1, 0, new Pixel(255, 255, 255));
+    maskImage.setPixel(2, 0, new Pixel(0, 200, 0));
+    maskImage.setPixel(4, 0, new Pixel(0, 0, 128));
+    maskImage.setPixel(5, 0, new Pixel(127, 127, 127));
+    maskImage.setPixel(0, 2, new Pixel(255, 255, 255));
+
+    Mask mask = maskImage.toMask();
+    assertEquals(6, mask.getWidth());
+    assertEquals(3, mask.getHeight());
+    assertEquals(2, mask.getRunCount(0));
+    assertEquals(1, mask.getRunStart(0, 0));
+    assertEquals(3, mask.getRunEnd(0, 0));
+    assertEquals(4, mask.getRunStart(0, 1));
+    assertEquals(5, mask.getRunEnd(0, 1));
+    assertEquals(0, mask.getRunCount(1));
+    assertEquals(1, mask.getRunCount(2));
+    assertEquals(4, mask.getSelectedCount());
+    assertTrue(mask.isSelected(2, 0));
+    assertFalse(mask.isSelected(3, 0));
+    assertFalse(mask.isSelected(5, 0));
+    assertSame(mask, maskImage.toMask());
+
+    maskImage.setPixel(3, 1, new Pixel(255, 255, 255));
+    assertTrue(maskImage.toMask().isSelected(3, 1));
+    assertFalse(mask.isSelected(3, 1));
+  }
 }
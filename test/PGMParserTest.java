@@ -0,0 +1,98 @@
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import controller.IImageFileParser;
+import controller.PGMParser;
+import model.image.Image;
+import model.image.Pixel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for the PGMParser implementation of the
+ * IImageFileParser interface.
+ */
+public class PGMParserTest {
+
+  /**
+   * Test case for saving a grayscale image as binary PGM and loading it back.
+   *
+   * @throws IOException if the file cannot be written or read
+   */
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    Image image = new Image(new Pixel[][]{
+            {new Pixel(0, 0, 0), new Pixel(77, 77, 77)},
+            {new Pixel(200, 200, 200), new Pixel(255, 255, 255)}
+    });
+    File file = File.createTempFile("gray", ".pgm");
+    file.deleteOnExit();
+    IImageFileParser parser = new PGMParser();
+    parser.saveImage(file.getPath(), image);
+
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    assertEquals("P5\n2 2\n255\n", new String(bytes, 0, 11, StandardCharsets.US_ASCII));
+    assertEquals(11 + 4, bytes.length);
+    Image loaded = parser.loadImage(file.getPath());
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(image.getPixel(x, y), loaded.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test case for saving a color image as PGM, which should save its luma component.
+   *
+   * @throws IOException if the file cannot be written or read
+   */
+  @Test
+  public void testSaveColorImageAsLuma() throws IOException {
+    Image image = new Image(new Pixel[][]{
+            {new Pixel(255, 0, 0), new Pixel(0, 255, 0), new Pixel(0, 0, 255)}
+    });
+    File file = File.createTempFile("color", ".pgm");
+    file.deleteOnExit();
+    IImageFileParser parser = new PGMParser();
+    parser.saveImage(file.getPath(), image);
+
+    Image loaded = parser.loadImage(file.getPath());
+    Image luma = image.toLumaComponent();
+    for (int x = 0; x < 3; x++) {
+      assertEquals(luma.getPixel(x, 0), loaded.getPixel(x, 0));
+    }
+  }
+
+  /**
+   * Test case for loading a plain (P2) PGM file with a comment.
+   *
+   * @throws IOException if the file cannot be written or read
+   */
+  @Test
+  public void testLoadPlain() throws IOException {
+    File file = File.createTempFile("plain", ".pgm");
+    file.deleteOnExit();
+    Files.write(file.toPath(),
+            "P2\n# gray\n3 1\n255\n0 128 255\n".getBytes(StandardCharsets.US_ASCII));
+
+    Image image = new PGMParser().loadImage(file.getPath());
+
+    assertEquals(3, image.getWidth());
+    assertEquals(new Pixel(128, 128, 128), image.getPixel(1, 0));
+    assertEquals(new Pixel(255, 255, 255), image.getPixel(2, 0));
+  }
+
+  /**
+   * Test case for loading a file that is not a PGM file.
+   *
+   * @throws IOException if the file is not a PGM
+   */
+  @Test(expected = IOException.class)
+  public void testLoadInvalidMagic() throws IOException {
+    new PGMParser().loadImage("res/images/film_original.ppm");
+  }
+}
@@ -1,8 +1,11 @@
 import org.junit.Test;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 
+import javax.imageio.ImageIO;
+
 import controller.IImageFileParser;
 import controller.PNGParser;
 import model.image.Image;
@@ -88,4 +91,59 @@ public class PNGParserTest {
     parser.saveImage("res/image/save_incorrect.png", image);
   }
 
-}
\ No newline at end of file
+  /**
+   * Test case for loading PNG files of several pixel layouts, which should give the same
+   * colors as converting each pixel through the color model of the decoded image.
+   *
+   * @throws IOException if a file cannot be written or read
+   */
+  @Test
+  public void testLoadPixelLayouts() throws IOException {
+    int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+                   BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED};
+    for (int type : types) {
+      BufferedImage source = new BufferedImage(3, 2, type);
+      for (int y = 0; y < 2; y++) {
+        for (int x = 0; x < 3; x++) {
+          source.setRGB(x, y, 0xff000000 | (x * 80) << 16 | (y * 120) << 8 | (x * y * 60 + 10));
+        }
+      }
+      File file = File.createTempFile("layout", ".png");
+      file.deleteOnExit();
+      ImageIO.write(source, "png", file);
+
+      BufferedImage decoded = ImageIO.read(file);
+      Image image = new PNGParser().loadImage(file.getPath());
+      for (int y = 0; y < 2; y++) {
+        for (int x = 0; x < 3; x++) {
+          assertEquals(decoded.getRGB(x, y) & 0xffffff, image.getRGB(x, y));
+        }
+      }
+    }
+  }
+
+  /**
+   * Test case for saving an image as PNG and loading it back, which should give the
+   * same pixels.
+   *
+   * @throws IOException if the file cannot be written or read
+   */
+  @Test
+  public void testSaveAndLoadRoundTrip() throws IOException {
+    Image image = new Image(new Pixel[][]{
+            {new Pixel(0, 9, 10), new Pixel(99, 100, 255)},
+            {new Pixel(32, 10, 13), new Pixel(128, 200, 1)}
+    });
+    File file = File.createTempFile("round-trip", ".png");
+    file.deleteOnExit();
+    IImageFileParser parser = new PNGParser();
+    parser.saveImage(file.getPath(), image);
+
+    Image loaded = parser.loadImage(file.getPath());
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(image.getPixel(x, y), loaded.getPixel(x, y));
+      }
+    }
+  }
+}
@@ -2,6 +2,8 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import controller.IImageFileParser;
 import controller.PPMParser;
@@ -88,4 +90,87 @@ public class PPMParserTest {
     parser.saveImage("res/image/save_incorrect.ppm", image);
   }
 
-}
\ No newline at end of file
+  /**
+   * Test case for the loadImage() method of the PPMParser class with comments after
+   * values, blank lines and values outside the range of a color.
+   *
+   * @throws IOException if the file cannot be written or read
+   */
+  @Test
+  public void testLoadImageWithCommentsAndBlankLines() throws IOException {
+    File file = File.createTempFile("comments", ".ppm");
+    file.deleteOnExit();
+    Files.write(file.toPath(), ("P3 # plain\n\n2 1 # size\n255\n"
+            + "300 -4 7#first\n\n1 2\n3\n").getBytes(StandardCharsets.US_ASCII));
+
+    Image image = new PPMParser().loadImage(file.getPath());
+
+    assertEquals(2, image.getWidth());
+    assertEquals(1, image.getHeight());
+    assertEquals(new Pixel(255, 0, 7), image.getPixel(0, 0));
+    assertEquals(new Pixel(1, 2, 3), image.getPixel(1, 0));
+  }
+
+  /**
+   * Test case for saving and loading an image with the PPMParser class, which should give
+   * back the same pixels in the plain PPM layout.
+   *
+   * @throws IOException if the file cannot be written or read
+   */
+  @Test
+  public void testSaveAndLoadRoundTrip() throws IOException {
+    Image image = new Image(new Pixel[][]{
+            {new Pixel(0, 9, 10), new Pixel(99, 100, 255)}
+    });
+    File file = File.createTempFile("round-trip", ".ppm");
+    file.deleteOnExit();
+    IImageFileParser parser = new PPMParser();
+    parser.saveImage(file.getPath(), image);
+
+    assertEquals("P3\n2 1\n255\n0 9 10 99 100 255 \n",
+            new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII));
+    Image loaded = parser.loadImage(file.getPath());
+    assertEquals(new Pixel(0, 9, 10), loaded.getPixel(0, 0));
+    assertEquals(new Pixel(99, 100, 255), loaded.getPixel(1, 0));
+  }
+
+  /**
+   * Test case for saving a binary (P6) PPM file, which should hold the raw samples after
+   * the header and load back with the same pixels.
+   *
+   * @throws IOException if the file cannot be written or read
+   */
+  @Test
+  public void testSaveAndLoadBinary() throws IOException {
+    Image image = new Image(new Pixel[][]{
+            {new Pixel(0, 9, 10), new Pixel(99, 100, 255)},
+            {new Pixel(32, 10, 13), new Pixel(128, 200, 1)}
+    });
+    File file = File.createTempFile("binary", ".ppm");
+    file.deleteOnExit();
+    new PPMParser(true).saveImage(file.getPath(), image);
+
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    assertEquals("P6\n2 2\n255\n", new String(bytes, 0, 11, StandardCharsets.US_ASCII));
+    assertEquals(11 + 12, bytes.length);
+    Image loaded = new PPMParser().loadImage(file.getPath());
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 2; x++) {
+        assertEquals(image.getPixel(x, y), loaded.getPixel(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test case for loading a binary (P6) PPM file that ends before all of its samples.
+   *
+   * @throws IOException if the file is not a complete PPM
+   */
+  @Test(expected = IOException.class)
+  public void testLoadTruncatedBinary() throws IOException {
+    File file = File.createTempFile("truncated", ".ppm");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "P6\n2 2\n255\nabc".getBytes(StandardCharsets.US_ASCII));
+    new PPMParser().loadImage(file.getPath());
+  }
+}
@@ -5,6 +5,7 @@ import java.util.Optional;
 
 import model.image.Image;
 import model.image.Pixel;
+import model.strategy.FilterStrategy;
 
 /**
  * Represents the mock model class for images, responsible for
@@ -55,6 +56,18 @@ public class MockModel implements IImageModel {
     return dummyImage;
   }
 
+  /**
+   * Returns the dimensions of the dummy image. This call is not logged, because the
+   * controller uses it to record metrics after every command.
+   *
+   * @param imageName the name of the image
+   * @return the width and height of the dummy image
+   */
+  @Override
+  public int[] getImageDimensions(String imageName) {
+    return new int[]{dummyImage.getWidth(), dummyImage.getHeight()};
+  }
+
   /**
    * Logs the call to extract the red color component from the specified image.
    *
@@ -297,6 +310,20 @@ public class MockModel implements IImageModel {
     log.append("Compress method called.");
   }
 
+  /**
+   * Logs the operation to compress the specified image in blocks using a percentage.
+   *
+   * @param imageName     the name of the source image
+   * @param destImageName the name of the destination image
+   * @param percentage    the percentage by which the image will be compressed
+   * @param blockSize     the width and height of the blocks
+   */
+  @Override
+  public void compressImage(String imageName, String destImageName, int percentage,
+                            int blockSize) {
+    log.append("Compress method called with block size " + blockSize + ".");
+  }
+
   /**
    * Retrieves the accumulated log of operations performed by the mock model.
    *
@@ -305,4 +332,18 @@ public class MockModel implements IImageModel {
   public String getLog() {
     return log.toString();
   }
+
+  /**
+   * Logs the operation to apply a filter to the pixels selected by a mask image.
+   *
+   * @param imageName     the name of the source image
+   * @param maskImageName the name of the mask image
+   * @param destImageName the name of the destination image
+   * @param strategy      the filter to apply
+   */
+  @Override
+  public void applyMasked(String imageName, String maskImageName, String destImageName,
+                          FilterStrategy strategy) {
+    log.append("Masked filter method called.");
+  }
 }